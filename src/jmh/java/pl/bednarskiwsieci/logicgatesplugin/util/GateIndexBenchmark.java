@@ -0,0 +1,175 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/// Gate lookups per second through [GateIndex] and [LongGateMap] against the
+/// `ConcurrentHashMap<Location, GateData>` the plugin kept before.
+///
+/// Every run looks up the same random positions, half of them gates and half empty blocks, since most
+/// redstone events near a gate are for blocks that are not gates. The map is read once with a new
+/// [Location] per lookup, as the listeners did, and once with prebuilt keys, which leaves only the
+/// hashing and probing. Run with `./gradlew jmh`.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GateIndexBenchmark {
+
+    private static final int LOOKUPS = 4096;
+    private static final int SPREAD = 4096;
+
+    @Param({"10000", "1000000"})
+    public int gates;
+
+    private final int[] xs = new int[LOOKUPS];
+    private final int[] ys = new int[LOOKUPS];
+    private final int[] zs = new int[LOOKUPS];
+    private final Location[] locations = new Location[LOOKUPS];
+
+    private World world;
+    private GateIndex gateIndex;
+    private GateIndex concurrentGateIndex;
+    private LongGateMap longGateMap;
+    private Map<Location, GateData> locationMap;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        world = world();
+        gateIndex = new GateIndex();
+        concurrentGateIndex = new GateIndex();
+        concurrentGateIndex.setConcurrent(true);
+        longGateMap = new LongGateMap();
+        locationMap = new ConcurrentHashMap<>();
+
+        int[] gateXs = new int[gates];
+        int[] gateYs = new int[gates];
+        int[] gateZs = new int[gates];
+        for (int i = 0; i < gates; i++) {
+            int x = random.nextInt(SPREAD) - SPREAD / 2;
+            int y = random.nextInt(128);
+            int z = random.nextInt(SPREAD) - SPREAD / 2;
+            GateData data = GateData.create(BlockFace.NORTH, GateType.AND);
+            gateIndex.put(world, x, y, z, data);
+            concurrentGateIndex.put(world, x, y, z, data);
+            longGateMap.put(BlockKey.pack(x, y, z), data);
+            locationMap.put(new Location(world, x, y, z), data);
+            gateXs[i] = x;
+            gateYs[i] = y;
+            gateZs[i] = z;
+        }
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            if ((i & 1) == 0) {
+                int gate = random.nextInt(gates);
+                xs[i] = gateXs[gate];
+                ys[i] = gateYs[gate];
+                zs[i] = gateZs[gate];
+            } else {
+                // Above every gate, so these always miss
+                xs[i] = random.nextInt(SPREAD) - SPREAD / 2;
+                ys[i] = 128 + random.nextInt(128);
+                zs[i] = random.nextInt(SPREAD) - SPREAD / 2;
+            }
+            locations[i] = new Location(world, xs[i], ys[i], zs[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int gateIndex() {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (gateIndex.get(world, xs[i], ys[i], zs[i]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int concurrentGateIndex() {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (concurrentGateIndex.get(world, xs[i], ys[i], zs[i]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int longGateMap() {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (longGateMap.get(BlockKey.pack(xs[i], ys[i], zs[i])) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int locationMap() {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (locationMap.get(new Location(world, xs[i], ys[i], zs[i])) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public int locationMapPrebuiltKeys() {
+        int found = 0;
+        for (int i = 0; i < LOOKUPS; i++) {
+            if (locationMap.get(locations[i]) != null) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static World world() {
+        UUID uid = UUID.randomUUID();
+        return (World) Proxy.newProxyInstance(GateIndexBenchmark.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUID" -> uid;
+                    case "getName" -> "world";
+                    case "isChunkLoaded" -> true;
+                    case "hashCode" -> uid.hashCode();
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+}
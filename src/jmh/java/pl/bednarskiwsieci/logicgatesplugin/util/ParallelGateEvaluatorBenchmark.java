@@ -0,0 +1,72 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/// Scaling of wave evaluation from 1 to N worker threads.
+///
+/// Each invocation evaluates one wave of combinational gates of mixed types and input counts, the way
+/// [ParallelGateEvaluator] sees a large tick. `threads = 1` is the serial [GateBatch#evaluate()] the
+/// plugin uses by default. Run with `./gradlew jmh`.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelGateEvaluatorBenchmark {
+
+    private static final GateType[] COMBINATIONAL = {
+            GateType.XOR, GateType.AND, GateType.OR, GateType.NOT,
+            GateType.NAND, GateType.NOR, GateType.XNOR, GateType.IMPLICATION
+    };
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    @Param({"4096", "65536"})
+    public int gates;
+
+    private final ParallelGateEvaluator evaluator = new ParallelGateEvaluator();
+    private final GateBatch batch = new GateBatch();
+
+    @Setup
+    public void setUp() {
+        evaluator.setThreads(threads);
+        evaluator.setThreshold(1);
+
+        Random random = new Random(42);
+        for (int i = 0; i < gates; i++) {
+            GateData data = GateData.create(BlockFace.NORTH, COMBINATIONAL[random.nextInt(COMBINATIONAL.length)]);
+            data.setThreeInput(random.nextBoolean());
+            batch.add(null, data, random.nextInt(8), false);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        evaluator.shutdown();
+    }
+
+    @Benchmark
+    public boolean evaluateWave() {
+        evaluator.evaluate(batch);
+        return batch.output(gates - 1);
+    }
+}
@@ -0,0 +1,116 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/// Single-gate evaluation through [TruthTables] against the `switch` that `GateUtils.calculateOutput`
+/// used before.
+///
+/// Both kernels evaluate the same gates of mixed types with two or three inputs, in random order, so the
+/// type and input count branches of the switch are not predictable. The eight-input run shows the cost
+/// of a wide gate, which the switch cannot express at all. Run with `./gradlew jmh`.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TruthTablesBenchmark {
+
+    private static final int GATES = 4096;
+    private static final GateType[] COMBINATIONAL = {
+            GateType.XOR, GateType.AND, GateType.OR, GateType.NOT,
+            GateType.NAND, GateType.NOR, GateType.XNOR, GateType.IMPLICATION
+    };
+
+    private final GateType[] types = new GateType[GATES];
+    private final int[] counts = new int[GATES];
+    private final boolean[] threeInput = new boolean[GATES];
+    private final int[] inputs = new int[GATES];
+    private final int[] wideInputs = new int[GATES];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        for (int i = 0; i < GATES; i++) {
+            types[i] = COMBINATIONAL[random.nextInt(COMBINATIONAL.length)];
+            threeInput[i] = random.nextBoolean();
+            counts[i] = types[i] == GateType.NOT ? 1 : threeInput[i] ? 3 : 2;
+            inputs[i] = random.nextInt(8);
+            wideInputs[i] = random.nextInt(256);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GATES)
+    public int switchKernel() {
+        int on = 0;
+        for (int i = 0; i < GATES; i++) {
+            int bits = inputs[i];
+            if (switchOutput(types[i], (bits & 1) != 0, (bits & 2) != 0, (bits & 4) != 0, threeInput[i])) {
+                on++;
+            }
+        }
+        return on;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GATES)
+    public int truthTables() {
+        int on = 0;
+        for (int i = 0; i < GATES; i++) {
+            if (TruthTables.evaluate(types[i], inputs[i], counts[i])) {
+                on++;
+            }
+        }
+        return on;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(GATES)
+    public int truthTablesEightInputs() {
+        int on = 0;
+        for (int i = 0; i < GATES; i++) {
+            if (TruthTables.evaluate(types[i], wideInputs[i], 8)) {
+                on++;
+            }
+        }
+        return on;
+    }
+
+    /// The combinational part of the previous `GateUtils.calculateOutput`.
+    private static boolean switchOutput(GateType type, boolean input1, boolean input2, boolean input3,
+                                        boolean isThreeInput) {
+        return switch (type) {
+            case XNOR -> isThreeInput ? (input1 == input2 && input2 == input3) : (input1 == input2);
+            case IMPLICATION -> isThreeInput ? (!input1 || !input2 || input3) : (!input1 || input2);
+            case XOR -> {
+                if (isThreeInput) {
+                    int count = (input1 ? 1 : 0) + (input2 ? 1 : 0) + (input3 ? 1 : 0);
+                    yield (count & 1) == 1;
+                } else {
+                    yield input1 != input2;
+                }
+            }
+            case AND -> isThreeInput ? (input1 && input2 && input3) : (input1 && input2);
+            case OR -> isThreeInput ? (input1 || input2 || input3) : (input1 || input2);
+            case NOT -> !input1;
+            case NAND -> isThreeInput ? !(input1 && input2 && input3) : !(input1 && input2);
+            case NOR -> isThreeInput ? !(input1 || input2 || input3) : !(input1 || input2);
+            default -> false;
+        };
+    }
+}
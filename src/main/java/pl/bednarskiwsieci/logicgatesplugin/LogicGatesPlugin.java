@@ -16,23 +16,48 @@ import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
-import org.bukkit.scheduler.BukkitRunnable;
-import org.bukkit.scheduler.BukkitTask;
 import pl.bednarskiwsieci.logicgatesplugin.commands.LogicGatesCommand;
 import pl.bednarskiwsieci.logicgatesplugin.integrations.WorldEditIntegration;
+import pl.bednarskiwsieci.logicgatesplugin.listeners.ChunkListener;
 import pl.bednarskiwsieci.logicgatesplugin.listeners.GateListener;
+import pl.bednarskiwsieci.logicgatesplugin.listeners.TopologyListener;
 import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateTopology;
 import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+import pl.bednarskiwsieci.logicgatesplugin.util.BlockKey;
+import pl.bednarskiwsieci.logicgatesplugin.util.ChunkBoundStorage;
+import pl.bednarskiwsieci.logicgatesplugin.util.ChunkDataGateStorage;
 import pl.bednarskiwsieci.logicgatesplugin.util.ConfigManager;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateBatch;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateClock;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateIndex;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateLoader;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateSaveScheduler;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateSettler;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateSounds;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateStore;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateStoreStorage;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateUpdateScheduler;
 import pl.bednarskiwsieci.logicgatesplugin.util.GateUtils;
 import pl.bednarskiwsieci.logicgatesplugin.util.GatesConfigManager;
+import pl.bednarskiwsieci.logicgatesplugin.util.IncrementalGateStorage;
+import pl.bednarskiwsieci.logicgatesplugin.util.MappedGateStore;
+import pl.bednarskiwsieci.logicgatesplugin.util.ObservedChunks;
+import pl.bednarskiwsieci.logicgatesplugin.util.OutputWriter;
+import pl.bednarskiwsieci.logicgatesplugin.util.ParallelGateEvaluator;
+import pl.bednarskiwsieci.logicgatesplugin.util.RegionGateEngine;
+import pl.bednarskiwsieci.logicgatesplugin.util.RegionGateStorage;
+import pl.bednarskiwsieci.logicgatesplugin.util.RegionTaskScheduler;
+import pl.bednarskiwsieci.logicgatesplugin.util.SqliteGateStore;
+import pl.bednarskiwsieci.logicgatesplugin.util.TimerWheel;
+import pl.bednarskiwsieci.logicgatesplugin.util.TruthTables;
 import pl.bednarskiwsieci.logicgatesplugin.util.UpdateChecker;
 
 import java.io.File;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicLong;
 
 import static pl.bednarskiwsieci.logicgatesplugin.listeners.GateListener.ROTATION_ORDER;
 
@@ -40,15 +65,45 @@ import static pl.bednarskiwsieci.logicgatesplugin.listeners.GateListener.ROTATIO
 /// Handles gate management, configuration, and event processing.
 public class LogicGatesPlugin extends JavaPlugin {
 
+    // Input state bits returned by determineInputStates
+    private static final int INPUT_LEFT = 1;
+    private static final int INPUT_RIGHT = 2;
+    private static final int INPUT_BACK = 4;
+    /// Stacked inputs: inputs 4 and up are read three per layer (left, right, back) beside the blocks
+    /// this many blocks apart under the gate, so the block under an input wire is never an input itself
+    public static final int INPUT_LAYER_SPACING = 2;
+    public static final int INPUTS_PER_LAYER = 3;
+    // Results of checkUpdate
+    private static final int UPDATE_SKIPPED = 0;
+    private static final int UPDATE_NORMAL = 1;
+    private static final int UPDATE_FORCED = 2;
+    private static final BlockFace[] NEIGHBOUR_FACES = {
+            BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST, BlockFace.UP, BlockFace.DOWN
+    };
+
     // region Data Storage
-    private final ConcurrentHashMap<Location, GateData> gates = new ConcurrentHashMap<>();
-    private final ConcurrentLinkedQueue<Location> gatesToUpdate = new ConcurrentLinkedQueue<>();
-    private final Set<UUID> debugPlayers = new HashSet<>();
-    private final Set<UUID> inspectionModePlayers = new HashSet<>();
-    private final Set<UUID> inputToggleModePlayers = new HashSet<>();
-    private final Set<UUID> cooldownModePlayers = new HashSet<>();
-    private final Map<UUID, Integer> pendingCooldowns = new HashMap<>();
-    private final ConcurrentHashMap<Location, Long> lastUpdateTicks = new ConcurrentHashMap<>();
+    private final GateIndex gateIndex = new GateIndex();
+    private final Map<Location, GateData> gates = gateIndex.asMap();
+    // Tick clock shared by timers, scheduled updates and update cooldowns
+    private final GateClock clock = new GateClock();
+    private final GateUpdateScheduler updateScheduler = new GateUpdateScheduler(gateIndex, clock);
+    // Chunks near players, whose gate updates are processed first
+    private final ObservedChunks observedChunks = new ObservedChunks();
+    // Per thread, as regions may update their gates concurrently
+    private final ThreadLocal<GateBatch> gateBatches = ThreadLocal.withInitial(GateBatch::new);
+    private final ThreadLocal<List<Block>> statefulGateLists = ThreadLocal.withInitial(ArrayList::new);
+    // Only used by the main thread, see #evaluate(GateBatch)
+    private final ParallelGateEvaluator evaluator = new ParallelGateEvaluator();
+    private final GateSettler settler = new GateSettler();
+    private final OutputWriter outputWriter = new OutputWriter();
+    private final GateSounds gateSounds = new GateSounds(clock);
+    private final Set<UUID> debugPlayers = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> inspectionModePlayers = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> inputToggleModePlayers = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> cooldownModePlayers = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Integer> pendingCooldowns = new ConcurrentHashMap<>();
+    // Chunks per world whose gates were registered unchecked and wait for validateChunk's check
+    private final Map<World, Set<Long>> pendingValidations = new ConcurrentHashMap<>();
     // Mapping of carpet colors to gate types
     private final Map<Material, GateType> carpetTypes = new HashMap<>() {
         {
@@ -64,8 +119,6 @@ public class LogicGatesPlugin extends JavaPlugin {
             put(Material.BROWN_CARPET, GateType.TIMER);
         }
     };
-    // Tick management system
-    private final AtomicLong serverTick = new AtomicLong(0);
     // endregion
     // region Plugin Settings
     private boolean particlesEnabled = true;
@@ -74,20 +127,44 @@ public class LogicGatesPlugin extends JavaPlugin {
     private String defaultLang = "en";
     private boolean legacyMode = false;
     private String notGateInputPosition = "default";
+    private boolean stackedInputs = false;
     private boolean oneTick = false;
+    private long saveDelayTicks = 40L;
+    private boolean journalMode = false;
+    private long journalCompactThreshold = 1024L * 1024L;
+    private String storageMode = "file";
+    private boolean settleCombinational = false;
+    private int settleMaxGates = 4096;
+    private int settleMaxPasses = 16;
     // endregion
 
     // region Task Management
-    private BukkitTask timerGateUpdateTask;
-    private BukkitTask particleTask;
+    private RegionTaskScheduler taskScheduler;
+    // Runs the gate engine per chunk on region-threaded servers, `null` otherwise
+    private RegionGateEngine regionEngine;
+    private RegionTaskScheduler.TaskHandle tickTask;
+    private RegionTaskScheduler.TaskHandle particleTask;
     private ConfigManager configManager;
     private GatesConfigManager gatesConfigManager;
+    private GateSaveScheduler gateSaveScheduler;
+    private IncrementalGateStorage gateStorage;
+    private GateLoader gateLoader;
     private UpdateChecker updateChecker;
     // endregion
 
     // region Plugin Lifecycle
     @Override
     public void onEnable() {
+        taskScheduler = RegionTaskScheduler.create(this);
+        if (taskScheduler.isRegionThreaded()) {
+            getLogger().info("Region-threaded server detected, gate work is scheduled per region");
+            gateIndex.setConcurrent(true);
+            regionEngine = new RegionGateEngine(gateIndex, clock, taskScheduler, this::updateGates, this::fireTimer);
+            gateIndex.setTimerArming(regionEngine::arm);
+            // Sounds of a chunk's run are merged and sent when the run ends
+            regionEngine.setRunHooks(gateSounds::begin, gateSounds::flush);
+        }
+
         initializeConfigFiles();
         configManager = new ConfigManager(this);
         gatesConfigManager = new GatesConfigManager(this);
@@ -95,7 +172,17 @@ public class LogicGatesPlugin extends JavaPlugin {
 
         // Load configuration and gates
         configManager.loadPluginSettings();
-        gatesConfigManager.loadGates(gates);
+        gateSaveScheduler = new GateSaveScheduler(this, gatesConfigManager);
+        gateStorage = createGateStorage();
+        if (gateStorage != null) {
+            gateSaveScheduler.setGateStorage(gateStorage);
+            gateStorage.migrateFromGatesFile(gatesConfigManager);
+            gateStorage.load();
+        } else {
+            // Registered over the next ticks; saves wait until every gate is in place
+            gateLoader = new GateLoader(this, gatesConfigManager);
+            gateLoader.start(gateSaveScheduler.getWriter(), this::saveGates);
+        }
 
         // Register plugin components
         registerCommands();
@@ -143,6 +230,13 @@ public class LogicGatesPlugin extends JavaPlugin {
     @Override
     public void onDisable() {
         cancelTasks();
+        evaluator.shutdown();
+        if (gateLoader != null) {
+            gateLoader.finishNow();
+        }
+        if (gateSaveScheduler != null) {
+            gateSaveScheduler.shutdown();
+        }
         cleanupData();
 
         getLogger().info(
@@ -166,6 +260,32 @@ public class LogicGatesPlugin extends JavaPlugin {
 
     // region Component Registration
 
+    /// Creates the storage selected by the storage mode, if it persists changes incrementally.
+    ///
+    /// @return the storage, or `null` when gates are stored in the gates file
+    private IncrementalGateStorage createGateStorage() {
+        return switch (storageMode.toLowerCase()) {
+            case "region" -> new RegionGateStorage(this, gateSaveScheduler.getWriter());
+            case "chunk" -> new ChunkDataGateStorage(this);
+            case "mapped" -> new MappedGateStore(this, gateSaveScheduler.getWriter());
+            case "sqlite" -> createSqliteStorage();
+            default -> null;
+        };
+    }
+
+    /// Opens the SQLite gate store.
+    ///
+    /// @return the storage, or `null` to fall back to the gates file if the database cannot be opened
+    private IncrementalGateStorage createSqliteStorage() {
+        try {
+            GateStore store = SqliteGateStore.open(new File(getDataFolder(), "gates.db"), getLogger());
+            return new GateStoreStorage(this, store, gateSaveScheduler.getWriter());
+        } catch (SQLException e) {
+            getLogger().severe("Failed to open gates.db, falling back to the gates file: " + e.getMessage());
+            return null;
+        }
+    }
+
     /// Checks if the WorldEdit plugin is present on the server.
     ///
     /// @return true if WorldEdit is present, false otherwise
@@ -192,6 +312,8 @@ public class LogicGatesPlugin extends JavaPlugin {
     /// Registers the event listeners for the plugin. This includes the GateListener which handles gate-related events.
     private void registerEventListeners() {
         getServer().getPluginManager().registerEvents(new GateListener(this, configManager, updateChecker), this);
+        getServer().getPluginManager().registerEvents(new ChunkListener(this), this);
+        getServer().getPluginManager().registerEvents(new TopologyListener(this), this);
     }
     // endregion
 
@@ -260,35 +382,283 @@ public class LogicGatesPlugin extends JavaPlugin {
 
     // region Gate management
 
-    /// Initializes the tick system to update the tick counter every server tick (50ms).
-    private void initializeTickSystem() {
-        // Update tick counter every server tick (50ms)
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                serverTick.incrementAndGet();
+    /// Schedules updates for the gates driven by the gate's output, as resolved in its topology.
+    ///
+    /// @param world the world of the gate
+    /// @param topology the resolved topology of the gate
+    private void scheduleDependentUpdates(World world, GateTopology topology) {
+        for (long dependent : topology.fanout()) {
+            scheduleUpdate(world, BlockKey.x(dependent), BlockKey.y(dependent), BlockKey.z(dependent), 0);
+        }
+    }
+
+    /// Schedules a gate update for the next processing pass: on the update scheduler, or on region-threaded
+    /// servers on the shard of the gate's chunk, which may be owned by another thread. Blocks that are not
+    /// gates are ignored.
+    ///
+    /// @param delayTicks number of ticks to wait after the next processing pass
+    public void scheduleUpdate(World world, int x, int y, int z, int delayTicks) {
+        if (regionEngine != null) {
+            regionEngine.schedule(world, x, y, z, delayTicks);
+        } else {
+            updateScheduler.schedule(world, x, y, z, delayTicks);
+        }
+    }
+
+    /// Schedules the gates with more than three inputs that may read a block through a stacked input layer:
+    /// those [#INPUT_LAYER_SPACING] blocks per layer above the blocks next to it. Does nothing unless
+    /// stacked inputs are enabled.
+    public void scheduleStackedInputUpdates(World world, int x, int y, int z) {
+        if (!stackedInputs) {
+            return;
+        }
+        for (BlockFace face : ROTATION_ORDER) {
+            int columnX = x + face.getModX();
+            int columnZ = z + face.getModZ();
+            for (int layer = 1; layer * INPUTS_PER_LAYER < GateData.MAX_INPUTS; layer++) {
+                int gateY = y + layer * INPUT_LAYER_SPACING;
+                GateData data = gateIndex.get(world, columnX, gateY, columnZ);
+                if (data != null && data.getInputCount() > layer * INPUTS_PER_LAYER) {
+                    scheduleUpdate(world, columnX, gateY, columnZ, 0);
+                }
             }
-        }.runTaskTimer(this, 0L, 1L);
+        }
+    }
+
+    /// Arms a timer gate to fire one interval from now, replacing its previous deadline.
+    public void armTimer(World world, int x, int y, int z, GateData data) {
+        if (regionEngine != null) {
+            regionEngine.arm(world, x, y, z, data);
+        } else {
+            gateIndex.getTimers().arm(world, x, y, z, data);
+        }
+    }
+
+    /// Checks whether the calling thread may read the blocks of a chunk without loading it.
+    ///
+    /// @return `true` if the chunk is loaded and owned by the calling thread
+    public boolean canReadChunk(World world, int chunkX, int chunkZ) {
+        return world.isChunkLoaded(chunkX, chunkZ) && taskScheduler.isOwnedByCurrentThread(world, chunkX, chunkZ);
     }
 
-    /// Schedules updates for blocks that are dependent on the given output block and facing direction.
+    /// Checks the glass blocks of the gates registered unchecked in a loaded chunk, on the thread that owns it.
+    /// Used by loaders that run on a thread which may not read the chunk, see [#canReadChunk(World, int, int)].
+    /// Requests for a chunk whose check has not run yet are merged into it.
+    public void validateChunk(World world, int chunkX, int chunkZ) {
+        long chunkKey = ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+        Set<Long> pending = pendingValidations.computeIfAbsent(world, w -> ConcurrentHashMap.newKeySet());
+        if (pending.add(chunkKey)) {
+            taskScheduler.runInRegion(world, chunkX, chunkZ, () -> {
+                pending.remove(chunkKey);
+                resumeChunk(world, chunkX, chunkZ);
+            });
+        }
+    }
+
+    /// Returns the scheduler that runs the plugin's tasks on the right threads.
     ///
-    /// @param outputBlock the block for which dependent updates are to be scheduled.
-    /// @param facing the direction the block is facing.
-    private void scheduleDependentUpdates(Block outputBlock, BlockFace facing) {
-        // Check all potential connection directions
-        EnumSet<BlockFace> directions = EnumSet.of(
-                facing,
-                facing.getOppositeFace(),
-                GateUtils.rotateClockwise(facing, ROTATION_ORDER),
-                GateUtils.rotateCounterClockwise(facing, ROTATION_ORDER));
+    /// @return the task scheduler
+    public RegionTaskScheduler getTaskScheduler() {
+        return taskScheduler;
+    }
 
-        directions.forEach(dir -> {
-            Location dependentLoc = outputBlock.getRelative(dir).getLocation();
-            if (gates.containsKey(dependentLoc)) {
-                gatesToUpdate.offer(dependentLoc);
+    /// Returns the per-chunk gate engine used on region-threaded servers.
+    ///
+    /// @return the region engine, or `null` if the server has a single main thread
+    public RegionGateEngine getRegionEngine() {
+        return regionEngine;
+    }
+
+    /// Suspends the gates of a chunk that is being unloaded. Until the chunk is loaded again they are
+    /// skipped by every task, their updates are parked and their timers stop.
+    ///
+    /// @param world the world of the chunk
+    /// @param chunkX the chunk's X coordinate
+    /// @param chunkZ the chunk's Z coordinate
+    public void suspendChunk(World world, int chunkX, int chunkZ) {
+        gateIndex.forEachInChunk(world, chunkX, chunkZ, (w, x, y, z, data) -> data.setSuspended(true));
+    }
+
+    /// Resumes the gates of a chunk that has been loaded: timers that stopped while it was unloaded are
+    /// armed again and the parked updates are scheduled, which brings the outputs back in sync.
+    ///
+    /// Gates are registered in chunks that are not loaded without looking at their blocks, so this is
+    /// where their glass block is checked: gates whose glass is gone are removed.
+    ///
+    /// @param world the world of the chunk
+    /// @param chunkX the chunk's X coordinate
+    /// @param chunkZ the chunk's Z coordinate
+    public void resumeChunk(World world, int chunkX, int chunkZ) {
+        List<Block> invalid = new ArrayList<>();
+        gateIndex.forEachInChunk(world, chunkX, chunkZ, (w, x, y, z, data) -> {
+            Block gateBlock = w.getBlockAt(x, y, z);
+            if (gateBlock.getType() != Material.GLASS) {
+                invalid.add(gateBlock);
+                return;
+            }
+            data.setSuspended(false);
+            if (data.getType() == GateType.TIMER && data.getArmedTick() == 0L) {
+                armTimer(w, x, y, z, data);
             }
         });
+        for (Block gateBlock : invalid) {
+            gateIndex.remove(gateBlock);
+            markGateDirty(gateBlock.getLocation());
+        }
+        if (regionEngine != null) {
+            regionEngine.resume(world, chunkX, chunkZ);
+        } else {
+            updateScheduler.resume(world, chunkX, chunkZ);
+        }
+    }
+
+    /// Returns the writer that applies gate outputs to the world.
+    ///
+    /// @return the output writer
+    public OutputWriter getOutputWriter() {
+        return outputWriter;
+    }
+
+    /// Returns the player of gate sounds.
+    ///
+    /// @return the gate sounds
+    public GateSounds getGateSounds() {
+        return gateSounds;
+    }
+
+    /// Returns the cached topology of a gate, resolving it from the world first if needed.
+    /// The cache is kept current by [TopologyListener] and [#invalidateTopologies], not checked on use.
+    ///
+    /// @param gateBlock the gate block
+    /// @param data the gate's data
+    /// @return the topology
+    private GateTopology resolveTopology(Block gateBlock, GateData data) {
+        GateTopology topology = data.getTopology();
+        if (topology != null) {
+            return topology;
+        }
+
+        BlockFace facing = data.getFacing();
+        Block outputBlock = findOutputBlock(gateBlock, facing);
+
+        // Gates around the output block whose output side does not face it take it as an input
+        long[] fanout = new long[ROTATION_ORDER.length];
+        int count = 0;
+        for (BlockFace dir : ROTATION_ORDER) {
+            Block dependentBlock = outputBlock.getRelative(dir);
+            GateData dependent = gateIndex.get(dependentBlock);
+            if (dependent != null && dependent.getFacing() != dir.getOppositeFace()) {
+                fanout[count++] = BlockKey.pack(dependentBlock.getX(), dependentBlock.getY(), dependentBlock.getZ());
+            }
+        }
+
+        BlockFace left = GateUtils.rotateCounterClockwise(facing, ROTATION_ORDER);
+        BlockFace right = GateUtils.rotateClockwise(facing, ROTATION_ORDER);
+        BlockFace back = facing.getOppositeFace();
+        GateData leftDriver = resolveDriver(gateBlock, left);
+        GateData rightDriver = resolveDriver(gateBlock, right);
+        GateData backDriver = resolveDriver(gateBlock, back);
+        int sharedInputs = 0;
+        if (leftDriver != null && !isExclusiveInput(gateBlock.getRelative(left))) {
+            sharedInputs |= GateTopology.SHARED_LEFT;
+        }
+        if (rightDriver != null && !isExclusiveInput(gateBlock.getRelative(right))) {
+            sharedInputs |= GateTopology.SHARED_RIGHT;
+        }
+        if (backDriver != null && !isExclusiveInput(gateBlock.getRelative(back))) {
+            sharedInputs |= GateTopology.SHARED_BACK;
+        }
+        topology = new GateTopology(left, right, back,
+                hasActivationCarpet(gateBlock),
+                outputBlock.getX(), outputBlock.getY(), outputBlock.getZ(),
+                Arrays.copyOf(fanout, count),
+                leftDriver, rightDriver, backDriver, sharedInputs);
+        data.setTopology(topology);
+        return topology;
+    }
+
+    /// Finds the gate whose output block is the given input of a gate.
+    /// Only output blocks that carry exactly the driving gate's state qualify: redstone wire, or the
+    /// blocks written in legacy mode. An input fed by several gates is read from the world.
+    ///
+    /// @param gateBlock the gate block
+    /// @param face the face of the input
+    /// @return the driving gate, or `null` if the input has to be read from the world
+    private GateData resolveDriver(Block gateBlock, BlockFace face) {
+        Block inputBlock = gateBlock.getRelative(face);
+        Material type = inputBlock.getType();
+        if (type != Material.REDSTONE_WIRE
+                && !(legacyMode && (type == Material.REDSTONE_BLOCK || type == Material.REDSTONE_ORE))) {
+            return null;
+        }
+
+        GateData driver = null;
+        for (BlockFace dir : ROTATION_ORDER) {
+            // The output is next to the driving gate, or one further when a carpet is in between
+            for (int distance = 1; distance <= 2; distance++) {
+                Block candidate = inputBlock.getRelative(dir, distance);
+                GateData data = gateIndex.get(candidate);
+                if (data == null || data.getFacing() != dir.getOppositeFace()
+                        || !findOutputBlock(candidate, data.getFacing()).equals(inputBlock)) {
+                    continue;
+                }
+                if (driver != null) {
+                    return null;
+                }
+                driver = data;
+            }
+        }
+        return driver;
+    }
+
+    /// Checks whether nothing but its driving gate can power a driven input block.
+    ///
+    /// Blocks written in legacy mode are only ever set by their gate. A wire can also be powered by
+    /// its neighbours: they all have to be air, glass, carpets or full blocks, with no wire connecting
+    /// to it diagonally, and every neighbour of those full blocks has to be air, glass, a carpet, a full
+    /// block or wire, so that nothing can power them strongly. Anything else, even if it never emits
+    /// power, makes the input shared.
+    ///
+    /// @param inputBlock the driven input block
+    /// @return `true` if the driving gate's state is the input's only source
+    private boolean isExclusiveInput(Block inputBlock) {
+        if (inputBlock.getType() != Material.REDSTONE_WIRE) {
+            return true;
+        }
+
+        for (BlockFace dir : ROTATION_ORDER) {
+            Block side = inputBlock.getRelative(dir);
+            if (side.getRelative(BlockFace.UP).getType() == Material.REDSTONE_WIRE
+                    || side.getRelative(BlockFace.DOWN).getType() == Material.REDSTONE_WIRE) {
+                return false;
+            }
+        }
+        for (BlockFace dir : NEIGHBOUR_FACES) {
+            Block neighbour = inputBlock.getRelative(dir);
+            Material type = neighbour.getType();
+            if (!isInertMaterial(type)) {
+                return false;
+            }
+            if (!type.isOccluding()) {
+                continue;
+            }
+            for (BlockFace next : NEIGHBOUR_FACES) {
+                if (next == dir.getOppositeFace()) {
+                    continue;
+                }
+                Material nextType = neighbour.getRelative(next).getType();
+                if (nextType != Material.REDSTONE_WIRE && !isInertMaterial(nextType)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // Helper method: blocks that neither emit power nor pass it on to a wire by themselves
+    private boolean isInertMaterial(Material type) {
+        return type.isAir() || type == Material.GLASS || carpetTypes.containsKey(type)
+                || (type.isOccluding() && type != Material.REDSTONE_BLOCK && type != Material.OBSERVER);
     }
 
     /// Updates the gate's output based on its current redstone inputs
@@ -303,40 +673,215 @@ public class LogicGatesPlugin extends JavaPlugin {
     ///
     /// @param gateBlock the block representing the gate
     public void updateGate(Block gateBlock) {
-        Location loc = gateBlock.getLocation();
-        GateData data = gates.get(loc);
-
-        // Validate gate data and carpet activation
-        if (!isValidGate(gateBlock, data)) {
-            return;
-        }
-
-        // Determine primary states
-        final BlockFace facing = data.getFacing();
-        Block outputBlock = findOutputBlock(gateBlock, facing);
-        boolean currentPhysicalState = getRedstoneState(gateBlock, facing);
-        boolean forceUpdate = checkForceUpdate(data, currentPhysicalState);
-        if (!canUpdate(loc, forceUpdate)) {
+        GateData data = gateIndex.get(gateBlock);
+        int check = checkUpdate(gateBlock, data);
+        if (check == UPDATE_SKIPPED) {
             return;
         }
 
         // Calculate input states
-        InputStates inputs = determineInputStates(gateBlock, data);
+        GateTopology topology = data.getTopology();
+        int inputs = determineInputStates(gateBlock, data, topology);
 
         // Calculate final output
-        boolean output = GateUtils.calculateOutput(data.getType(),
-                inputs.leftState,
-                inputs.rightState,
-                inputs.backState,
-                data);
+        boolean output = GateUtils.calculateOutput(data.getType(), inputs, data);
 
         // Apply update if needed
-        applyGateOutput(gateBlock, data, outputBlock, output, inputs, forceUpdate);
+        applyGateOutput(gateBlock, data, topology, output, inputs, check == UPDATE_FORCED);
+    }
+
+    /// Updates a wave of gates in lock-step: all inputs are read before any output is written.
+    ///
+    /// Combinational gates are evaluated together by a [GateBatch], 64 per word of each type;
+    /// latches and timers are updated one by one after all combinational inputs have been read.
+    /// In settling mode the combinational gates and the cone they drive are instead settled within
+    /// this tick, see [#settleCone(GateBatch)].
+    ///
+    /// @param gateBlocks the blocks representing the gates
+    public void updateGates(List<Block> gateBlocks) {
+        GateBatch batch = gateBatches.get();
+        List<Block> statefulGates = statefulGateLists.get();
+        for (Block gateBlock : gateBlocks) {
+            GateData data = gateIndex.get(gateBlock);
+            if (data != null && !TruthTables.isCombinational(data.getType())) {
+                statefulGates.add(gateBlock);
+                continue;
+            }
+
+            int check = checkUpdate(gateBlock, data);
+            if (check != UPDATE_SKIPPED) {
+                batch.add(gateBlock, data, determineInputStates(gateBlock, data, data.getTopology()),
+                        check == UPDATE_FORCED);
+            }
+        }
+
+        if (isSettling()) {
+            statefulGates.forEach(this::updateGate);
+            statefulGates.clear();
+            settleCone(batch);
+            batch.clear();
+            return;
+        }
+
+        evaluate(batch);
+        statefulGates.forEach(this::updateGate);
+        statefulGates.clear();
+        for (int i = 0; i < batch.size(); i++) {
+            GateData data = batch.data(i);
+            applyGateOutput(batch.block(i), data, data.getTopology(), batch.output(i), batch.inputs(i),
+                    batch.forced(i));
+        }
+        batch.clear();
     }
 
-    // Helper method: validate gate data and activation
-    private boolean isValidGate(Block gateBlock, GateData data) {
-        return (data != null && hasActivationCarpet(gateBlock));
+    // Helper method: large waves go to the worker pool, except on region-threaded servers, where regions
+    // already update their gates in parallel and the evaluator must not be shared between them
+    private void evaluate(GateBatch batch) {
+        if (regionEngine == null) {
+            evaluator.evaluate(batch);
+        } else {
+            batch.evaluate();
+        }
+    }
+
+    // Helper method: settling needs the netlist drivers, which compatibility mode does not use, and
+    // a cone may cross into chunks owned by other threads on region-threaded servers
+    private boolean isSettling() {
+        return settleCombinational && !redstoneCompatibility && regionEngine == null;
+    }
+
+    /// Settles the combinational gates of a wave, and the combinational gates downstream of them, within
+    /// this tick.
+    ///
+    /// The cone grows along the fan-out from the wave's gates, up to the configured number of gates.
+    /// It is settled in level order by a [GateSettler] without touching the world, then only the final
+    /// outputs that differ from the gates' states are written. Gates driven by a changed output are
+    /// scheduled as usual unless they are in the cone with that input linked to it; if a loop in the cone
+    /// did not settle, the gates inside it are scheduled too, so it keeps oscillating tick by tick as before.
+    ///
+    /// @param batch the wave's combinational gates that passed their update checks
+    private void settleCone(GateBatch batch) {
+        GateSettler cone = settler;
+        for (int i = 0; i < batch.size(); i++) {
+            cone.add(batch.block(i), batch.data(i), batch.forced(i));
+        }
+        growCone(cone);
+        for (int i = 0; i < cone.size(); i++) {
+            linkInputs(cone, i);
+        }
+
+        boolean settled = cone.settle(settleMaxPasses);
+        long tick = clock.getTick();
+        for (int i = 0; i < cone.size(); i++) {
+            Block gateBlock = cone.block(i);
+            GateData data = cone.data(i);
+            boolean output = cone.output(i);
+            if (data.getState() == output && !cone.forced(i)) {
+                continue;
+            }
+
+            GateTopology topology = data.getTopology();
+            data.setLastUpdateTick(tick);
+            writeGateOutput(gateBlock, data, topology, output, cone.inputs(i), cone.forced(i));
+            World world = gateBlock.getWorld();
+            for (long dependent : topology.fanout()) {
+                int x = BlockKey.x(dependent);
+                int y = BlockKey.y(dependent);
+                int z = BlockKey.z(dependent);
+                // A cone gate already saw this output only if the input is linked to it; one that read
+                // the input from the world settled on the old value and has to update again
+                GateData dependentData = gateIndex.get(world, x, y, z);
+                int dependentIndex = dependentData != null ? cone.indexOf(dependentData) : -1;
+                if (!settled || dependentIndex < 0 || !cone.isLinked(dependentIndex, i)) {
+                    scheduleUpdate(world, x, y, z, 0);
+                }
+            }
+        }
+        cone.clear();
+    }
+
+    // Helper method: add the active combinational gates driven by the cone, breadth first
+    private void growCone(GateSettler cone) {
+        for (int i = 0; i < cone.size() && cone.size() < settleMaxGates; i++) {
+            World world = cone.block(i).getWorld();
+            for (long dependent : cone.data(i).getTopology().fanout()) {
+                int x = BlockKey.x(dependent);
+                int y = BlockKey.y(dependent);
+                int z = BlockKey.z(dependent);
+                GateData data = gateIndex.get(world, x, y, z);
+                if (data == null || data.isSuspended() || !TruthTables.isCombinational(data.getType())
+                        || cone.indexOf(data) >= 0) {
+                    continue;
+                }
+
+                Block gateBlock = world.getBlockAt(x, y, z);
+                if (gateBlock.getType() != Material.GLASS || (gateLoader != null && gateLoader.isPending(gateBlock))
+                        || !resolveTopology(gateBlock, data).hasCarpet()) {
+                    continue;
+                }
+                cone.add(gateBlock, data, checkForceUpdate(data, getRedstoneState(gateBlock, data.getFacing())));
+                if (cone.size() >= settleMaxGates) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Helper method: link each input of a cone gate to its driver in the cone, or fix it to its current
+    // state. Uses the same inputs as determineInputStates.
+    private void linkInputs(GateSettler cone, int index) {
+        Block gateBlock = cone.block(index);
+        GateData data = cone.data(index);
+        GateTopology topology = data.getTopology();
+        BlockFace leftFacing = topology.left();
+        GateData leftDriver = topology.leftDriver();
+        if (data.getType() == GateType.NOT && "opposite".equals(getNotGateInputPosition())) {
+            leftFacing = topology.back();
+            leftDriver = topology.backDriver();
+        }
+
+        linkInput(cone, index, 0, gateBlock, topology, leftFacing, leftDriver);
+        linkInput(cone, index, 1, gateBlock, topology, topology.right(), topology.rightDriver());
+        int count = data.getInputCount();
+        if (count >= 3) {
+            linkInput(cone, index, 2, gateBlock, topology, topology.back(), topology.backDriver());
+        }
+        for (int stacked = readStackedInputs(gateBlock, topology, count); stacked != 0; stacked &= stacked - 1) {
+            cone.setFixedInput(index, Integer.numberOfTrailingZeros(stacked));
+        }
+    }
+
+    // Helper method: a shared input also depends on the world, so it stays fixed like an undriven one
+    private void linkInput(GateSettler cone, int index, int input, Block gateBlock, GateTopology topology,
+                           BlockFace face, GateData driver) {
+        int driverIndex = driver != null && !topology.isShared(face) ? cone.indexOf(driver) : -1;
+        if (driverIndex >= 0) {
+            cone.link(index, input, driverIndex);
+        } else if (readInput(gateBlock, topology, face, driver)) {
+            cone.setFixedInput(index, input);
+        }
+    }
+
+    // Helper method: run the checks that precede an update and resolve the gate's topology.
+    // Returns UPDATE_SKIPPED if the gate must not be updated now, otherwise UPDATE_NORMAL or UPDATE_FORCED.
+    private int checkUpdate(Block gateBlock, GateData data) {
+        if (data == null || data.isSuspended() || (gateLoader != null && gateLoader.isPending(gateBlock))) {
+            return UPDATE_SKIPPED;
+        }
+
+        // Validate carpet activation
+        GateTopology topology = resolveTopology(gateBlock, data);
+        if (!topology.hasCarpet()) {
+            return UPDATE_SKIPPED;
+        }
+
+        // Determine primary states
+        boolean currentPhysicalState = getRedstoneState(gateBlock, data.getFacing());
+        boolean forceUpdate = checkForceUpdate(data, currentPhysicalState);
+        if (!canUpdate(data, forceUpdate)) {
+            return UPDATE_SKIPPED;
+        }
+        return forceUpdate ? UPDATE_FORCED : UPDATE_NORMAL;
     }
 
     // Helper method: locate the output block, accounting for carpets
@@ -354,100 +899,136 @@ public class LogicGatesPlugin extends JavaPlugin {
     }
 
     // Helper method: check the cooldown based on ticks
-    private boolean canUpdate(Location loc, boolean forceUpdate) {
+    private boolean canUpdate(GateData data, boolean forceUpdate) {
         int ticks = isOneTick() ? 1 : 2;
-        Long lastTick = lastUpdateTicks.get(loc);
+        long lastTick = data.getLastUpdateTick();
 
         // If not forcing an update and not enough ticks have passed, skip
-        if (!forceUpdate && lastTick != null && (serverTick.get() - lastTick) < ticks) {
+        if (!forceUpdate && lastTick != 0 && (clock.getTick() - lastTick) < ticks) {
             return false;
         }
 
         // Record the current tick
-        lastUpdateTicks.put(loc, serverTick.get());
+        data.setLastUpdateTick(clock.getTick());
         return true;
     }
 
-    // Helper struct for holding input states
-    private static class InputStates {
-        boolean leftState;
-        boolean rightState;
-        boolean backState;
+    // Helper method: compute the three input states (left, right, back) as INPUT_* bits.
+    // getRedstoneState reports air as unpowered, so the input blocks are read only once.
+    private int determineInputStates(Block gateBlock, GateData data, GateTopology topology) {
+        BlockFace leftFacing = topology.left();
+        GateData leftDriver = topology.leftDriver();
 
-        InputStates(boolean left, boolean right, boolean back) {
-            this.leftState = left;
-            this.rightState = right;
-            this.backState = back;
+        // Special NOT gate handling
+        if (data.getType() == GateType.NOT && "opposite".equals(getNotGateInputPosition())) {
+            leftFacing = topology.back();
+            leftDriver = topology.backDriver();
         }
-    }
-
-    // Helper method: compute the three input states (left, right, back)
-    private InputStates determineInputStates(Block gateBlock, GateData data) {
-        BlockFace facing = data.getFacing();
-        BlockFace leftFacing = GateUtils.rotateCounterClockwise(facing, ROTATION_ORDER);
-        BlockFace rightFacing = GateUtils.rotateClockwise(facing, ROTATION_ORDER);
-        BlockFace backFacing = facing.getOppositeFace();
 
-        boolean leftState = getRedstoneState(gateBlock, leftFacing);
-        boolean rightState = getRedstoneState(gateBlock, rightFacing);
-        boolean backState = false;
+        int inputs = 0;
+        if (readInput(gateBlock, topology, leftFacing, leftDriver)) {
+            inputs |= INPUT_LEFT;
+        }
+        if (readInput(gateBlock, topology, topology.right(), topology.rightDriver())) {
+            inputs |= INPUT_RIGHT;
+        }
+        // Three-input gate handling (if needed)
+        int count = data.getInputCount();
+        if (count >= 3 && readInput(gateBlock, topology, topology.back(), topology.backDriver())) {
+            inputs |= INPUT_BACK;
+        }
+        return inputs | readStackedInputs(gateBlock, topology, count);
+    }
 
-        // Special NOT gate handling
-        if (data.getType() == GateType.NOT) {
-            String notInputLocation = getNotGateInputPosition();
-            if (notInputLocation.equals("opposite")) {
-                BlockFace currentFacing = facing.getOppositeFace();
-                leftState = getRedstoneState(gateBlock, currentFacing);
-                leftFacing = currentFacing;
+    // Helper method: read inputs 4 and up from the world as input bits; see INPUT_LAYER_SPACING
+    private int readStackedInputs(Block gateBlock, GateTopology topology, int count) {
+        int inputs = 0;
+        for (int input = INPUTS_PER_LAYER; input < count; input++) {
+            Block layer = gateBlock.getRelative(BlockFace.DOWN, input / INPUTS_PER_LAYER * INPUT_LAYER_SPACING);
+            BlockFace face = switch (input % INPUTS_PER_LAYER) {
+                case 0 -> topology.left();
+                case 1 -> topology.right();
+                default -> topology.back();
+            };
+            if (getRedstoneState(layer, face)) {
+                inputs |= 1 << input;
             }
         }
+        return inputs;
+    }
 
-        // Three-input gate handling (if needed)
-        if (data.isThreeInput()) {
-            backState = getRedstoneState(gateBlock, backFacing);
-            if (gateBlock.getRelative(backFacing).getType() == Material.AIR) {
-                backState = false;
+    /// Reads all inputs of a gate from the world, ignoring the gates that drive them. Used for inspection.
+    ///
+    /// @param gateBlock the gate block
+    /// @param data the gate's data
+    /// @return the input states, input 1 in bit 0
+    public int readInputStates(Block gateBlock, GateData data) {
+        BlockFace facing = data.getFacing();
+        BlockFace left = GateUtils.rotateCounterClockwise(facing, ROTATION_ORDER);
+        BlockFace right = GateUtils.rotateClockwise(facing, ROTATION_ORDER);
+        BlockFace back = facing.getOppositeFace();
+        int count = data.getInputCount();
+        int inputs = 0;
+        for (int input = 0; input < Math.max(count, 2); input++) {
+            Block layer = gateBlock.getRelative(BlockFace.DOWN, input / INPUTS_PER_LAYER * INPUT_LAYER_SPACING);
+            BlockFace face = switch (input % INPUTS_PER_LAYER) {
+                case 0 -> left;
+                case 1 -> right;
+                default -> back;
+            };
+            if (getRedstoneState(layer, face)) {
+                inputs |= 1 << input;
             }
         }
+        return inputs;
+    }
 
-        // Force false if input block is air
-        if (gateBlock.getRelative(leftFacing).getType() == Material.AIR) {
-            leftState = false;
-        }
-        if (gateBlock.getRelative(rightFacing).getType() == Material.AIR) {
-            rightState = false;
-        }
-        if (gateBlock.getRelative(backFacing).getType() == Material.AIR) {
-            backState = false;
+    // Helper method: take a gate-driven input from the driving gate, and any other input from the world.
+    // A shared input is on if either its driver or the world says so. Compatibility mode also depends
+    // on how the wire connects, so it always reads the world.
+    private boolean readInput(Block gateBlock, GateTopology topology, BlockFace face, GateData driver) {
+        if (driver != null && !redstoneCompatibility) {
+            return driver.getState() || (topology.isShared(face) && getRedstoneState(gateBlock, face));
         }
-
-        return new InputStates(leftState, rightState, backState);
+        return getRedstoneState(gateBlock, face);
     }
 
-    // Helper method: apply gate output to the world
+    // Helper method: apply gate output to the world and schedule the gates it drives
     private void applyGateOutput(Block gateBlock,
                                  GateData data,
-                                 Block outputBlock,
+                                 GateTopology topology,
+                                 boolean output,
+                                 int inputs,
+                                 boolean forceUpdate) {
+        writeGateOutput(gateBlock, data, topology, output, inputs, forceUpdate);
+        scheduleDependentUpdates(gateBlock.getWorld(), topology);
+    }
+
+    // Helper method: write gate output to the world if it changed or has to be forced
+    private void writeGateOutput(Block gateBlock,
+                                 GateData data,
+                                 GateTopology topology,
                                  boolean output,
-                                 InputStates inputs,
+                                 int inputs,
                                  boolean forceUpdate) {
         boolean needsUpdate = true;
         if (data.getType() != GateType.RS_LATCH) {
             needsUpdate = forceUpdate || (data.getState() != output);
         }
 
+        World world = gateBlock.getWorld();
         if (needsUpdate) {
+            Block outputBlock = world.getBlockAt(topology.outputX(), topology.outputY(), topology.outputZ());
             if (legacyMode) {
-                outputBlock.setType(output ? Material.REDSTONE_BLOCK : Material.REDSTONE_ORE);
+                outputWriter.writeType(outputBlock, output ? Material.REDSTONE_BLOCK : Material.REDSTONE_ORE);
             } else {
-                GateUtils.setRedstonePower(outputBlock, output ? 15 : 0);
+                outputWriter.writePower(outputBlock, output ? 15 : 0);
             }
             data.setState(output);
-            debugGateUpdate(gateBlock, data, inputs.leftState, inputs.rightState, inputs.backState, output);
-            gateBlock.getWorld().playSound(gateBlock.getLocation(), Sound.BLOCK_NOTE_BLOCK_PLING, 0.1f, 1.0f);
+            debugGateUpdate(gateBlock, data, (inputs & INPUT_LEFT) != 0, (inputs & INPUT_RIGHT) != 0,
+                    (inputs & INPUT_BACK) != 0, output);
+            gateSounds.play(gateBlock, data.getType());
         }
-
-        scheduleDependentUpdates(outputBlock, data.getFacing());
     }
     // endregion
 
@@ -565,29 +1146,60 @@ public class LogicGatesPlugin extends JavaPlugin {
     ///
     /// @param gateBlock the gate block to rotate
     public void rotateGate(Block gateBlock) {
-        GateData data = gates.get(gateBlock.getLocation());
+        GateData data = gateIndex.get(gateBlock);
         if (data == null) {
             return;
         }
 
-        int currentIndex = Arrays.asList(ROTATION_ORDER).indexOf(data.getFacing());
+        int currentIndex = GateUtils.indexOf(data.getFacing(), ROTATION_ORDER);
         int newIndex = (currentIndex + 1) % ROTATION_ORDER.length;
         data.setFacing(ROTATION_ORDER[newIndex]);
+        // Gates driven by this gate, or driving it, see a different netlist now
+        gateIndex.invalidateTopologyAround(gateBlock.getWorld(), gateBlock.getX(), gateBlock.getY(), gateBlock.getZ());
 
-        gates.put(gateBlock.getLocation(), data);
+        markGateDirty(gateBlock.getLocation());
         updateGate(gateBlock);
     }
 
     /// Saves the current configuration to file and clears all stored data.
     private void cleanupData() {
-        gates.clear();
+        if (regionEngine != null) {
+            regionEngine.clear();
+        }
+        gateIndex.clear();
         debugPlayers.clear();
         inspectionModePlayers.clear();
     }
 
-    /// Saves all gates to the configuration file.
+    /// Saves all gates to the gates file.
+    /// The snapshot is taken immediately, the write itself happens in the background.
     public void saveGates() {
-        gatesConfigManager.saveGates(gates);
+        gateSaveScheduler.flushNow();
+    }
+
+    /// Checks if gates from the gates file are still being registered after startup.
+    ///
+    /// @return `true` while the startup load is in progress
+    public boolean isLoadingGates() {
+        return gateLoader != null && !gateLoader.isFinished();
+    }
+
+    /// Exports the loaded gates to a readable JSON file for debugging.
+    ///
+    /// @return completes with the written file, or `null` if the export failed
+    public CompletableFuture<File> exportGates() {
+        return gateSaveScheduler.exportJson();
+    }
+
+    /// Marks a gate as changed so that it is persisted with the next coalesced save.
+    ///
+    /// @param loc the location of the created, removed or modified gate
+    public void markGateDirty(Location loc) {
+        gateSaveScheduler.markDirty(loc);
+    }
+
+    /// Persists the plugin settings to the configuration file.
+    public void saveSettings() {
         configManager.saveToFile();
     }
 
@@ -632,65 +1244,120 @@ public class LogicGatesPlugin extends JavaPlugin {
 
     // region Task Scheduling
 
-    /// Starts all scheduled tasks for gate updates, particles, and processing.
+    /// Starts all scheduled tasks for gate updates and particles.
     private void startScheduledTasks() {
-        initializeTickSystem();
-        startTimerUpdateTask();
+        startTickTask();
         startParticleTask();
-        startUpdateProcessingTask();
     }
 
-    /// Starts a repeating task to update timer gates every tick.
-    private void startTimerUpdateTask() {
-        timerGateUpdateTask = Bukkit.getScheduler().runTaskTimer(this, () ->
-        // Iterate over all gates and update those of TIMER type
-        gates.forEach((loc, data) -> {
-            if (data.getType() == GateType.TIMER) {
-                updateGate(loc.getBlock());
+    /// Starts the task that drives the gate engine every server tick: it advances the clock, toggles
+    /// the timers due up to the new tick and processes the scheduled gate updates within the update
+    /// budget, gates near players first.
+    ///
+    /// On a region-threaded server the task runs on the global region thread, which must not touch
+    /// blocks, so it only advances the clock: each chunk's timers and updates are run by the
+    /// [RegionGateEngine] on the thread that owns the chunk, and outputs are written as each chunk's task
+    /// runs, with its sounds played at the end of the run.
+    private void startTickTask() {
+        if (regionEngine != null) {
+            tickTask = taskScheduler.runGlobalTimer(clock::onServerTick, 1L, 1L);
+            return;
+        }
+
+        TimerWheel timers = gateIndex.getTimers();
+        TimerWheel.TimerVisitor fire = (world, x, y, z, data, deadline) ->
+                fireTimer(timers, world, x, y, z, data, deadline);
+        tickTask = taskScheduler.runGlobalTimer(() -> {
+            // Outputs written and sounds played during the tick are applied together at its end
+            outputWriter.begin();
+            gateSounds.begin();
+            try {
+                timers.advanceTo(clock.onServerTick(), fire);
+                if (updateScheduler.getQueueDepth() > 0) {
+                    observedChunks.update(Bukkit.getOnlinePlayers());
+                }
+                updateScheduler.process(this::updateGates, observedChunks);
+            } finally {
+                outputWriter.flush();
+                gateSounds.flush();
             }
-        }), 0L, 1L);
+        }, 1L, 1L);
+    }
+
+    /// Toggles a timer gate that is due and arms it for its next toggle.
+    ///
+    /// @param timers the wheel the timer fired on
+    private void fireTimer(TimerWheel timers, World world, int x, int y, int z, GateData data, long deadline) {
+        if (data.isSuspended()) {
+            // Stopped until the chunk is loaded again, which arms the timer anew
+            return;
+        }
+
+        Block gateBlock = world.getBlockAt(x, y, z);
+        if (!resolveTopology(gateBlock, data).hasCarpet()) {
+            // Inactive until a carpet is placed; check again after one interval instead of every tick
+            timers.arm(world, x, y, z, data);
+            return;
+        }
+
+        data.setState(!data.getState());
+        updateGate(gateBlock);
+        timers.scheduleAt(world, x, y, z, data, clock.nextDeadline(deadline, data.getIntervalTicks()));
     }
 
     /// Starts a repeating task to display particles near gates.
+    ///
+    /// On a region-threaded server each player's gates are drawn by the thread that owns the player.
     private void startParticleTask() {
-        particleTask = Bukkit.getScheduler().runTaskTimer(this, () -> {
+        particleTask = taskScheduler.runGlobalTimer(() -> {
             if (!particlesEnabled)
                 return; // Exit if particles are disabled
-            gates.forEach((loc, data) -> {
-                Block gateBlock = loc.getBlock();
-                // Only show particles for glass gates with an activation carpet
-                if (gateBlock.getType() == Material.GLASS && hasActivationCarpet(gateBlock)) {
-                    GateUtils.showParticles(this, gateBlock, data.getType(), data.getFacing(), particleViewDistance);
+            if (taskScheduler.isRegionThreaded()) {
+                for (Player player : Bukkit.getOnlinePlayers()) {
+                    taskScheduler.runForEntity(player, () -> {
+                        Set<Block> nearbyGates = new HashSet<>();
+                        collectNearbyGates(player, nearbyGates);
+                        showGateParticles(nearbyGates);
+                    });
                 }
-            });
+                return;
+            }
+
+            // Only gates near a player can be seen; each is drawn once even if several players are near it
+            Set<Block> nearbyGates = new HashSet<>();
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                collectNearbyGates(player, nearbyGates);
+            }
+            showGateParticles(nearbyGates);
         }, 0L, 10L);
     }
 
-    /// Starts a repeating task to process pending gate updates asynchronously
-    private void startUpdateProcessingTask() {
-        Bukkit.getScheduler().runTaskTimer(this, () -> {
-            // Process in batches
-            List<Location> batch = new ArrayList<>(gatesToUpdate.size());
-            while (true) {
-                Location loc = gatesToUpdate.poll();
-                if (loc == null)
-                    break;
-                batch.add(loc);
-            }
+    // Helper method: add the blocks of the gates within the particle view distance of a player
+    private void collectNearbyGates(Player player, Set<Block> nearbyGates) {
+        Location playerLoc = player.getLocation();
+        gateIndex.forEachInRadius(player.getWorld(), playerLoc.getX(), playerLoc.getY(), playerLoc.getZ(), particleViewDistance,
+                (world, x, y, z, data) -> {
+                    if (!data.isSuspended()) {
+                        nearbyGates.add(world.getBlockAt(x, y, z));
+                    }
+                });
+    }
 
-            batch.forEach(loc -> {
-                Block block = loc.getBlock();
-                if (block.getType() == Material.GLASS) {
-                    updateGate(block);
-                }
-            });
-        }, 1L, 1L);
+    // Helper method: draw the particles of the given gates
+    private void showGateParticles(Set<Block> gateBlocks) {
+        gateBlocks.forEach(gateBlock -> {
+            GateData data = gateIndex.get(gateBlock);
+            // Only show particles for glass gates with an activation carpet
+            if (data != null && gateBlock.getType() == Material.GLASS && hasActivationCarpet(gateBlock)) {
+                GateUtils.showParticles(this, gateBlock, data.getType(), data.getFacing(), particleViewDistance);
+            }
+        });
     }
 
-    /// Cancels scheduled tasks for timer gate updates and particle effects.
+    /// Cancels the tick task and the particle task.
     private void cancelTasks() {
-        if (timerGateUpdateTask != null) {
-            timerGateUpdateTask.cancel();
+        if (tickTask != null) {
+            tickTask.cancel();
         }
         if (particleTask != null) {
             particleTask.cancel();
@@ -782,13 +1449,52 @@ public class LogicGatesPlugin extends JavaPlugin {
 
     // region Getters/Setters
 
-    /// Returns the map of gate locations and their corresponding data.
+    /// Returns a view of the gates keyed by block location.
     ///
     /// @return the gates map
     public Map<Location, GateData> getGates() {
         return gates;
     }
 
+    /// Returns the gate index, for lookups by block or coordinates that do not allocate.
+    ///
+    /// @return the gate index
+    public GateIndex getGateIndex() {
+        return gateIndex;
+    }
+
+    /// Drops the cached topology of every gate whose neighbourhood overlaps a box, bounds included.
+    /// Meant for block changes that fire no event, such as WorldEdit edits; see [TopologyListener].
+    ///
+    /// @param world the world of the box
+    public void invalidateTopologies(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        gateIndex.invalidateTopologyIn(world, minX, minY, minZ, maxX, maxY, maxZ);
+    }
+
+    /// Drops the cached topology of every gate, e.g. after a command changed blocks anywhere.
+    public void invalidateTopologies() {
+        gateIndex.invalidateAllTopologies();
+    }
+
+    /// Finds the gates inside a box, bounds included. Uses the gate store's index when there is one,
+    /// otherwise the spatial index of the loaded gates.
+    ///
+    /// @param world the world to search
+    /// @return locations of the gates inside the box
+    public List<Location> findGateLocations(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        List<Location> found = new ArrayList<>();
+        if (gateStorage instanceof GateStoreStorage gateStoreStorage) {
+            for (GateUtils.LocationKey key : gateStoreStorage.findGates(world.getName(), minX, minY, minZ, maxX, maxY, maxZ)) {
+                found.add(new Location(world, key.x(), key.y(), key.z()));
+            }
+            return found;
+        }
+
+        gateIndex.forEachInBox(world, minX, minY, minZ, maxX, maxY, maxZ,
+                (gateWorld, x, y, z, data) -> found.add(new Location(gateWorld, x, y, z)));
+        return found;
+    }
+
     public Set<UUID> getCooldownModePlayers() {
         return cooldownModePlayers;
     }
@@ -797,11 +1503,19 @@ public class LogicGatesPlugin extends JavaPlugin {
         return pendingCooldowns;
     }
 
-    /// Returns the set of gate locations that require updates.
+    /// Returns the tick clock of the gate engine. Tests can advance it manually.
+    ///
+    /// @return the gate clock
+    public GateClock getClock() {
+        return clock;
+    }
+
+    /// Returns the scheduler of pending gate updates. Unused on region-threaded servers, where each chunk
+    /// has its own, see [#getRegionEngine()].
     ///
-    /// @return the set of gate locations to update
-    public ConcurrentLinkedQueue<Location> getGatesToUpdate() {
-        return gatesToUpdate;
+    /// @return the update scheduler
+    public GateUpdateScheduler getUpdateScheduler() {
+        return updateScheduler;
     }
 
     /// Returns the map associating carpet materials with gate types.
@@ -846,6 +1560,8 @@ public class LogicGatesPlugin extends JavaPlugin {
     /// @param legacyMode true to enable legacy mode, false to disable it.
     public void setLegacyMode(boolean legacyMode) {
         this.legacyMode = legacyMode;
+        // Which output blocks can carry a gate's state depends on the mode
+        gateIndex.invalidateAllTopologies();
     }
 
     /// Checks if the NotGateInputPosition mode is enabled.
@@ -862,6 +1578,20 @@ public class LogicGatesPlugin extends JavaPlugin {
         this.notGateInputPosition = notGateInputPosition;
     }
 
+    /// Checks if gates can have stacked inputs, more than three of them.
+    ///
+    /// @return true if stacked inputs are enabled, false otherwise.
+    public boolean isStackedInputs() {
+        return stackedInputs;
+    }
+
+    /// Enables stacked inputs, see [#INPUT_LAYER_SPACING].
+    ///
+    /// @param stackedInputs true to enable, false to disable them.
+    public void setStackedInputs(boolean stackedInputs) {
+        this.stackedInputs = stackedInputs;
+    }
+
     /// Checks if the one-tick mode is enabled.
     ///
     /// @return true if one-tick mode is enabled, false otherwise.
@@ -876,6 +1606,169 @@ public class LogicGatesPlugin extends JavaPlugin {
         this.oneTick = oneTick;
     }
 
+    /// Returns the active chunk-bound storage.
+    ///
+    /// @return the storage, or `null` when gates are stored in the gates file
+    public ChunkBoundStorage getChunkBoundStorage() {
+        return gateStorage instanceof ChunkBoundStorage chunkBoundStorage ? chunkBoundStorage : null;
+    }
+
+    /// Returns the loader of the gates file.
+    ///
+    /// @return the loader, or `null` when gates are not stored in the gates file
+    public GateLoader getGateLoader() {
+        return gateLoader;
+    }
+
+    /// Returns the configured gate storage mode.
+    ///
+    /// @return `file`, `region`, `chunk`, `mapped` or `sqlite`
+    public String getStorageMode() {
+        return storageMode;
+    }
+
+    /// Sets the gate storage mode. Takes effect on the next server start.
+    ///
+    /// @param storageMode `file`, `region`, `chunk`, `mapped` or `sqlite`
+    public void setStorageMode(String storageMode) {
+        this.storageMode = storageMode;
+    }
+
+    /// Returns the delay used to coalesce gate changes before they are saved.
+    ///
+    /// @return the save delay in server ticks
+    public long getSaveDelayTicks() {
+        return saveDelayTicks;
+    }
+
+    /// Sets the delay used to coalesce gate changes before they are saved.
+    ///
+    /// @param saveDelayTicks the save delay in server ticks
+    public void setSaveDelayTicks(long saveDelayTicks) {
+        this.saveDelayTicks = saveDelayTicks;
+    }
+
+    /// Sets what happens to timers that fall behind because the server lagged.
+    ///
+    /// @param latePolicy the late timer policy
+    public void setTimerLatePolicy(GateClock.LatePolicy latePolicy) {
+        clock.setLatePolicy(latePolicy);
+    }
+
+    /// Sets the most ticks the gate clock advances by in one server tick to catch up with real time.
+    ///
+    /// @param maxLagTicks the maximum number of ticks
+    public void setTimerMaxLagTicks(int maxLagTicks) {
+        clock.setMaxLagTicks(maxLagTicks);
+    }
+
+    /// Sets the most missed toggles a timer replays with the catch-up policy.
+    ///
+    /// @param maxCatchUp the maximum number of replayed toggles
+    public void setTimerMaxCatchUp(int maxCatchUp) {
+        clock.setMaxCatchUp(maxCatchUp);
+    }
+
+    /// Sets the number of threads that evaluate large waves of gate updates in parallel.
+    ///
+    /// @param threads the number of worker threads; below 2 all gates are evaluated on the main thread
+    public void setEvaluationThreads(int threads) {
+        evaluator.setThreads(threads);
+    }
+
+    /// Sets the smallest wave of gate updates that is evaluated in parallel.
+    ///
+    /// @param threshold the minimum number of gates
+    public void setParallelEvaluationThreshold(int threshold) {
+        evaluator.setThreshold(threshold);
+    }
+
+    /// Sets how many gate updates may be pending before further updates are held back until the queue drains.
+    ///
+    /// @param maxQueuedUpdates the maximum number of pending updates
+    public void setMaxQueuedUpdates(int maxQueuedUpdates) {
+        updateScheduler.setMaxPending(maxQueuedUpdates);
+        if (regionEngine != null) {
+            regionEngine.setMaxPending(maxQueuedUpdates);
+        }
+    }
+
+    /// Enables or disables settling of combinational gates within one tick.
+    ///
+    /// @param settleCombinational `true` to settle combinational cones in the tick they change
+    public void setSettleCombinational(boolean settleCombinational) {
+        this.settleCombinational = settleCombinational;
+    }
+
+    /// Sets the most gates settled together in one tick; gates beyond are updated on later ticks.
+    ///
+    /// @param settleMaxGates the maximum cone size
+    public void setSettleMaxGates(int settleMaxGates) {
+        this.settleMaxGates = settleMaxGates;
+    }
+
+    /// Sets the most passes over a cone before a loop that keeps changing is left to later ticks.
+    ///
+    /// @param settleMaxPasses the maximum number of passes
+    public void setSettleMaxPasses(int settleMaxPasses) {
+        this.settleMaxPasses = settleMaxPasses;
+    }
+
+    /// Sets how many gate updates may be processed per tick before the rest is carried over.
+    ///
+    /// @param maxUpdatesPerTick the maximum number of updates per tick, 0 for no limit
+    public void setMaxUpdatesPerTick(int maxUpdatesPerTick) {
+        updateScheduler.setMaxPerTick(maxUpdatesPerTick);
+        if (regionEngine != null) {
+            regionEngine.setMaxPerTick(maxUpdatesPerTick);
+        }
+    }
+
+    /// Sets how long gate updates may take per tick before the rest is carried over.
+    ///
+    /// @param updateBudgetMillis the time budget in milliseconds, 0 for no limit
+    public void setUpdateBudgetMillis(double updateBudgetMillis) {
+        updateScheduler.setBudgetMillis(updateBudgetMillis);
+        if (regionEngine != null) {
+            regionEngine.setBudgetMillis(updateBudgetMillis);
+        }
+    }
+
+    /// Sets the distance from players within which gate updates are processed first.
+    ///
+    /// @param priorityRadiusChunks the distance in chunks
+    public void setPriorityRadiusChunks(int priorityRadiusChunks) {
+        observedChunks.setRadius(priorityRadiusChunks);
+    }
+
+    /// Checks if gate changes are appended to the journal instead of rewriting the gates file.
+    ///
+    /// @return `true` if journal mode is enabled, otherwise `false`
+    public boolean isJournalMode() {
+        return journalMode;
+    }
+
+    /// Enables or disables journal mode.
+    ///
+    /// @param journalMode `true` to append changes to the journal, `false` to rewrite the gates file
+    public void setJournalMode(boolean journalMode) {
+        this.journalMode = journalMode;
+    }
+
+    /// Returns the journal size after which it is compacted into a new snapshot.
+    ///
+    /// @return the compaction threshold in bytes
+    public long getJournalCompactThreshold() {
+        return journalCompactThreshold;
+    }
+
+    /// Sets the journal size after which it is compacted into a new snapshot.
+    ///
+    /// @param journalCompactThreshold the compaction threshold in bytes
+    public void setJournalCompactThreshold(long journalCompactThreshold) {
+        this.journalCompactThreshold = journalCompactThreshold;
+    }
+
     /// Checks if particle effects are enabled.
     ///
     /// @return `true` if particles are enabled, otherwise `false`
@@ -957,11 +1850,10 @@ public class LogicGatesPlugin extends JavaPlugin {
     }
 
     /// Reloads the global configuration for the plugin.
-    /// This involves reloading the main configuration settings.
-    /// and reloading the gate configurations.
+    /// This reloads the main configuration settings only: the registered gates are the live state, and
+    /// re-reading the saved gates while edits are still waiting to be written would undo those edits.
     public void reloadGlobalConfiguration() {
         configManager.reloadConfiguration();
-        gatesConfigManager.loadGates(gates);
     }
     // endregion
 }
@@ -18,12 +18,18 @@ import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 import org.bukkit.persistence.PersistentDataType;
 import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
 import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
 import pl.bednarskiwsieci.logicgatesplugin.util.ConfigManager;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateIndex;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateUpdateScheduler;
+import pl.bednarskiwsieci.logicgatesplugin.util.RegionGateEngine;
 import pl.bednarskiwsieci.logicgatesplugin.util.UpdateChecker;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Set;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 /// Handles execution of the /logicgates command and its subcommands.
@@ -104,6 +110,9 @@ public class LogicGatesCommand implements CommandExecutor {
             case "help" -> sendHelpInformation(sender);
             case "author" -> sendAuthorInfo(sender);
             case "save" -> handleSaveCommand(sender);
+            case "export" -> handleExportCommand(sender);
+            case "memory" -> handleMemoryCommand(sender);
+            case "queue" -> handleQueueCommand(sender);
             case "redstonecompatibility" -> handleRedstoneCompatibility(sender, args);
             case "fixparticles" -> handleFixParticles(sender);
             case "particles" -> handleParticlesToggle(sender, args);
@@ -269,18 +278,35 @@ public class LogicGatesCommand implements CommandExecutor {
         }
 
         try {
-            int cooldown = Integer.parseInt(args[1]);
-            if (cooldown < 1) throw new NumberFormatException();
+            int cooldownTicks = parseTimerTicks(args[1]);
+            if (cooldownTicks < 1) throw new NumberFormatException();
 
-            plugin.getPendingCooldowns().put(player.getUniqueId(), cooldown);
+            plugin.getPendingCooldowns().put(player.getUniqueId(), cooldownTicks);
             plugin.getCooldownModePlayers().add(player.getUniqueId());
 
-            player.sendMessage(plugin.getMessage("timer_cooldown_mode_enter", String.valueOf(cooldown)));
+            player.sendMessage(plugin.getMessage("timer_cooldown_mode_enter", formatTimerSeconds(cooldownTicks)));
         } catch (NumberFormatException e) {
             player.sendMessage(plugin.getMessage("errors.cooldown_invalid"));
         }
     }
 
+    /// Parses a timer interval given in seconds (`1`, `0.25`) or in ticks (`5t`).
+    ///
+    /// @return the interval in ticks, rounded to the nearest tick
+    private static int parseTimerTicks(String value) {
+        if (value.endsWith("t") || value.endsWith("T")) {
+            return Integer.parseInt(value.substring(0, value.length() - 1));
+        }
+        double seconds = Double.parseDouble(value);
+        if (!Double.isFinite(seconds) || seconds > Integer.MAX_VALUE / 20.0) throw new NumberFormatException();
+        return (int) Math.round(seconds * 20);
+    }
+
+    /// @return the interval in seconds, without trailing zeros
+    public static String formatTimerSeconds(long ticks) {
+        return BigDecimal.valueOf(ticks * GateData.MILLIS_PER_TICK, 3).stripTrailingZeros().toPlainString();
+    }
+
     //region Rotation mode
 
     /// Handles inspection mode activation
@@ -367,9 +393,69 @@ public class LogicGatesCommand implements CommandExecutor {
     private void handleSaveCommand(CommandSender sender) {
         if (!validateAdminPermission(sender)) return;
         plugin.saveGates();
+        plugin.saveSettings();
         sender.sendMessage(plugin.getMessage("save_success"));
     }
 
+    /// Handles export of the loaded gates to JSON
+    /// @param sender Command sender
+    private void handleExportCommand(CommandSender sender) {
+        if (!validateAdminPermission(sender)) return;
+        plugin.exportGates().thenAccept(file -> plugin.getTaskScheduler().runGlobal(() -> {
+            if (file != null) {
+                sender.sendMessage(plugin.getMessage("export_success", file.getName()));
+            } else {
+                sender.sendMessage(plugin.getMessage("export_failed"));
+            }
+        }));
+    }
+
+    /// Reports the estimated heap use of the loaded gates
+    /// @param sender Command sender
+    private void handleMemoryCommand(CommandSender sender) {
+        if (!validateAdminPermission(sender)) return;
+        GateIndex.MemoryStats stats = plugin.getGateIndex().memoryStats();
+        long legacyBytes = (long) stats.gates() * GateIndex.MemoryStats.LEGACY_BYTES_PER_GATE;
+        sender.sendMessage(plugin.getMessageWithoutPrefix("memory_header"));
+        sender.sendMessage(plugin.getMessage("memory_gates", stats.gates()));
+        sender.sendMessage(plugin.getMessage("memory_current", formatBytes(stats.recordBytes() + stats.indexBytes()),
+                stats.bytesPerGate(), formatBytes(stats.recordBytes()), formatBytes(stats.indexBytes())));
+        sender.sendMessage(plugin.getMessage("memory_legacy", formatBytes(legacyBytes),
+                GateIndex.MemoryStats.LEGACY_BYTES_PER_GATE));
+    }
+
+    private void handleQueueCommand(CommandSender sender) {
+        if (!validateAdminPermission(sender)) return;
+        sender.sendMessage(plugin.getMessageWithoutPrefix("queue_header"));
+        if (plugin.getRegionEngine() != null) {
+            sender.sendMessage(plugin.getMessage("queue_regions", plugin.getRegionEngine().getShardCount()));
+        }
+        sender.sendMessage(plugin.getMessage("queue_depth", queueCount(GateUpdateScheduler::getQueueDepth)));
+        sender.sendMessage(plugin.getMessage("queue_parked", queueCount(GateUpdateScheduler::getParkedCount)));
+        sender.sendMessage(plugin.getMessage("queue_overflow", queueCount(GateUpdateScheduler::getOverflowCount)));
+        sender.sendMessage(plugin.getMessage("queue_backlog", queueCount(GateUpdateScheduler::getBacklog),
+                queueCount(GateUpdateScheduler::getNearBacklog), queueCount(GateUpdateScheduler::getDeferredCount)));
+        sender.sendMessage(plugin.getMessage("queue_writes", plugin.getOutputWriter().getWrittenCount(),
+                plugin.getOutputWriter().getElidedCount()));
+        sender.sendMessage(plugin.getMessage("queue_sounds", plugin.getGateSounds().getPlayedCount(),
+                plugin.getGateSounds().getSuppressedCount()));
+        sender.sendMessage(plugin.getMessage("queue_counters", queueCount(GateUpdateScheduler::getProcessedCount),
+                queueCount(GateUpdateScheduler::getCoalescedCount), queueCount(GateUpdateScheduler::getDroppedCount)));
+    }
+
+    // Helper method: read a counter of the update scheduler, summed over all chunks on region-threaded servers
+    private long queueCount(ToLongFunction<GateUpdateScheduler> counter) {
+        RegionGateEngine regionEngine = plugin.getRegionEngine();
+        return regionEngine != null ? regionEngine.sum(counter) : counter.applyAsLong(plugin.getUpdateScheduler());
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024 * 1024) {
+            return String.format("%.1f KiB", bytes / 1024.0);
+        }
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+
     /// Validates if sender has admin permissions
     /// @param sender Command sender
     /// @return true if has permission, false otherwise
@@ -434,7 +520,7 @@ public class LogicGatesCommand implements CommandExecutor {
     private void sendHelpInformation(CommandSender sender) {
         sender.sendMessage(plugin.getMessageWithoutPrefix("help_header"));
         sendMultipleMessages(sender, "help_menu", "help_howto", "help_rotate",
-                "help_inspect", "help_particles", "help_save",
+                "help_inspect", "help_particles", "help_save", "help_export", "help_memory", "help_queue",
                 "help_fixparticles", "help_language", "help_redstonecompatibility",
                 "help_toggleinput", "help_timer");
     }
@@ -482,7 +568,7 @@ public class LogicGatesCommand implements CommandExecutor {
             }
             default -> sender.sendMessage(plugin.getMessage("redstonecompatibility_invalid_state"));
         }
-        plugin.saveGates();
+        plugin.saveSettings();
     }
 
     /// Handles particles system fix command
@@ -516,7 +602,7 @@ public class LogicGatesCommand implements CommandExecutor {
             }
             default -> sender.sendMessage(plugin.getMessage("particles_invalid_state"));
         }
-        plugin.saveGates();
+        plugin.saveSettings();
     }
 
     /// Handles language change
@@ -533,7 +619,7 @@ public class LogicGatesCommand implements CommandExecutor {
         String languageCode = args[1].toLowerCase();
         if (plugin.getMessages().get("messages." + languageCode) != null) {
             plugin.setDefaultLang(languageCode);
-            plugin.saveGates();
+            plugin.saveSettings();
             sender.sendMessage(plugin.getMessage("language_changed"));
         } else {
             sender.sendMessage(plugin.getMessage("language_invalid"));
@@ -6,6 +6,7 @@ import com.google.gson.JsonSyntaxException;
 import com.sk89q.worldedit.EditSession;
 import com.sk89q.worldedit.IncompleteRegionException;
 import com.sk89q.worldedit.WorldEdit;
+import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.event.extent.EditSessionEvent;
 import com.sk89q.worldedit.extension.platform.Actor;
@@ -14,7 +15,9 @@ import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.util.eventbus.Subscribe;
 import com.sk89q.worldedit.world.block.BaseBlock;
+import com.sk89q.worldedit.world.block.BlockStateHolder;
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.*;
@@ -32,6 +35,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.ToIntFunction;
 
 /**
  * This class shows an example of how to implement a "batch" approach to marking gates before
@@ -61,11 +65,16 @@ public class WorldEditIntegration implements Listener {
             var selectionWorld = localSession.getSelectionWorld();
             Region selectedRegion = localSession.getSelection(selectionWorld);
 
-            // Collect all valid gates first
+            // Collect all valid gates first, looking up known gates instead of every block in the selection
             List<Block> gateBlocks = new ArrayList<>();
-            for (BlockVector3 blockPos : selectedRegion) {
-                Block baseBlock = BukkitAdapter.adapt(selectionWorld)
-                        .getBlockAt(blockPos.x(), blockPos.y(), blockPos.z());
+            World world = BukkitAdapter.adapt(selectionWorld);
+            BlockVector3 min = selectedRegion.getMinimumPoint();
+            BlockVector3 max = selectedRegion.getMaximumPoint();
+            for (Location loc : plugin.findGateLocations(world, min.x(), min.y(), min.z(), max.x(), max.y(), max.z())) {
+                if (!selectedRegion.contains(BlockVector3.at(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()))) {
+                    continue;
+                }
+                Block baseBlock = loc.getBlock();
                 Block carpetBlock = baseBlock.getRelative(BlockFace.UP);
                 if (isValidGate(baseBlock, carpetBlock)) {
                     gateBlocks.add(baseBlock);
@@ -74,7 +83,7 @@ public class WorldEditIntegration implements Listener {
 
             // Process all gates in one batch
             for (Block glassBlock : gateBlocks) {
-                GateData gateData = plugin.getGates().get(glassBlock.getLocation());
+                GateData gateData = plugin.getGateIndex().get(glassBlock);
                 if (gateData != null) {
                     // Temporarily change glass to chest and store gate data
                     glassBlock.setType(Material.CHEST);
@@ -87,6 +96,7 @@ public class WorldEditIntegration implements Listener {
                         // Store the facing and other data
                         gateMetadata.put("facing", gateData.getFacing().name());
                         gateMetadata.put("isThreeInput", gateData.isThreeInput());
+                        gateMetadata.put("inputs", gateData.getConfiguredInputCount());
                         gateMetadata.put("state", gateData.getState());
 
                         if (gateData.getType() == GateType.TIMER) {
@@ -100,14 +110,15 @@ public class WorldEditIntegration implements Listener {
                 }
             }
 
-            // Revert all blocks back to glass in one scheduled task
-            Bukkit.getScheduler().runTaskLater(plugin, () -> {
-                for (Block glassBlock : gateBlocks) {
-                    if (glassBlock.getType() == Material.CHEST) {
-                        glassBlock.setType(Material.GLASS);
-                    }
-                }
-            }, 1L);
+            // Revert all blocks back to glass in one scheduled task per chunk, run by the thread owning it
+            groupByChunk(gateBlocks, Block::getX, Block::getZ).forEach((chunkKey, chunkBlocks) ->
+                    plugin.getTaskScheduler().runInRegionLater(world, (int) (chunkKey >> 32), (int) (long) chunkKey, () -> {
+                        for (Block glassBlock : chunkBlocks) {
+                            if (glassBlock.getType() == Material.CHEST) {
+                                glassBlock.setType(Material.GLASS);
+                            }
+                        }
+                    }, 1L));
         }
     }
 
@@ -119,6 +130,10 @@ public class WorldEditIntegration implements Listener {
     public void onEditSession(EditSessionEvent event) {
         Actor actor = event.getActor();
 
+        if (event.getStage() == EditSession.Stage.BEFORE_CHANGE) {
+            trackEditedBox(event);
+        }
+
         if (actor != null && actor.isPlayer() && event.getStage() == EditSession.Stage.BEFORE_CHANGE) {
             List<BlockVector3> changedPositions = new ArrayList<>();
 
@@ -132,16 +147,41 @@ public class WorldEditIntegration implements Listener {
                 }
             });
 
-            // After the blocks have been tracked, schedule a single task to handle them all
-            Bukkit.getScheduler().runTask(plugin, () -> {
+            // After the blocks have been tracked, schedule a single task to handle them all,
+            // which hands each chunk's positions to the thread owning the chunk
+            plugin.getTaskScheduler().runGlobal(() -> {
                 World bukkitWorld = Bukkit.getWorld(event.getWorld().getName());
                 if (bukkitWorld != null) {
-                    restoreGatesInBatch(bukkitWorld, changedPositions, actor);
+                    groupByChunk(changedPositions, BlockVector3::x, BlockVector3::z).forEach((chunkKey, positions) ->
+                            plugin.getTaskScheduler().runInRegion(bukkitWorld, (int) (chunkKey >> 32),
+                                    (int) (long) chunkKey, () -> restoreGatesInBatch(bukkitWorld, positions, actor)));
                 }
             });
         }
     }
 
+    /**
+     * Records the box of blocks set by an edit, from any actor, and drops the cached topologies of the gates
+     * around it once the edit is done, as WorldEdit changes blocks without firing block events.
+     */
+    private void trackEditedBox(EditSessionEvent event) {
+        EditedBox box = new EditedBox();
+        event.setExtent(new AbstractDelegateExtent(event.getExtent()) {
+            @Override
+            public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 position, T block) throws WorldEditException {
+                box.add(position);
+                return super.setBlock(position, block);
+            }
+        });
+
+        plugin.getTaskScheduler().runGlobalLater(() -> {
+            World bukkitWorld = Bukkit.getWorld(event.getWorld().getName());
+            if (bukkitWorld != null && !box.isEmpty()) {
+                plugin.invalidateTopologies(bukkitWorld, box.minX, box.minY, box.minZ, box.maxX, box.maxY, box.maxZ);
+            }
+        }, 1L);
+    }
+
     /**
      * Batch method that processes all changed positions in one go, checking if any are
      * valid chests-with-book and converting them back to gates.
@@ -159,6 +199,7 @@ public class WorldEditIntegration implements Listener {
                 // Default values
                 BlockFace facing = BlockFace.EAST;
                 Boolean isThreeInput = false;
+                Integer inputs = null;
                 Boolean state = false;
                 Long interval = 1000L;
 
@@ -184,6 +225,9 @@ public class WorldEditIntegration implements Listener {
                             // Retrieve original data
                             facing = BlockFace.valueOf(data.get("facing").getAsString());
                             isThreeInput = Boolean.valueOf(data.get("isThreeInput").getAsString());
+                            if (data.get("inputs") != null) {
+                                inputs = data.get("inputs").getAsInt();
+                            }
                             state = Boolean.valueOf(data.get("state").getAsString());
                             if (data.get("interval") != null) {
                                 interval = Long.valueOf(data.get("interval").getAsString());
@@ -200,7 +244,7 @@ public class WorldEditIntegration implements Listener {
                     GateType gateType = plugin.getCarpetTypes().get(carpetBlock.getType());
 
                     // Apply original data
-                    GateData gateData = new GateData(facing, gateType);
+                    GateData gateData = GateData.create(facing, gateType);
                     if (state != null) {
                         gateData.setState(state);
                     }
@@ -209,6 +253,10 @@ public class WorldEditIntegration implements Listener {
                         gateData.setThreeInput(isThreeInput);
                     }
 
+                    if (inputs != null) {
+                        gateData.setInputCount(inputs);
+                    }
+
                     if (interval != null) {
                         gateData.setInterval(interval);
                     }
@@ -219,6 +267,39 @@ public class WorldEditIntegration implements Listener {
         }
     }
 
+    /**
+     * Bounding box of the blocks set by an edit.
+     */
+    private static final class EditedBox {
+        private int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, minZ = Integer.MAX_VALUE;
+        private int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE, maxZ = Integer.MIN_VALUE;
+
+        synchronized void add(BlockVector3 position) {
+            minX = Math.min(minX, position.x());
+            minY = Math.min(minY, position.y());
+            minZ = Math.min(minZ, position.z());
+            maxX = Math.max(maxX, position.x());
+            maxY = Math.max(maxY, position.y());
+            maxZ = Math.max(maxZ, position.z());
+        }
+
+        synchronized boolean isEmpty() {
+            return minX > maxX;
+        }
+    }
+
+    /**
+     * Groups blocks by the chunk holding them, keyed by the chunk X in the high and Z in the low 32 bits.
+     */
+    private static <T> Map<Long, List<T>> groupByChunk(List<T> items, ToIntFunction<T> x, ToIntFunction<T> z) {
+        Map<Long, List<T>> byChunk = new HashMap<>();
+        for (T item : items) {
+            long chunkKey = ((long) (x.applyAsInt(item) >> 4) << 32) | ((z.applyAsInt(item) >> 4) & 0xFFFFFFFFL);
+            byChunk.computeIfAbsent(chunkKey, key -> new ArrayList<>()).add(item);
+        }
+        return byChunk;
+    }
+
     /**
      * Checks whether the given block and the block above it fulfill the gate criteria (glass + activation carpet).
      */
@@ -231,8 +312,8 @@ public class WorldEditIntegration implements Listener {
      * Registers the new gate data in the plugin.
      */
     private void registerNewGate(Block baseBlock, GateData data) {
-        plugin.getGates().put(baseBlock.getLocation(), data);
+        plugin.getGateIndex().put(baseBlock, data);
         plugin.updateGate(baseBlock);
-        plugin.saveGates();
+        plugin.markGateDirty(baseBlock.getLocation());
     }
 }
\ No newline at end of file
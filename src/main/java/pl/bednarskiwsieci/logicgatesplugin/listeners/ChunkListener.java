@@ -0,0 +1,76 @@
+package pl.bednarskiwsieci.logicgatesplugin.listeners;
+
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldSaveEvent;
+import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.util.ChunkBoundStorage;
+import pl.bednarskiwsieci.logicgatesplugin.util.GateLoader;
+
+/// Listener class for chunk load and unload events.
+/// Keeps the gates of chunk-bound storage in sync with the chunks that are currently loaded, and
+/// suspends the simulation of gates in chunks that are not.
+public class ChunkListener implements Listener {
+
+    private final LogicGatesPlugin plugin;
+
+    /// Constructor for ChunkListener.
+    ///
+    /// @param plugin The main plugin instance.
+    public ChunkListener(LogicGatesPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /// Registers the gates stored for a chunk once it has been loaded and resumes its gates.
+    ///
+    /// @param event The ChunkLoadEvent triggered when a chunk is loaded.
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        ChunkBoundStorage chunkBoundStorage = plugin.getChunkBoundStorage();
+        if (chunkBoundStorage != null) {
+            chunkBoundStorage.onChunkLoad(chunk);
+        }
+        plugin.resumeChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+    }
+
+    /// Suspends the gates of a chunk that is being unloaded and unregisters them from chunk-bound storage.
+    ///
+    /// @param event The ChunkUnloadEvent triggered when a chunk is unloaded.
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        Chunk chunk = event.getChunk();
+        plugin.suspendChunk(chunk.getWorld(), chunk.getX(), chunk.getZ());
+        ChunkBoundStorage chunkBoundStorage = plugin.getChunkBoundStorage();
+        if (chunkBoundStorage != null) {
+            chunkBoundStorage.onChunkUnload(chunk);
+        }
+    }
+
+    /// Registers the gates of a world that was not loaded when the gates file was read.
+    ///
+    /// @param event The WorldLoadEvent triggered when a world is loaded.
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldLoad(WorldLoadEvent event) {
+        GateLoader gateLoader = plugin.getGateLoader();
+        if (gateLoader != null) {
+            gateLoader.onWorldLoad(event.getWorld());
+        }
+    }
+
+    /// Copies pending gate changes into the chunks before the server saves the world.
+    ///
+    /// @param event The WorldSaveEvent triggered when a world is saved.
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onWorldSave(WorldSaveEvent event) {
+        ChunkBoundStorage chunkBoundStorage = plugin.getChunkBoundStorage();
+        if (chunkBoundStorage != null) {
+            chunkBoundStorage.writeDirty();
+        }
+    }
+}
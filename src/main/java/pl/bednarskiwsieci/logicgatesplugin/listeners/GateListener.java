@@ -1,6 +1,5 @@
 package pl.bednarskiwsieci.logicgatesplugin.listeners;
 
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.Material;
 import org.bukkit.NamespacedKey;
@@ -40,6 +39,9 @@ public class GateListener implements Listener {
 
     // Define the rotation order for gate directions (North -> East -> South -> West)
     public static final BlockFace[] ROTATION_ORDER = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST};
+    // Faces sharing a side with a block
+    private static final BlockFace[] ADJACENT_FACES = {BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH,
+            BlockFace.WEST, BlockFace.UP, BlockFace.DOWN};
     private final LogicGatesPlugin plugin;
     private final ConfigManager configManager;
     private final UpdateChecker updateChecker;
@@ -130,15 +132,15 @@ public class GateListener implements Listener {
 
                 // Create a new gate
                 GateType type = plugin.getCarpetTypes().get(placedBlock.getType());
-                GateData data = new GateData(getPlayerFacingDirection(player), type);
+                GateData data = GateData.create(getPlayerFacingDirection(player), type);
                 boolean defaultState = GateUtils.calculateOutput(type, false, false, false, data);
                 data.setState(defaultState);
 
                 // Force initial update bypassing cooldown
-                plugin.getGates().put(glassBlockBelow.getLocation(), data);
+                plugin.getGateIndex().put(glassBlockBelow, data);
 
                 plugin.updateGate(glassBlockBelow);
-                plugin.saveGates();
+                plugin.markGateDirty(glassBlockBelow.getLocation());
 
                 player.sendMessage(plugin.getMessage("gate_created", type.name()));
             }
@@ -147,8 +149,8 @@ public class GateListener implements Listener {
         // Update neighboring gates after placing a block
         for (BlockFace face : ROTATION_ORDER) {
             Block neighbor = placedBlock.getRelative(face);
-            if (neighbor.getType() == Material.GLASS && plugin.getGates().containsKey(neighbor.getLocation())) {
-                GateData data = plugin.getGates().get(neighbor.getLocation());
+            if (neighbor.getType() == Material.GLASS && plugin.getGateIndex().contains(neighbor)) {
+                GateData data = plugin.getGateIndex().get(neighbor);
                 if (data == null || !plugin.hasActivationCarpet(neighbor)) {
                     return;
                 }
@@ -182,7 +184,7 @@ public class GateListener implements Listener {
         // Handle breaking of carpets (activation blocks for gates)
         if (plugin.getCarpetTypes().containsKey(brokenBlock.getType())) {
             Block gateBlock = brokenBlock.getRelative(BlockFace.DOWN);
-            if (gateBlock.getType() == Material.GLASS && plugin.getGates().containsKey(gateBlock.getLocation())) {
+            if (gateBlock.getType() == Material.GLASS && plugin.getGateIndex().contains(gateBlock)) {
                 if (!player.hasPermission("logicgates.break")) {
                     event.setCancelled(true);
                     player.sendMessage(plugin.getMessage("errors.no_permission"));
@@ -193,8 +195,8 @@ public class GateListener implements Listener {
                 event.setCancelled(true);
 
                 // Remove gate data
-                plugin.getGates().remove(gateBlock.getLocation());
-                plugin.saveGates();
+                plugin.getGateIndex().remove(gateBlock);
+                plugin.markGateDirty(gateBlock.getLocation());
                 player.sendMessage(plugin.getMessage("gate_removed"));
 
                 // Create and add a special carpet item to the player's inventory
@@ -215,19 +217,19 @@ public class GateListener implements Listener {
         // Update neighboring gates after breaking a block
         for (BlockFace face : ROTATION_ORDER) {
             Block neighbor = brokenBlock.getRelative(face);
-            if (neighbor.getType() == Material.GLASS && plugin.getGates().containsKey(neighbor.getLocation())) {
-                GateData data = plugin.getGates().get(neighbor.getLocation());
+            if (neighbor.getType() == Material.GLASS && plugin.getGateIndex().contains(neighbor)) {
+                GateData data = plugin.getGateIndex().get(neighbor);
                 if (data == null || !plugin.hasActivationCarpet(neighbor)) {
                     return;
                 }
 
-                Bukkit.getScheduler().runTaskLater(plugin, () -> plugin.updateGate(neighbor), 1L);
+                plugin.scheduleUpdate(neighbor.getWorld(), neighbor.getX(), neighbor.getY(), neighbor.getZ(), 0);
             }
         }
     }
 
     private boolean isBlockGate(BlockBreakEvent event, Player player, Block gateBlock) {
-        if (gateBlock.getType() == Material.GLASS && plugin.getGates().containsKey(gateBlock.getLocation())) {
+        if (gateBlock.getType() == Material.GLASS && plugin.getGateIndex().contains(gateBlock)) {
             if (!player.hasPermission("logicgates.break")) {
                 event.setCancelled(true);
                 player.sendMessage(plugin.getMessage("errors.no_permission"));
@@ -235,8 +237,8 @@ public class GateListener implements Listener {
             }
 
             // Remove the gate and associated carpet
-            plugin.getGates().remove(gateBlock.getLocation());
-            plugin.saveGates();
+            plugin.getGateIndex().remove(gateBlock);
+            plugin.markGateDirty(gateBlock.getLocation());
             player.sendMessage(plugin.getMessage("gate_removed"));
 
             // Remove the carpet above the glass block
@@ -294,13 +296,13 @@ public class GateListener implements Listener {
     /// @param event The BlockRedstoneEvent triggered when redstone power changes.
     @EventHandler
     public void onRedstoneChange(BlockRedstoneEvent event) {
-        // Mark adjacent glass blocks as needing updates when redstone changes
-        for (BlockFace face : BlockFace.values()) {
-            Block possibleGate = event.getBlock().getRelative(face);
-            if (possibleGate.getType() == Material.GLASS) {
-                plugin.getGatesToUpdate().add(possibleGate.getLocation());
-            }
+        // Schedule the adjacent gates; each is updated at most once per tick
+        Block source = event.getBlock();
+        for (BlockFace face : ADJACENT_FACES) {
+            plugin.scheduleUpdate(source.getWorld(), source.getX() + face.getModX(),
+                    source.getY() + face.getModY(), source.getZ() + face.getModZ(), 0);
         }
+        plugin.scheduleStackedInputUpdates(source.getWorld(), source.getX(), source.getY(), source.getZ());
     }
 
     /// Handles the PlayerInteractEvent for gate inspection and rotation.
@@ -322,7 +324,7 @@ public class GateListener implements Listener {
                 return;
             }
 
-            GateData data = plugin.getGates().get(clicked.getLocation());
+            GateData data = plugin.getGateIndex().get(clicked);
             if (data == null) return;
 
             if (
@@ -334,14 +336,16 @@ public class GateListener implements Listener {
                 return; // Ignore TIMER, NOT, RS_LATCH gates
             }
 
-            boolean newState = !data.isThreeInput();
-            data.setThreeInput(newState); // Toggle
+            // Cycle 2 and 3 inputs, or 2 to 8 with stacked inputs
+            int maxInputs = plugin.isStackedInputs() ? GateData.MAX_INPUTS : 3;
+            int inputCount = data.getConfiguredInputCount() >= maxInputs ? 2 : data.getConfiguredInputCount() + 1;
+            data.setInputCount(inputCount);
 
             player.sendMessage(plugin.getMessage("gate_input_toggled",
                     data.getType().name(),
-                    newState ? "3" : "2"));
+                    String.valueOf(inputCount)));
 
-            plugin.saveGates();
+            plugin.markGateDirty(clicked.getLocation());
             plugin.getInputToggleModePlayers().remove(player.getUniqueId());
         }
 
@@ -356,27 +360,14 @@ public class GateListener implements Listener {
                 return;
             }
 
-            GateData data = plugin.getGates().get(clicked.getLocation());
+            GateData data = plugin.getGateIndex().get(clicked);
             if (data == null) return;
 
             // Get input states using debug logic
-            BlockFace leftInputDir = GateUtils.rotateCounterClockwise(data.getFacing(), ROTATION_ORDER);
-            BlockFace rightInputDir = GateUtils.rotateClockwise(data.getFacing(), ROTATION_ORDER);
-            BlockFace backInputDir = data.getFacing().getOppositeFace();
-
-            boolean leftState = plugin.getRedstoneState(clicked, leftInputDir);
-            boolean rightState = plugin.getRedstoneState(clicked, rightInputDir);
-            boolean backState = false;
-
-            if (data.isThreeInput()) {
-                backState = plugin.getRedstoneState(clicked, backInputDir);
-                if (clicked.getRelative(backInputDir).getType() == Material.AIR) {
-                    backState = false;
-                }
-            }
+            int inputs = plugin.readInputStates(clicked, data);
 
             // Calculate output using unified logic
-            boolean output = GateUtils.calculateOutput(data.getType(), leftState, rightState, backState, data);
+            boolean output = GateUtils.calculateOutput(data.getType(), inputs, data);
 
             // Format inspection message
             player.sendMessage(plugin.getMessage("inspect_header"));
@@ -393,17 +384,19 @@ public class GateListener implements Listener {
             event.setCancelled(true);
             plugin.getCooldownModePlayers().remove(player.getUniqueId());
 
-            GateData data = plugin.getGates().get(clicked.getLocation());
+            GateData data = plugin.getGateIndex().get(clicked);
             if (data == null || data.getType() != GateType.TIMER) {
                 player.sendMessage(plugin.getMessage("errors.not_timer_gate"));
                 return;
             }
 
-            Integer cooldown = plugin.getPendingCooldowns().remove(player.getUniqueId());
-            if (cooldown != null) {
-                data.setInterval(cooldown * 1000L); // Convert seconds to miliseconds
-                plugin.saveGates();
-                player.sendMessage(plugin.getMessage("timer_cooldown_set_success", String.valueOf(cooldown)));
+            Integer cooldownTicks = plugin.getPendingCooldowns().remove(player.getUniqueId());
+            if (cooldownTicks != null) {
+                data.setIntervalTicks(cooldownTicks);
+                plugin.armTimer(clicked.getWorld(), clicked.getX(), clicked.getY(), clicked.getZ(), data);
+                plugin.markGateDirty(clicked.getLocation());
+                player.sendMessage(plugin.getMessage("timer_cooldown_set_success",
+                        LogicGatesCommand.formatTimerSeconds(cooldownTicks)));
             }
         }
 
@@ -430,14 +423,12 @@ public class GateListener implements Listener {
                 // Check if the clicked block is a gate
                 if (clicked.getType() == Material.GLASS && plugin.hasActivationCarpet(clicked)) {
                     // Get the gate data
-                    GateData data = plugin.getGates().get(clicked.getLocation());
+                    GateData data = plugin.getGateIndex().get(clicked);
                     if (data != null) {
                         // Rotate the gate
                         plugin.rotateGate(clicked);
                         // Send a message to the player indicating the gate's new facing direction
                         player.sendMessage(plugin.getMessage("gate_rotated", data.getFacing().name()));
-                        // Save the updated gate data
-                        plugin.saveGates();
                     } else {
                         // Send a message to the player indicating that the clicked block is not a gate
                         player.sendMessage(plugin.getMessage("errors.not_a_gate"));
@@ -0,0 +1,146 @@
+package pl.bednarskiwsieci.logicgatesplugin.listeners;
+
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityChangeBlockEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/// Listener class for block changes that can alter a gate's neighbourhood.
+/// Drops the cached topology of nearby gates so it is resolved again on their next update.
+/// Changes without an event need explicit hooks: vanilla commands that can edit blocks drop every topology
+/// once they have run, and WorldEdit edits drop the topologies around the edited box (see `WorldEditIntegration`).
+public class TopologyListener implements Listener {
+
+    // Vanilla commands that change blocks without firing block events; `execute` and `function` may run them
+    private static final Set<String> BLOCK_COMMANDS = Set.of("setblock", "fill", "clone", "place", "execute", "function");
+
+    private final LogicGatesPlugin plugin;
+
+    /// Constructor for TopologyListener.
+    ///
+    /// @param plugin The main plugin instance.
+    public TopologyListener(LogicGatesPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBurn(BlockBurnEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    /// Flowing water and lava wash away carpets.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        invalidateAround(event.getToBlock());
+    }
+
+    /// Snow, ice, concrete and similar blocks forming or fading, including spreading blocks.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    /// Falling blocks landing or starting to fall, endermen, and other entities changing blocks.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityChangeBlock(EntityChangeBlockEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(PlayerBucketFillEvent event) {
+        invalidateAround(event.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        event.blockList().forEach(this::invalidateAround);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        event.blockList().forEach(this::invalidateAround);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        invalidateMoved(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        invalidateMoved(event.getBlock(), event.getBlocks(), event.getDirection());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        invalidateAfterCommand(event.getMessage());
+    }
+
+    /// Console, command block and command minecart commands.
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onServerCommand(ServerCommandEvent event) {
+        invalidateAfterCommand(event.getCommand());
+    }
+
+    /// Drops every topology on the next tick, after the command has run, if it may have changed blocks.
+    private void invalidateAfterCommand(String commandLine) {
+        String label = commandLine.startsWith("/") ? commandLine.substring(1) : commandLine;
+        int end = label.indexOf(' ');
+        if (end >= 0) {
+            label = label.substring(0, end);
+        }
+        label = label.toLowerCase(Locale.ROOT);
+        if (label.startsWith("minecraft:")) {
+            label = label.substring("minecraft:".length());
+        }
+        if (BLOCK_COMMANDS.contains(label)) {
+            plugin.getTaskScheduler().runGlobalLater(plugin::invalidateTopologies, 1L);
+        }
+    }
+
+    /// Invalidates around the piston head and around both ends of every moved block.
+    private void invalidateMoved(Block piston, List<Block> moved, BlockFace direction) {
+        invalidateAround(piston.getRelative(direction));
+        for (Block block : moved) {
+            invalidateAround(block);
+            invalidateAround(block.getRelative(direction));
+        }
+    }
+
+    private void invalidateAround(Block block) {
+        plugin.getGateIndex().invalidateTopologyAround(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+}
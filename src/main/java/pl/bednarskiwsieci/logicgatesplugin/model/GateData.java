@@ -1,60 +1,202 @@
 package pl.bednarskiwsieci.logicgatesplugin.model;
 
+import com.google.gson.annotations.JsonAdapter;
 import org.bukkit.block.BlockFace;
 
+/// Runtime state of a gate.
+///
+/// Type, facing, state, the input count and the tick of the last accepted update are packed into
+/// a single long. Timer settings only exist on [TimerGateData]; other gates report the defaults and
+/// ignore changes to them. Instances are created with [#create(BlockFace, GateType)] and copied with
+/// [#copy()].
+@JsonAdapter(GateDataAdapter.class)
 public class GateData {
-    private final GateType type;
-    private BlockFace facing;
-    private boolean state;
-    private boolean isThreeInput = false;
-    private long lastToggleTime;
-    private long interval = 1000L;
 
-    public GateData(BlockFace facing, GateType type) {
-        this.facing = facing;
-        this.type = type;
-        this.lastToggleTime = System.currentTimeMillis();
+    public static final long DEFAULT_INTERVAL = 1000L;
+    /// Length of a gate clock tick in milliseconds; intervals are saved in milliseconds
+    public static final long MILLIS_PER_TICK = 50L;
+    /// Estimated heap size of a non-timer gate without its topology (64-bit JVM, compressed references)
+    public static final int RECORD_BYTES = 24;
+    /// The most inputs a gate can have, as supported by the truth tables
+    public static final int MAX_INPUTS = 8;
+
+    private static final GateType[] TYPES = GateType.values();
+    private static final BlockFace[] FACES = BlockFace.values();
+    // Layout: type ordinal in bits 0-7, facing ordinal in bits 8-12, state in bit 13, input count - 2 in
+    // bits 14-16 (so a three-input gate has bit 14 set, as before), suspended in bit 17, gate clock tick of
+    // the last accepted update in bits 18-63 (0 if none). Suspended and the tick are runtime only, never
+    // saved or copied.
+    private static final int TYPE_MASK = 0xFF;
+    private static final int FACING_SHIFT = 8;
+    private static final int FACING_MASK = 0x1F;
+    private static final int NO_FACING = FACING_MASK;
+    private static final long STATE_BIT = 1L << 13;
+    private static final int INPUTS_SHIFT = 14;
+    private static final int INPUTS_MASK = 7;
+    private static final long SUSPENDED_BIT = 1L << 17;
+    private static final int TICK_SHIFT = 18;
+    private static final long SAVED_MASK = (1L << 17) - 1;
+
+    private long bits;
+    // Cached neighbourhood, null until resolved or after it was invalidated; runtime only, never saved
+    private GateTopology topology;
+
+    /// Creates a gate for a subclass. Other code uses [#create(BlockFace, GateType)], which picks the
+    /// layout for the type; a subclass passing [GateType#TIMER] keeps its own timer fields.
+    ///
+    /// @param facing the direction of the gate's output
+    /// @param type the gate type
+    protected GateData(BlockFace facing, GateType type) {
+        this.bits = type.ordinal();
+        setFacing(facing);
+    }
+
+    /// Copies the saved fields of another gate.
+    GateData(GateData other) {
+        this.bits = other.bits & SAVED_MASK;
+    }
+
+    /// Creates a gate with the layout for its type.
+    ///
+    /// @param facing the direction of the gate's output
+    /// @param type the gate type
+    /// @return the new gate
+    public static GateData create(BlockFace facing, GateType type) {
+        return type == GateType.TIMER ? new TimerGateData(facing) : new GateData(facing, type);
+    }
+
+    /// Creates a detached copy, used when handing gate state to background writers.
+    /// The copy does not carry the last update tick.
+    ///
+    /// @return the copy
+    public GateData copy() {
+        return new GateData(this);
+    }
+
+    /// @return the estimated heap size of this gate in bytes, including its cached topology
+    public int getRecordBytes() {
+        return RECORD_BYTES + getTopologyBytes();
+    }
+
+    /// @return the estimated heap size of the cached topology, 0 if there is none
+    protected int getTopologyBytes() {
+        return topology != null ? topology.estimateBytes() : 0;
     }
 
     public BlockFace getFacing() {
-        return facing;
+        int facing = (int) (bits >> FACING_SHIFT) & FACING_MASK;
+        return facing == NO_FACING ? null : FACES[facing];
     }
 
     public void setFacing(BlockFace facing) {
-        this.facing = facing;
+        long ordinal = facing == null ? NO_FACING : facing.ordinal();
+        bits = (bits & ~((long) FACING_MASK << FACING_SHIFT)) | (ordinal << FACING_SHIFT);
+        topology = null;
     }
 
     public GateType getType() {
-        return type;
+        return TYPES[(int) bits & TYPE_MASK];
     }
 
     public boolean getState() {
-        return state;
+        return (bits & STATE_BIT) != 0;
     }
 
     public void setState(boolean state) {
-        this.state = state;
+        bits = state ? bits | STATE_BIT : bits & ~STATE_BIT;
+    }
+
+    /// @return the timer interval in milliseconds, the default for gates other than timers
+    public long getInterval() {
+        return DEFAULT_INTERVAL;
     }
 
+    /// Sets the timer interval in milliseconds. Ignored for gates other than timers.
+    public void setInterval(long interval) {
+    }
+
+    /// @return the timer interval in gate clock ticks, at least 1
+    public long getIntervalTicks() {
+        return Math.max(1L, (getInterval() + MILLIS_PER_TICK / 2) / MILLIS_PER_TICK);
+    }
+
+    /// Sets the timer interval in gate clock ticks. Ignored for gates other than timers.
+    public void setIntervalTicks(long intervalTicks) {
+        setInterval(intervalTicks * MILLIS_PER_TICK);
+    }
+
+    /// @return the tick the timer is armed for in the timer wheel, 0 for gates other than timers
+    public long getArmedTick() {
+        return 0L;
+    }
+
+    /// Sets the tick the timer is armed for. Ignored for gates other than timers.
+    public void setArmedTick(long armedTick) {
+    }
+
+    /// @return the gate clock tick of the last accepted update, 0 if none
+    public long getLastUpdateTick() {
+        return bits >>> TICK_SHIFT;
+    }
+
+    /// @param lastUpdateTick a gate clock tick, below 2^46
+    public void setLastUpdateTick(long lastUpdateTick) {
+        bits = (bits & ((1L << TICK_SHIFT) - 1)) | (lastUpdateTick << TICK_SHIFT);
+    }
+
+    /// @return the time of the last accepted update in gate clock milliseconds, 0 if none
+    /// @deprecated gates keep the gate clock tick; use [#getLastUpdateTick()]
+    @Deprecated
     public long getLastToggleTime() {
-        return lastToggleTime;
+        return getLastUpdateTick() * MILLIS_PER_TICK;
     }
 
+    /// Sets the last accepted update, rounded down to a gate clock tick.
+    ///
+    /// @param lastToggleTime a time in gate clock milliseconds
+    /// @deprecated gates keep the gate clock tick; use [#setLastUpdateTick(long)]
+    @Deprecated
     public void setLastToggleTime(long lastToggleTime) {
-        this.lastToggleTime = lastToggleTime;
+        setLastUpdateTick(Math.max(0L, lastToggleTime) / MILLIS_PER_TICK);
     }
 
-    public long getInterval() {
-        return interval;
+    /// @return the cached neighbourhood of the gate, or `null` if it has to be resolved
+    public GateTopology getTopology() {
+        return topology;
     }
 
-    public void setInterval(long interval) {
-        this.interval = interval;
+    public void setTopology(GateTopology topology) {
+        this.topology = topology;
     }
 
-    public boolean isThreeInput() { return isThreeInput; }
+    /// @return `true` while the gate's chunk is not loaded; a suspended gate is not simulated
+    public boolean isSuspended() {
+        return (bits & SUSPENDED_BIT) != 0;
+    }
+
+    public void setSuspended(boolean suspended) {
+        bits = suspended ? bits | SUSPENDED_BIT : bits & ~SUSPENDED_BIT;
+    }
+
+    public boolean isThreeInput() { return getConfiguredInputCount() == 3; }
 
     public void setThreeInput(boolean threeInput) {
-        isThreeInput = threeInput;
+        setInputCount(threeInput ? 3 : 2);
+    }
+
+    /// @return the number of inputs the gate evaluates: 1 for NOT, otherwise [#getConfiguredInputCount()]
+    public int getInputCount() {
+        return getType() == GateType.NOT ? 1 : getConfiguredInputCount();
+    }
+
+    /// @return the input count set for the gate, 2 to [#MAX_INPUTS]; saved as is, even for types that ignore it
+    public int getConfiguredInputCount() {
+        return ((int) (bits >> INPUTS_SHIFT) & INPUTS_MASK) + 2;
+    }
+
+    /// @param inputCount the number of inputs, clamped to 2 to [#MAX_INPUTS]
+    public void setInputCount(int inputCount) {
+        long field = Math.max(0, Math.min(inputCount, MAX_INPUTS) - 2);
+        bits = (bits & ~((long) INPUTS_MASK << INPUTS_SHIFT)) | (field << INPUTS_SHIFT);
     }
 }
@@ -0,0 +1,78 @@
+package pl.bednarskiwsieci.logicgatesplugin.model;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.bukkit.block.BlockFace;
+
+import java.io.IOException;
+
+/// Reads and writes [GateData] with the same JSON fields the gate files have always used,
+/// independently of how a gate is laid out in memory. Gates with more than three inputs also get
+/// an `inputs` field.
+public class GateDataAdapter extends TypeAdapter<GateData> {
+
+    @Override
+    public void write(JsonWriter out, GateData data) throws IOException {
+        out.beginObject();
+        out.name("type").value(data.getType().name());
+        if (data.getFacing() != null) {
+            out.name("facing").value(data.getFacing().name());
+        }
+        out.name("state").value(data.getState());
+        out.name("isThreeInput").value(data.isThreeInput());
+        if (data.getConfiguredInputCount() > 3) {
+            out.name("inputs").value(data.getConfiguredInputCount());
+        }
+        out.name("interval").value(data.getInterval());
+        out.endObject();
+    }
+
+    /// @return the gate, or `null` if its type is missing or unknown
+    @Override
+    public GateData read(JsonReader in) throws IOException {
+        GateType type = null;
+        BlockFace facing = null;
+        boolean state = false;
+        boolean threeInput = false;
+        int inputs = 0;
+        long interval = GateData.DEFAULT_INTERVAL;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "type" -> type = parseEnum(GateType.class, in.nextString());
+                case "facing" -> facing = parseEnum(BlockFace.class, in.nextString());
+                case "state" -> state = in.nextBoolean();
+                case "isThreeInput" -> threeInput = in.nextBoolean();
+                case "inputs" -> inputs = in.nextInt();
+                case "interval" -> interval = in.nextLong();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (type == null) {
+            return null;
+        }
+        GateData data = GateData.create(facing, type);
+        data.setState(state);
+        data.setInputCount(inputs > 0 ? inputs : threeInput ? 3 : 2);
+        data.setInterval(interval);
+        return data;
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name) {
+        try {
+            return Enum.valueOf(type, name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package pl.bednarskiwsieci.logicgatesplugin.model;
+
+import org.bukkit.block.BlockFace;
+
+/// The neighbourhood of a gate, resolved once from the world and cached on its [GateData].
+///
+/// Together the topologies of all gates form the circuit's netlist: each gate knows the gates whose
+/// outputs drive its inputs and the gates its own output drives. Signals between gates are taken from the
+/// driving gate's state; the world is read only for inputs that no gate drives, and also for driven
+/// inputs whose wire something else could power, which are on when either source is.
+///
+/// A topology is dropped when its gate is rotated, when a gate is created, replaced, rotated or removed
+/// nearby, or when a block next to the gate, its carpet or its output changes. It is then resolved again
+/// on the next update, so the netlist is rebuilt incrementally. Blocks changed without an event drop the
+/// topologies through explicit hooks: block-editing commands and WorldEdit edits.
+///
+/// @param left face of the left input
+/// @param right face of the right input
+/// @param back face of the back (third) input
+/// @param hasCarpet whether the activation carpet is in place
+/// @param outputX X coordinate of the output block, behind a carpet in front of the gate if there is one
+/// @param outputY Y coordinate of the output block
+/// @param outputZ Z coordinate of the output block
+/// @param fanout packed coordinates (see `BlockKey`) of the gates with an input next to the output block
+/// @param leftDriver the gate driving the left input, or `null` if the input is read from the world
+/// @param rightDriver the gate driving the right input, or `null` if the input is read from the world
+/// @param backDriver the gate driving the back input, or `null` if the input is read from the world
+/// @param sharedInputs the driven inputs that are read from the world too, as [#SHARED_LEFT],
+///                     [#SHARED_RIGHT] and [#SHARED_BACK] bits
+public record GateTopology(BlockFace left, BlockFace right, BlockFace back, boolean hasCarpet,
+                           int outputX, int outputY, int outputZ, long[] fanout,
+                           GateData leftDriver, GateData rightDriver, GateData backDriver,
+                           int sharedInputs) {
+
+    public static final int SHARED_LEFT = 1;
+    public static final int SHARED_RIGHT = 2;
+    public static final int SHARED_BACK = 4;
+
+    /// @param face one of the input faces of this topology
+    /// @return whether the input on that face is read from the world as well as from its driver
+    public boolean isShared(BlockFace face) {
+        int bit = face == left ? SHARED_LEFT : face == right ? SHARED_RIGHT : SHARED_BACK;
+        return (sharedInputs & bit) != 0;
+    }
+
+    /// @return the estimated heap size of this topology in bytes
+    public int estimateBytes() {
+        return 64 + 16 + 8 * fanout.length;
+    }
+}
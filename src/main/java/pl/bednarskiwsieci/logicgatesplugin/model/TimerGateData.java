@@ -0,0 +1,54 @@
+package pl.bednarskiwsieci.logicgatesplugin.model;
+
+import org.bukkit.block.BlockFace;
+
+/// A timer gate: the packed gate fields plus the toggle interval and the tick it is armed for in the
+/// timer wheel.
+public class TimerGateData extends GateData {
+
+    /// Estimated heap size of a timer gate without its topology (64-bit JVM, compressed references)
+    public static final int RECORD_BYTES = 40;
+
+    private long interval = DEFAULT_INTERVAL;
+    // Deadline of the live timer wheel entry; runtime only, never saved
+    private long armedTick;
+
+    TimerGateData(BlockFace facing) {
+        super(facing, GateType.TIMER);
+    }
+
+    private TimerGateData(TimerGateData other) {
+        super(other);
+        this.interval = other.interval;
+    }
+
+    @Override
+    public GateData copy() {
+        return new TimerGateData(this);
+    }
+
+    @Override
+    public int getRecordBytes() {
+        return RECORD_BYTES + getTopologyBytes();
+    }
+
+    @Override
+    public long getInterval() {
+        return interval;
+    }
+
+    @Override
+    public void setInterval(long interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public long getArmedTick() {
+        return armedTick;
+    }
+
+    @Override
+    public void setArmedTick(long armedTick) {
+        this.armedTick = armedTick;
+    }
+}
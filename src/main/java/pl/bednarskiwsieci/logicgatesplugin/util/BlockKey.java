@@ -0,0 +1,38 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+/// Packs block coordinates into a single long: 26 bits for x and z, 12 bits for y.
+/// Covers the whole world border and every supported build height.
+public final class BlockKey {
+
+    private BlockKey() {
+        // Private constructor to prevent instantiation of utility class
+    }
+
+    /// @return the packed coordinates
+    public static long pack(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    /// @return the X coordinate of a packed key
+    public static int x(long key) {
+        return (int) (key >> 38);
+    }
+
+    /// @return the Y coordinate of a packed key
+    public static int y(long key) {
+        return (int) (key << 52 >> 52);
+    }
+
+    /// @return the Z coordinate of a packed key
+    public static int z(long key) {
+        return (int) (key << 26 >> 38);
+    }
+
+    /// Spreads the bits of a packed key, for use as a hash table index.
+    ///
+    /// @return the mixed hash
+    public static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
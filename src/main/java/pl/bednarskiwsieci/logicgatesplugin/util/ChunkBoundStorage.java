@@ -0,0 +1,21 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Chunk;
+
+/// Gate storage whose data is loaded and released together with world chunks.
+///
+/// Implementations register the gates of a chunk in the plugin's gates map when the chunk loads,
+/// and remove them when it unloads. [#load()] registers the gates of chunks that are already loaded,
+/// e.g. spawn chunks on startup. The chunk methods are called on the thread that owns the chunk.
+public interface ChunkBoundStorage extends IncrementalGateStorage {
+
+    /// Registers the gates stored for a chunk that has been loaded.
+    ///
+    /// @param chunk the loaded chunk
+    void onChunkLoad(Chunk chunk);
+
+    /// Persists and unregisters the gates of a chunk that is being unloaded.
+    ///
+    /// @param chunk the chunk being unloaded
+    void onChunkUnload(Chunk chunk);
+}
@@ -0,0 +1,160 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/// Spatial index of one world's gates: packed block keys bucketed by chunk, then by 16-block-high section.
+///
+/// Queries only visit the buckets that overlap the searched area, so their cost follows the number of
+/// gates found rather than the number of gates in the world. Not thread-safe.
+final class ChunkBuckets {
+
+    private final Map<Long, Bucket> chunks = new HashMap<>();
+
+    void add(long key) {
+        int x = BlockKey.x(key);
+        int z = BlockKey.z(key);
+        chunks.computeIfAbsent(chunkKey(x >> 4, z >> 4), k -> new Bucket())
+                .sections.computeIfAbsent(BlockKey.y(key) >> 4, k -> new Section())
+                .add(key);
+    }
+
+    void remove(long key) {
+        long chunkKey = chunkKey(BlockKey.x(key) >> 4, BlockKey.z(key) >> 4);
+        Bucket bucket = chunks.get(chunkKey);
+        if (bucket == null) {
+            return;
+        }
+
+        int sectionY = BlockKey.y(key) >> 4;
+        Section section = bucket.sections.get(sectionY);
+        if (section != null && section.remove(key) && section.size == 0) {
+            bucket.sections.remove(sectionY);
+            if (bucket.sections.isEmpty()) {
+                chunks.remove(chunkKey);
+            }
+        }
+    }
+
+    /// Visits the gates of a chunk. The index must not be modified while visiting.
+    void forEachInChunk(int chunkX, int chunkZ, KeyVisitor visitor) {
+        Bucket bucket = chunks.get(chunkKey(chunkX, chunkZ));
+        if (bucket != null) {
+            bucket.sections.values().forEach(section -> section.forEach(visitor));
+        }
+    }
+
+    /// Visits the gates inside a box, bounds included. The index must not be modified while visiting.
+    void forEachInBox(int minX, int minY, int minZ, int maxX, int maxY, int maxZ, KeyVisitor visitor) {
+        int minChunkX = minX >> 4, maxChunkX = maxX >> 4;
+        int minChunkZ = minZ >> 4, maxChunkZ = maxZ >> 4;
+        KeyVisitor filter = key -> {
+            int x = BlockKey.x(key), y = BlockKey.y(key), z = BlockKey.z(key);
+            if (x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ) {
+                visitor.visit(key);
+            }
+        };
+
+        // Probe each chunk of a small box; walk the occupied chunks when the box covers more than that
+        long boxChunks = ((long) maxChunkX - minChunkX + 1) * ((long) maxChunkZ - minChunkZ + 1);
+        if (boxChunks <= chunks.size()) {
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+                for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                    Bucket bucket = chunks.get(chunkKey(chunkX, chunkZ));
+                    if (bucket != null) {
+                        bucket.forEachInSections(minY >> 4, maxY >> 4, filter);
+                    }
+                }
+            }
+            return;
+        }
+
+        chunks.forEach((chunkKey, bucket) -> {
+            int chunkX = (int) (chunkKey >> 32);
+            int chunkZ = (int) (long) chunkKey;
+            if (chunkX >= minChunkX && chunkX <= maxChunkX && chunkZ >= minChunkZ && chunkZ <= maxChunkZ) {
+                bucket.forEachInSections(minY >> 4, maxY >> 4, filter);
+            }
+        });
+    }
+
+    void clear() {
+        chunks.clear();
+    }
+
+    /// @return the estimated heap size of the buckets in bytes
+    long estimateBytes() {
+        long bytes = 64;
+        for (Bucket bucket : chunks.values()) {
+            // Map node, boxed key, bucket, its section map and table
+            bytes += 32 + 24 + 16 + 48 + 16 + 4L * Math.max(16, bucket.sections.size() * 2);
+            for (Section section : bucket.sections.values()) {
+                // Map node, boxed key, section and its array
+                bytes += 32 + 16 + 24 + 16 + 8L * section.keys.length;
+            }
+        }
+        return bytes + 4L * chunks.size() * 2;
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    @FunctionalInterface
+    interface KeyVisitor {
+        void visit(long key);
+    }
+
+    /// The gates of one chunk, by section.
+    private static final class Bucket {
+        private final Map<Integer, Section> sections = new HashMap<>();
+
+        void forEachInSections(int minSection, int maxSection, KeyVisitor visitor) {
+            if (maxSection - minSection + 1 <= sections.size()) {
+                for (int sectionY = minSection; sectionY <= maxSection; sectionY++) {
+                    Section section = sections.get(sectionY);
+                    if (section != null) {
+                        section.forEach(visitor);
+                    }
+                }
+                return;
+            }
+
+            sections.forEach((sectionY, section) -> {
+                if (sectionY >= minSection && sectionY <= maxSection) {
+                    section.forEach(visitor);
+                }
+            });
+        }
+    }
+
+    /// The gates of one 16x16x16 section. Sections hold few gates, so a plain array is scanned on removal.
+    private static final class Section {
+        private long[] keys = new long[4];
+        private int size;
+
+        void add(long key) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size << 1);
+            }
+            keys[size++] = key;
+        }
+
+        boolean remove(long key) {
+            for (int i = 0; i < size; i++) {
+                if (keys[i] == key) {
+                    keys[i] = keys[--size];
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void forEach(KeyVisitor visitor) {
+            for (int i = 0; i < size; i++) {
+                visitor.visit(keys[i]);
+            }
+        }
+    }
+}
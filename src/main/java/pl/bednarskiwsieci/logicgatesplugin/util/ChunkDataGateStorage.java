@@ -0,0 +1,276 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.persistence.PersistentDataContainer;
+import org.bukkit.persistence.PersistentDataType;
+import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.io.*;
+import java.util.*;
+
+/// Stores each chunk's gates as a compact byte array in the chunk's persistent data container.
+///
+/// Gate data is read when the chunk loads and written back into the chunk before it unloads, so it is
+/// saved by the server's own chunk writer together with the blocks it belongs to (and rolled back with
+/// them). Changes made while a chunk is loaded are copied into its container on every flush.
+///
+/// Layout: a format version byte and a varint gate count, followed by [GateCodec] records.
+public class ChunkDataGateStorage implements ChunkBoundStorage {
+
+    private static final String DATA_KEY_NAME = "gates";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final byte FORMAT_VERSION = 1;
+
+    private final LogicGatesPlugin plugin;
+    private final NamespacedKey dataKey;
+    private final Map<ChunkKey, Map<Location, GateData>> loadedGates = new HashMap<>();
+    private final Set<ChunkKey> dirtyChunks = new HashSet<>();
+
+    /// @param plugin Main plugin instance
+    public ChunkDataGateStorage(LogicGatesPlugin plugin) {
+        this.plugin = plugin;
+        this.dataKey = new NamespacedKey(plugin, DATA_KEY_NAME);
+    }
+
+    // region Chunk lifecycle
+
+    @Override
+    public synchronized void load() {
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                // The chunk's blocks are read by the thread that owns it
+                plugin.getTaskScheduler().runInRegion(world, chunk.getX(), chunk.getZ(), () -> onChunkLoad(chunk));
+            }
+        }
+    }
+
+    /// Decodes the chunk's gates and registers those whose glass block is still in place.
+    ///
+    /// @param chunk the chunk that has been loaded
+    @Override
+    public synchronized void onChunkLoad(Chunk chunk) {
+        ChunkKey key = ChunkKey.of(chunk);
+        if (loadedGates.containsKey(key)) {
+            return;
+        }
+
+        byte[] encoded = chunk.getPersistentDataContainer().get(dataKey, PersistentDataType.BYTE_ARRAY);
+        if (encoded == null) {
+            return;
+        }
+
+        Map<Location, GateData> chunkGates = new HashMap<>();
+        int stored = decode(chunk, encoded, chunkGates);
+        for (Iterator<Location> iterator = chunkGates.keySet().iterator(); iterator.hasNext(); ) {
+            if (iterator.next().getBlock().getType() != Material.GLASS) {
+                iterator.remove();
+            }
+        }
+
+        if (chunkGates.size() != stored) {
+            dirtyChunks.add(key);
+        }
+        loadedGates.put(key, chunkGates);
+        plugin.getGates().putAll(chunkGates);
+    }
+
+    /// Writes the chunk's gates into its container, so the server saves them with the chunk,
+    /// and unregisters them.
+    ///
+    /// @param chunk the chunk that is being unloaded
+    @Override
+    public synchronized void onChunkUnload(Chunk chunk) {
+        ChunkKey key = ChunkKey.of(chunk);
+        dirtyChunks.remove(key);
+        Map<Location, GateData> chunkGates = loadedGates.remove(key);
+        if (chunkGates == null) {
+            return;
+        }
+
+        writeChunk(chunk, chunkGates);
+        chunkGates.keySet().forEach(plugin.getGates()::remove);
+    }
+    // endregion
+
+    // region Changes and writes
+
+    @Override
+    public synchronized void applyChange(Location loc, GateData data) {
+        if (loc.getWorld() == null) {
+            return;
+        }
+
+        ChunkKey key = new ChunkKey(loc.getWorld().getUID(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+        Location blockLoc = new Location(loc.getWorld(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        if (data != null) {
+            loadedGates.computeIfAbsent(key, k -> new HashMap<>()).put(blockLoc, data);
+        } else {
+            Map<Location, GateData> chunkGates = loadedGates.get(key);
+            if (chunkGates != null) {
+                chunkGates.remove(blockLoc);
+            }
+        }
+        dirtyChunks.add(key);
+    }
+
+    /// Copies the gates of every changed chunk into its container.
+    @Override
+    public synchronized void writeDirty() {
+        for (ChunkKey key : dirtyChunks) {
+            Map<Location, GateData> chunkGates = loadedGates.getOrDefault(key, Collections.emptyMap());
+            Chunk chunk = key.getLoadedChunk();
+            if (chunk != null) {
+                writeChunkInRegion(chunk, chunkGates);
+            }
+            if (chunkGates.isEmpty()) {
+                loadedGates.remove(key);
+            }
+        }
+        dirtyChunks.clear();
+    }
+
+    /// Copies the gates of every loaded chunk into its container, including their current states.
+    @Override
+    public synchronized void writeAll() {
+        loadedGates.forEach((key, chunkGates) -> {
+            Chunk chunk = key.getLoadedChunk();
+            if (chunk != null) {
+                writeChunkInRegion(chunk, chunkGates);
+            }
+        });
+        dirtyChunks.clear();
+    }
+
+    // Helper method: write a copy of the gates on the thread that owns the chunk
+    private void writeChunkInRegion(Chunk chunk, Map<Location, GateData> chunkGates) {
+        Map<Location, GateData> snapshot = new HashMap<>(chunkGates);
+        plugin.getTaskScheduler().runInRegion(chunk.getWorld(), chunk.getX(), chunk.getZ(),
+                () -> writeChunk(chunk, snapshot));
+    }
+
+    private void writeChunk(Chunk chunk, Map<Location, GateData> chunkGates) {
+        PersistentDataContainer container = chunk.getPersistentDataContainer();
+        if (chunkGates.isEmpty()) {
+            container.remove(dataKey);
+            return;
+        }
+
+        try {
+            container.set(dataKey, PersistentDataType.BYTE_ARRAY, encode(chunkGates));
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to encode gates of chunk " + chunk.getX() + ", " + chunk.getZ()
+                    + ": " + e.getMessage());
+        }
+    }
+    // endregion
+
+    // region Codec
+
+    private byte[] encode(Map<Location, GateData> chunkGates) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 + chunkGates.size() * 5);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeByte(FORMAT_VERSION);
+        VarInts.writeVarLong(out, chunkGates.size());
+        for (Map.Entry<Location, GateData> entry : chunkGates.entrySet()) {
+            Location loc = entry.getKey();
+            GateCodec.writeGate(out, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), entry.getValue());
+        }
+        return bytes.toByteArray();
+    }
+
+    /// Decodes a chunk's gates into the given map.
+    ///
+    /// @return the number of gates stored in the data, including ones that could not be decoded
+    private int decode(Chunk chunk, byte[] encoded, Map<Location, GateData> chunkGates) {
+        int count = 0;
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            byte version = in.readByte();
+            if (version != FORMAT_VERSION) {
+                plugin.getLogger().warning("Unsupported gate data version " + version + " in chunk "
+                        + chunk.getX() + ", " + chunk.getZ());
+                return 0;
+            }
+
+            count = (int) VarInts.readVarLong(in);
+            for (int i = 0; i < count; i++) {
+                GateCodec.DecodedGate gate = GateCodec.readGate(in, chunk.getX(), chunk.getZ());
+                if (gate.data() != null) {
+                    chunkGates.put(new Location(chunk.getWorld(), gate.x(), gate.y(), gate.z()), gate.data());
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Corrupted gate data in chunk " + chunk.getX() + ", " + chunk.getZ()
+                    + ": " + e.getMessage());
+        }
+        return count;
+    }
+    // endregion
+
+    // region Migration
+
+    /// Copies the gates from the gates file into the data of their chunks, loading each chunk once.
+    /// Gates of worlds that are not loaded stay in the gates file and are migrated on a later start.
+    ///
+    /// @param gatesConfigManager manager of the legacy gates file
+    @Override
+    public void migrateFromGatesFile(GatesConfigManager gatesConfigManager) {
+        Map<GateUtils.LocationKey, GateData> legacyGates = gatesConfigManager.readSerializedGates();
+        if (legacyGates.isEmpty()) {
+            return;
+        }
+
+        Map<GateUtils.LocationKey, GateData> leftovers = new HashMap<>();
+        Set<ChunkKey> migratedChunks = new HashSet<>();
+        int migrated = 0;
+        for (Map.Entry<GateUtils.LocationKey, GateData> entry : legacyGates.entrySet()) {
+            GateUtils.LocationKey key = entry.getKey();
+            World world = Bukkit.getWorld(key.world());
+            if (world == null) {
+                leftovers.put(entry.getKey(), entry.getValue());
+                continue;
+            }
+
+            // Loads the chunk if needed and registers the gates it may already store
+            Block block = world.getBlockAt(key.x(), key.y(), key.z());
+            onChunkLoad(block.getChunk());
+            if (block.getType() == Material.GLASS) {
+                plugin.getGateIndex().put(block, entry.getValue());
+                applyChange(block.getLocation(), entry.getValue());
+                migratedChunks.add(ChunkKey.of(block.getChunk()));
+                migrated++;
+            }
+        }
+        writeDirty();
+
+        if (leftovers.isEmpty()) {
+            gatesConfigManager.retireGatesFile(MIGRATED_SUFFIX);
+        } else {
+            gatesConfigManager.writeSnapshot(leftovers);
+            plugin.getLogger().warning(leftovers.size() + " gates belong to worlds that are not loaded,"
+                    + " they will be migrated on the next start");
+        }
+        plugin.getLogger().info("Migrated " + migrated + " gates into the data of " + migratedChunks.size() + " chunks");
+    }
+    // endregion
+
+    /// Identifies a chunk independently of the Chunk object, which is not kept across loads.
+    private record ChunkKey(UUID world, int x, int z) {
+        static ChunkKey of(Chunk chunk) {
+            return new ChunkKey(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ());
+        }
+
+        Chunk getLoadedChunk() {
+            World world = Bukkit.getWorld(this.world);
+            return world != null && world.isChunkLoaded(x, z) ? world.getChunkAt(x, z) : null;
+        }
+    }
+}
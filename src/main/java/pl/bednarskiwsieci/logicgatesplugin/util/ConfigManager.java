@@ -1,11 +1,14 @@
 package pl.bednarskiwsieci.logicgatesplugin.util;
 
+import org.bukkit.Sound;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Locale;
 
 /// Handles configuration management for logic gates plugin.
 /// Manages saving/loading gates and plugin settings to/from YAML file.
@@ -19,7 +22,28 @@ public class ConfigManager {
     public static final String CONFIG_LANGUAGE = "language";
     public static final String CONFIG_LEGACY_MODE = "legacyMode";
     public static final String CONFIG_NOT_GATE_INPUT_POSITION = "notGateInputPosition";
+    public static final String CONFIG_STACKED_INPUTS = "stackedInputs";
     public static final String CONFIG_ONE_TICK = "oneTick";
+    public static final String CONFIG_SAVE_DELAY_TICKS = "saveDelayTicks";
+    public static final String CONFIG_JOURNAL_MODE = "journalMode";
+    public static final String CONFIG_JOURNAL_COMPACT_THRESHOLD_KB = "journalCompactThresholdKb";
+    public static final String CONFIG_STORAGE_MODE = "storageMode";
+    public static final String CONFIG_MAX_QUEUED_UPDATES = "maxQueuedUpdates";
+    public static final String CONFIG_MAX_UPDATES_PER_TICK = "maxUpdatesPerTick";
+    public static final String CONFIG_UPDATE_BUDGET_MILLIS = "updateBudgetMillis";
+    public static final String CONFIG_PRIORITY_RADIUS_CHUNKS = "priorityRadiusChunks";
+    public static final String CONFIG_GATE_SOUNDS = "gateSounds";
+    public static final String CONFIG_GATE_SOUND_RANGE = "gateSoundRange";
+    public static final String CONFIG_GATE_SOUNDS_PER_PLAYER = "gateSoundsPerPlayerPerTick";
+    public static final String CONFIG_GATE_SOUND_VOLUME = "gateSoundVolume";
+    public static final String CONFIG_SETTLE_COMBINATIONAL = "settleCombinational";
+    public static final String CONFIG_SETTLE_MAX_GATES = "settleMaxGates";
+    public static final String CONFIG_SETTLE_MAX_PASSES = "settleMaxPasses";
+    public static final String CONFIG_TIMER_LATE_POLICY = "timerLatePolicy";
+    public static final String CONFIG_EVALUATION_THREADS = "evaluationThreads";
+    public static final String CONFIG_PARALLEL_EVALUATION_THRESHOLD = "parallelEvaluationThreshold";
+    public static final String CONFIG_TIMER_MAX_LAG_TICKS = "timerMaxLagTicks";
+    public static final String CONFIG_TIMER_MAX_CATCH_UP = "timerMaxCatchUp";
 
     private final LogicGatesPlugin plugin;
     private File configFile;
@@ -62,7 +86,56 @@ public class ConfigManager {
         plugin.setDefaultLang(config.getString(CONFIG_LANGUAGE, "en"));
         plugin.setLegacyMode(config.getBoolean(CONFIG_LEGACY_MODE, false));
         plugin.setNotGateInputPosition(config.getString(CONFIG_NOT_GATE_INPUT_POSITION, "default"));
+        plugin.setStackedInputs(config.getBoolean(CONFIG_STACKED_INPUTS, false));
         plugin.setOneTick(config.getBoolean(CONFIG_ONE_TICK, false));
+        plugin.setSaveDelayTicks(Math.max(1L, config.getLong(CONFIG_SAVE_DELAY_TICKS, 40L)));
+        plugin.setJournalMode(config.getBoolean(CONFIG_JOURNAL_MODE, false));
+        plugin.setStorageMode(config.getString(CONFIG_STORAGE_MODE, "file"));
+        plugin.setJournalCompactThreshold(Math.max(1L, config.getLong(CONFIG_JOURNAL_COMPACT_THRESHOLD_KB, 1024L)) * 1024L);
+        plugin.setMaxQueuedUpdates(Math.max(1, config.getInt(CONFIG_MAX_QUEUED_UPDATES, 100000)));
+        plugin.setMaxUpdatesPerTick(Math.max(0, config.getInt(CONFIG_MAX_UPDATES_PER_TICK, 0)));
+        plugin.setUpdateBudgetMillis(Math.max(0.0, config.getDouble(CONFIG_UPDATE_BUDGET_MILLIS, 20.0)));
+        plugin.setPriorityRadiusChunks(Math.max(0, config.getInt(CONFIG_PRIORITY_RADIUS_CHUNKS, 4)));
+        plugin.setSettleCombinational(config.getBoolean(CONFIG_SETTLE_COMBINATIONAL, false));
+        plugin.setSettleMaxGates(Math.max(1, config.getInt(CONFIG_SETTLE_MAX_GATES, 4096)));
+        plugin.setSettleMaxPasses(Math.max(1, config.getInt(CONFIG_SETTLE_MAX_PASSES, 16)));
+        plugin.setEvaluationThreads(config.getInt(CONFIG_EVALUATION_THREADS, 0));
+        plugin.setParallelEvaluationThreshold(Math.max(1, config.getInt(CONFIG_PARALLEL_EVALUATION_THRESHOLD, 4096)));
+        plugin.setTimerMaxLagTicks(Math.max(1, config.getInt(CONFIG_TIMER_MAX_LAG_TICKS, 100)));
+        plugin.setTimerMaxCatchUp(Math.max(0, config.getInt(CONFIG_TIMER_MAX_CATCH_UP, 8)));
+
+        loadGateSounds();
+
+        String latePolicyName = config.getString(CONFIG_TIMER_LATE_POLICY, "skip");
+        GateClock.LatePolicy latePolicy = GateClock.LatePolicy.fromConfig(latePolicyName);
+        if (latePolicy == null) {
+            plugin.getLogger().warning("Unknown " + CONFIG_TIMER_LATE_POLICY + " '" + latePolicyName + "', using skip");
+            latePolicy = GateClock.LatePolicy.SKIP;
+        }
+        plugin.setTimerLatePolicy(latePolicy);
+    }
+
+    /// Loads the gate sound settings, including the sound of each gate type from its carpet section
+    private void loadGateSounds() {
+        GateSounds sounds = plugin.getGateSounds();
+        sounds.setEnabled(config.getBoolean(CONFIG_GATE_SOUNDS, true));
+        sounds.setRange(Math.max(0.0, config.getDouble(CONFIG_GATE_SOUND_RANGE, 16.0)));
+        sounds.setMaxPerPlayer(Math.max(0, config.getInt(CONFIG_GATE_SOUNDS_PER_PLAYER, 4)));
+        sounds.setVolume((float) Math.max(0.0, config.getDouble(CONFIG_GATE_SOUND_VOLUME, 0.1)));
+
+        for (GateType type : GateType.values()) {
+            String soundName = config.getString("carpets." + type.name() + ".sound", "block_note_block_pling");
+            Sound sound = null;
+            if (!soundName.equalsIgnoreCase("none")) {
+                try {
+                    sound = Sound.valueOf(soundName.trim().toUpperCase(Locale.ROOT));
+                } catch (IllegalArgumentException e) {
+                    plugin.getLogger().warning("Unknown sound '" + soundName + "' for " + type.name() + ", using block_note_block_pling");
+                    sound = Sound.BLOCK_NOTE_BLOCK_PLING;
+                }
+            }
+            sounds.setSound(type, sound);
+        }
     }
 
     /// Reloads configuration from disk
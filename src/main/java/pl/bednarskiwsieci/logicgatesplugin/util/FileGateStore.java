@@ -0,0 +1,107 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/// [GateStore] over the gates file. The file is read once and indexed by world and chunk in memory;
+/// every batch rewrites the whole file, which is what the file format allows.
+public class FileGateStore implements GateStore {
+
+    private final GatesConfigManager gatesConfigManager;
+    private final Map<String, Map<Long, Map<GateUtils.LocationKey, GateData>>> gatesByChunk = new HashMap<>();
+
+    /// @param gatesConfigManager manager of the gates file
+    public FileGateStore(GatesConfigManager gatesConfigManager) {
+        this.gatesConfigManager = gatesConfigManager;
+        gatesConfigManager.readSerializedGates().forEach(this::put);
+    }
+
+    @Override
+    public synchronized Map<GateUtils.LocationKey, GateData> loadChunk(String world, int chunkX, int chunkZ) {
+        Map<GateUtils.LocationKey, GateData> chunkGates = gatesByChunk
+                .getOrDefault(world, Map.of())
+                .getOrDefault(chunkKey(chunkX, chunkZ), Map.of());
+        return copyOf(chunkGates);
+    }
+
+    @Override
+    public synchronized Map<GateUtils.LocationKey, GateData> loadRegion(String world, int minX, int minY, int minZ,
+                                                                      int maxX, int maxY, int maxZ) {
+        Map<GateUtils.LocationKey, GateData> result = new HashMap<>();
+        Map<Long, Map<GateUtils.LocationKey, GateData>> worldGates = gatesByChunk.getOrDefault(world, Map.of());
+        for (int chunkX = minX >> 4; chunkX <= maxX >> 4; chunkX++) {
+            for (int chunkZ = minZ >> 4; chunkZ <= maxZ >> 4; chunkZ++) {
+                worldGates.getOrDefault(chunkKey(chunkX, chunkZ), Map.of()).forEach((key, data) -> {
+                    if (key.x() >= minX && key.x() <= maxX && key.y() >= minY && key.y() <= maxY
+                            && key.z() >= minZ && key.z() <= maxZ) {
+                        result.put(key, data.copy());
+                    }
+                });
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized boolean upsertBatch(Map<GateUtils.LocationKey, GateData> gates) {
+        gates.forEach((key, data) -> put(key, data.copy()));
+        return save();
+    }
+
+    @Override
+    public synchronized boolean deleteBatch(Collection<GateUtils.LocationKey> keys) {
+        for (GateUtils.LocationKey key : keys) {
+            Map<Long, Map<GateUtils.LocationKey, GateData>> worldGates = gatesByChunk.get(key.world());
+            Map<GateUtils.LocationKey, GateData> chunkGates =
+                    worldGates == null ? null : worldGates.get(chunkKey(key.x() >> 4, key.z() >> 4));
+            if (chunkGates != null) {
+                chunkGates.remove(key);
+            }
+        }
+        return save();
+    }
+
+    @Override
+    public synchronized void forEachInWorld(String world, BiConsumer<GateUtils.LocationKey, GateData> action) {
+        gatesByChunk.getOrDefault(world, Map.of()).values()
+                .forEach(chunkGates -> chunkGates.forEach((key, data) -> action.accept(key, data.copy())));
+    }
+
+    @Override
+    public synchronized Set<String> getWorlds() {
+        return new HashSet<>(gatesByChunk.keySet());
+    }
+
+    @Override
+    public void close() {
+        // Every batch is written as soon as it is stored
+    }
+
+    private void put(GateUtils.LocationKey key, GateData data) {
+        gatesByChunk.computeIfAbsent(key.world(), k -> new HashMap<>())
+                .computeIfAbsent(chunkKey(key.x() >> 4, key.z() >> 4), k -> new HashMap<>())
+                .put(key, data);
+    }
+
+    private boolean save() {
+        Map<GateUtils.LocationKey, GateData> allGates = new HashMap<>();
+        gatesByChunk.values().forEach(worldGates -> worldGates.values().forEach(allGates::putAll));
+        return gatesConfigManager.writeSnapshot(allGates);
+    }
+
+    private static Map<GateUtils.LocationKey, GateData> copyOf(Map<GateUtils.LocationKey, GateData> gates) {
+        Map<GateUtils.LocationKey, GateData> copy = new HashMap<>(gates.size() * 4 / 3 + 1);
+        gates.forEach((key, data) -> copy.put(key, data.copy()));
+        return copy;
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,89 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/// Scheduler for region-threaded servers, using Paper's region, global region and entity schedulers.
+///
+/// Only instantiated after [#isSupported()] confirmed that the server is region-threaded, so the
+/// scheduler classes are never loaded on servers that do not have them.
+public class FoliaRegionTaskScheduler implements RegionTaskScheduler {
+
+    private static final String REGIONIZED_SERVER_CLASS = "io.papermc.paper.threadedregions.RegionizedServer";
+
+    private final Plugin plugin;
+
+    /// @param plugin Plugin that owns the tasks
+    public FoliaRegionTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /// @return `true` if the server ticks regions on separate threads
+    public static boolean isSupported() {
+        try {
+            Class.forName(REGIONIZED_SERVER_CLASS);
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        // The global region scheduler requires a delay of at least one tick
+        return Bukkit.getGlobalRegionScheduler()
+                .runAtFixedRate(plugin, scheduledTask -> task.run(), Math.max(1L, delayTicks), periodTicks)::cancel;
+    }
+
+    @Override
+    public TaskHandle runGlobalLater(Runnable task, long delayTicks) {
+        return Bukkit.getGlobalRegionScheduler()
+                .runDelayed(plugin, scheduledTask -> task.run(), Math.max(1L, delayTicks))::cancel;
+    }
+
+    @Override
+    public void runGlobal(Runnable task) {
+        Bukkit.getGlobalRegionScheduler().execute(plugin, task);
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        Bukkit.getAsyncScheduler().runNow(plugin, scheduledTask -> task.run());
+    }
+
+    @Override
+    public void runInRegion(World world, int chunkX, int chunkZ, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ)) {
+            task.run();
+        } else {
+            Bukkit.getRegionScheduler().execute(plugin, world, chunkX, chunkZ, task);
+        }
+    }
+
+    @Override
+    public void runInRegionLater(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        Bukkit.getRegionScheduler().runDelayed(plugin, world, chunkX, chunkZ, scheduledTask -> task.run(),
+                Math.max(1L, delayTicks));
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        return Bukkit.isOwnedByCurrentRegion(world, chunkX, chunkZ);
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        if (Bukkit.isOwnedByCurrentRegion(entity)) {
+            task.run();
+        } else {
+            entity.getScheduler().execute(plugin, task, null, 1L);
+        }
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return true;
+    }
+}
@@ -0,0 +1,253 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.Block;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.util.Arrays;
+
+/// Evaluates a batch of combinational gates 64 at a time.
+///
+/// Gates are grouped by type and input count. Within a group, input `i` of every gate is packed into
+/// its own bit set (a bit slice), so one bitwise operation over a word evaluates 64 gates. All gates
+/// of a batch are evaluated against the inputs they were added with, i.e. in lock-step.
+///
+/// The batch is reused between ticks. Not thread-safe: a batch must only be used by one thread at a time.
+public final class GateBatch {
+
+    private static final GateType[] TYPES = GateType.values();
+    private static final int GROUPS_PER_TYPE = TruthTables.MAX_INPUTS + 1;
+
+    private final Group[] groups = new Group[TYPES.length * GROUPS_PER_TYPE];
+    private Block[] blocks = new Block[64];
+    private GateData[] gates = new GateData[64];
+    private int[] inputs = new int[64];
+    private boolean[] forced = new boolean[64];
+    private long[] outputs = new long[1];
+    private final Scratch scratch = new Scratch();
+    private int size;
+
+    /// Adds a combinational gate to the batch.
+    ///
+    /// @param inputs the gate's input states, input 1 in bit 0
+    /// @param forced whether the output has to be written even if the state does not change
+    public void add(Block block, GateData data, int inputs, boolean forced) {
+        if (size == blocks.length) {
+            int capacity = size << 1;
+            blocks = Arrays.copyOf(blocks, capacity);
+            gates = Arrays.copyOf(gates, capacity);
+            this.inputs = Arrays.copyOf(this.inputs, capacity);
+            this.forced = Arrays.copyOf(this.forced, capacity);
+        }
+        blocks[size] = block;
+        gates[size] = data;
+        this.inputs[size] = inputs;
+        this.forced[size] = forced;
+
+        int count = data.getInputCount();
+        int key = data.getType().ordinal() * GROUPS_PER_TYPE + count;
+        Group group = groups[key];
+        if (group == null) {
+            group = groups[key] = new Group(data.getType(), count);
+        }
+        group.add(size, inputs);
+        size++;
+    }
+
+    /// Evaluates every gate added since the last [#clear()].
+    public void evaluate() {
+        clearOutputs();
+        evaluatePart(0, 1, scratch, outputs);
+    }
+
+    /// Evaluates one of `parts` shares of the batch: the share of each group's words with the given
+    /// index. Shares write only to the output words they are given and use their own scratch buffers, so
+    /// different shares may be evaluated by different threads at the same time, while the batch is not
+    /// changed.
+    ///
+    /// @param outputs receives the output of gate `i` in bit `i % 64` of word `i / 64`; must hold
+    ///                [#outputWords()] words, which are only ever set
+    void evaluatePart(int part, int parts, Scratch scratch, long[] outputs) {
+        for (Group group : groups) {
+            if (group != null && group.size > 0) {
+                int words = words(group.size);
+                int from = (int) ((long) words * part / parts);
+                int to = (int) ((long) words * (part + 1) / parts);
+                if (from < to) {
+                    group.evaluate(from, to, scratch, outputs);
+                }
+            }
+        }
+    }
+
+    /// @return the number of output words of the batch
+    int outputWords() {
+        return words(size);
+    }
+
+    /// Resets all outputs to off, for results computed elsewhere and merged with [#mergeOutputs(long[])].
+    void clearOutputs() {
+        if (outputs.length < words(size)) {
+            outputs = new long[words(size)];
+        }
+        Arrays.fill(outputs, 0, words(size), 0L);
+    }
+
+    /// Turns on the outputs set in the given words, as filled by [#evaluatePart(int, int, Scratch, long[])].
+    void mergeOutputs(long[] partOutputs) {
+        for (int w = 0, words = words(size); w < words; w++) {
+            outputs[w] |= partOutputs[w];
+        }
+    }
+
+    /// @return the number of gates in the batch
+    public int size() {
+        return size;
+    }
+
+    public Block block(int index) {
+        return blocks[index];
+    }
+
+    public GateData data(int index) {
+        return gates[index];
+    }
+
+    public int inputs(int index) {
+        return inputs[index];
+    }
+
+    public boolean forced(int index) {
+        return forced[index];
+    }
+
+    /// @return the output of the gate, as computed by the last [#evaluate()]
+    public boolean output(int index) {
+        return ((outputs[index >>> 6] >>> index) & 1L) != 0;
+    }
+
+    /// Empties the batch, keeping its buffers.
+    public void clear() {
+        Arrays.fill(blocks, 0, size, null);
+        Arrays.fill(gates, 0, size, null);
+        for (Group group : groups) {
+            if (group != null) {
+                group.clear();
+            }
+        }
+        size = 0;
+    }
+
+    /// Evaluates one type and input count over bit slices.
+    ///
+    /// @param slices input `i` of gate `j` in bit `j % 64` of word `i * words + j / 64`
+    /// @param words number of words per slice
+    /// @param out receives the output of gate `j` in bit `j % 64` of word `j / 64`
+    public static void evaluate(GateType type, int count, long[] slices, int words, long[] out) {
+        int last = (count - 1) * words;
+        for (int w = 0; w < words; w++) {
+            long all = slices[w];
+            long any = slices[w];
+            long parity = slices[w];
+            // Conjunction of all inputs but the last, for IMPLICATION
+            long premises = count > 1 ? slices[w] : -1L;
+            for (int i = 1; i < count; i++) {
+                long slice = slices[i * words + w];
+                all &= slice;
+                any |= slice;
+                parity ^= slice;
+                if (i < count - 1) {
+                    premises &= slice;
+                }
+            }
+            out[w] = switch (type) {
+                case AND -> all;
+                case OR -> any;
+                case XOR -> parity;
+                case NAND -> ~all;
+                case NOR -> ~any;
+                case XNOR -> all | ~any;
+                case IMPLICATION -> ~premises | slices[last + w];
+                case NOT -> ~slices[w];
+                default -> throw new IllegalArgumentException("Not a combinational gate type: " + type);
+            };
+        }
+    }
+
+    private static int words(int bits) {
+        return Math.max(1, (bits + 63) >>> 6);
+    }
+
+    /// Bit slice buffers for evaluating groups, reused between batches.
+    static final class Scratch {
+        private long[] slices = new long[0];
+        private long[] out = new long[0];
+
+        private void ensure(int count, int words) {
+            if (slices.length < count * words) {
+                slices = new long[count * words];
+            }
+            if (out.length < words) {
+                out = new long[words];
+            }
+        }
+    }
+
+    /// The gates of one type and input count.
+    private static final class Group {
+        private final GateType type;
+        private final int count;
+        private int[] members = new int[64];
+        private int[] memberInputs = new int[64];
+        private int size;
+
+        private Group(GateType type, int count) {
+            this.type = type;
+            this.count = count;
+        }
+
+        private void add(int index, int inputs) {
+            if (size == members.length) {
+                members = Arrays.copyOf(members, size << 1);
+                memberInputs = Arrays.copyOf(memberInputs, size << 1);
+            }
+            members[size] = index;
+            memberInputs[size++] = inputs;
+        }
+
+        /// Evaluates the members in the words `from` to `to` (exclusive) of the group.
+        private void evaluate(int from, int to, Scratch scratch, long[] outputs) {
+            int words = to - from;
+            scratch.ensure(count, words);
+            long[] slices = scratch.slices;
+            long[] out = scratch.out;
+            Arrays.fill(slices, 0, count * words, 0L);
+
+            int first = from << 6;
+            int end = Math.min(size, to << 6);
+            for (int j = first; j < end; j++) {
+                int bits = memberInputs[j];
+                long mask = 1L << j;
+                int word = (j >>> 6) - from;
+                for (int i = 0; i < count; i++) {
+                    if ((bits & (1 << i)) != 0) {
+                        slices[i * words + word] |= mask;
+                    }
+                }
+            }
+
+            GateBatch.evaluate(type, count, slices, words, out);
+
+            for (int j = first; j < end; j++) {
+                if (((out[(j >>> 6) - from] >>> j) & 1L) != 0) {
+                    int index = members[j];
+                    outputs[index >>> 6] |= 1L << index;
+                }
+            }
+        }
+
+        private void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.Locale;
+
+/// The tick clock of the gate engine. Timer intervals and update cooldowns are counted in its ticks
+/// instead of wall-clock time.
+///
+/// The plugin calls [#onServerTick()] once per server tick. When the server lags, the clock follows
+/// real time by advancing several ticks at once (at most [#setMaxLagTicks(int)]), so timers keep
+/// their real-time rate and late ones are handled by the [LatePolicy]. With [LatePolicy#STRETCH] it
+/// always advances exactly one tick, so gate time simply slows down with the server.
+///
+/// Tests can drive the clock directly with [#advance(long)]. Only one thread may advance the clock,
+/// the main or global region thread; the current tick may be read from any thread.
+public class GateClock {
+
+    private static final long NANOS_PER_TICK = GateData.MILLIS_PER_TICK * 1_000_000L;
+
+    /// What happens to timers whose toggles fall behind because the server lagged.
+    public enum LatePolicy {
+        /// Missed toggles are dropped: a late timer toggles once and keeps its original phase.
+        SKIP,
+        /// Missed toggles are replayed one per server tick, so each replayed toggle reaches the world.
+        /// A timer replays at most the configured number and skips the older ones, keeping its phase.
+        CATCH_UP,
+        /// Gate time runs at server speed, so timers are never late but slow down under lag.
+        STRETCH;
+
+        /// @return the policy with the given config name (`skip`, `catch_up` or `stretch`), or `null` if there is none
+        public static LatePolicy fromConfig(String name) {
+            try {
+                return valueOf(name.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private volatile long tick;
+    private long lastNanos = -1L;
+    // Real time not yet turned into ticks
+    private long debtNanos;
+    private LatePolicy latePolicy = LatePolicy.SKIP;
+    private int maxLagTicks = 100;
+    private int maxCatchUp = 8;
+
+    /// @return the current tick; 0 until the clock first advances
+    public long getTick() {
+        return tick;
+    }
+
+    /// Advances the clock for one server tick, by more than one tick if the server fell behind real time.
+    ///
+    /// @return the new tick
+    public long onServerTick() {
+        long nanos = System.nanoTime();
+        if (lastNanos < 0 || latePolicy == LatePolicy.STRETCH) {
+            lastNanos = nanos;
+            return advance(1L);
+        }
+
+        debtNanos += nanos - lastNanos;
+        lastNanos = nanos;
+        long ticks = Math.min(Math.max(1L, debtNanos / NANOS_PER_TICK), maxLagTicks);
+        // Lag beyond the limit is not made up, and running ahead is absorbed by the next ticks
+        debtNanos = Math.max(-NANOS_PER_TICK, Math.min(debtNanos - ticks * NANOS_PER_TICK, NANOS_PER_TICK));
+        return advance(ticks);
+    }
+
+    /// Advances the clock manually.
+    ///
+    /// @param ticks number of ticks to advance by
+    /// @return the new tick
+    public long advance(long ticks) {
+        long next = tick + ticks;
+        tick = next;
+        return next;
+    }
+
+    /// Returns the tick on which a timer fires next, after firing on `deadline` with the clock at the
+    /// current tick.
+    ///
+    /// @param deadline the tick the timer was due on
+    /// @param intervalTicks the timer interval
+    /// @return the next deadline; may not be after the current tick when catching up, in which case the
+    ///         [TimerWheel] fires it on the next server tick
+    public long nextDeadline(long deadline, long intervalTicks) {
+        long next = deadline + intervalTicks;
+        if (next > tick) {
+            return next;
+        }
+
+        long missed = (tick - next) / intervalTicks + 1;
+        if (latePolicy != LatePolicy.CATCH_UP) {
+            return next + missed * intervalTicks;
+        }
+        // Skip the oldest toggles beyond the limit, so at most maxCatchUp remain to be replayed
+        return next + Math.max(0L, missed - maxCatchUp) * intervalTicks;
+    }
+
+    public LatePolicy getLatePolicy() {
+        return latePolicy;
+    }
+
+    public void setLatePolicy(LatePolicy latePolicy) {
+        this.latePolicy = latePolicy;
+        debtNanos = 0L;
+    }
+
+    /// @param maxLagTicks the most ticks the clock advances by in one server tick
+    public void setMaxLagTicks(int maxLagTicks) {
+        this.maxLagTicks = maxLagTicks;
+    }
+
+    /// @param maxCatchUp the most missed toggles a timer replays with [LatePolicy#CATCH_UP];
+    ///                   a timer further behind skips its oldest toggles beyond this number
+    public void setMaxCatchUp(int maxCatchUp) {
+        this.maxCatchUp = maxCatchUp;
+    }
+}
@@ -0,0 +1,96 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static pl.bednarskiwsieci.logicgatesplugin.listeners.GateListener.ROTATION_ORDER;
+
+/// Binary encoding of a single gate inside a chunk, shared by the gates file and chunk data storage.
+///
+/// Record layout: `xz` (local x << 4 | local z), zigzag varint `y`, type ordinal, bits (facing index
+/// in the low two bits, state, input count - 2 in bits 3-5, so older three-input records still read as
+/// three inputs) and, for TIMER gates only, a varint interval.
+/// Typical gates take 4 bytes.
+public final class GateCodec {
+
+    private static final int FACING_MASK = 3;
+    private static final int BIT_STATE = 1 << 2;
+    private static final int INPUTS_SHIFT = 3;
+    private static final int INPUTS_MASK = 7;
+    private static final GateType[] TYPES = GateType.values();
+
+    private GateCodec() {
+        // Private constructor to prevent instantiation of utility class
+    }
+
+    /// Writes a gate record.
+    ///
+    /// @param out the output to write to
+    /// @param x block X coordinate (only the position within the chunk is stored)
+    /// @param y block Y coordinate
+    /// @param z block Z coordinate (only the position within the chunk is stored)
+    /// @param data the gate to write
+    public static void writeGate(DataOutput out, int x, int y, int z, GateData data) throws IOException {
+        int bits = facingIndex(data.getFacing());
+        if (data.getState()) bits |= BIT_STATE;
+        bits |= (data.getConfiguredInputCount() - 2) << INPUTS_SHIFT;
+
+        out.writeByte(((x & 15) << 4) | (z & 15));
+        VarInts.writeSignedVarInt(out, y);
+        out.writeByte(data.getType().ordinal());
+        out.writeByte(bits);
+        if (data.getType() == GateType.TIMER) {
+            VarInts.writeVarLong(out, data.getInterval());
+        }
+    }
+
+    /// Reads a gate record written by [#writeGate].
+    ///
+    /// @param in the input to read from
+    /// @param chunkX X coordinate of the chunk the record belongs to
+    /// @param chunkZ Z coordinate of the chunk the record belongs to
+    /// @return the decoded gate; its data is `null` if the gate type is unknown
+    public static DecodedGate readGate(DataInput in, int chunkX, int chunkZ) throws IOException {
+        int xz = in.readUnsignedByte();
+        int y = VarInts.readSignedVarInt(in);
+        int typeOrdinal = in.readUnsignedByte();
+        int bits = in.readUnsignedByte();
+        GateType type = typeOrdinal < TYPES.length ? TYPES[typeOrdinal] : null;
+        long interval = type == GateType.TIMER ? VarInts.readVarLong(in) : 1000L;
+
+        int x = (chunkX << 4) + (xz >> 4);
+        int z = (chunkZ << 4) + (xz & 15);
+        if (type == null) {
+            return new DecodedGate(x, y, z, null);
+        }
+
+        GateData data = GateData.create(ROTATION_ORDER[bits & FACING_MASK], type);
+        data.setState((bits & BIT_STATE) != 0);
+        data.setInputCount(2 + ((bits >> INPUTS_SHIFT) & INPUTS_MASK));
+        data.setInterval(interval);
+        return new DecodedGate(x, y, z, data);
+    }
+
+    static int facingIndex(BlockFace facing) {
+        for (int i = 0; i < ROTATION_ORDER.length; i++) {
+            if (ROTATION_ORDER[i] == facing) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /// A gate read from a record, with its absolute block coordinates.
+    ///
+    /// @param x Block X coordinate
+    /// @param y Block Y coordinate
+    /// @param z Block Z coordinate
+    /// @param data the gate, or `null` if its type is unknown
+    public record DecodedGate(int x, int y, int z, GateData data) {
+    }
+}
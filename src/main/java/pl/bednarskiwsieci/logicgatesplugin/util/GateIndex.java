@@ -0,0 +1,484 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+
+/// Registry of the loaded gates: one primitive hash map per world, keyed by packed block coordinates.
+///
+/// Lookups by [Block] or raw coordinates do not allocate, which matters for the per-tick update and
+/// neighbour checks. Each world also keeps a spatial index of chunk and section buckets for area
+/// queries, updated together with the map by every put and remove. Code that still works with
+/// locations can use the [#asMap()] view.
+///
+/// Not thread-safe unless [#setConcurrent(boolean)] is enabled, as it is on region-threaded servers:
+/// changes then take a write lock, visits a read lock, and lookups read optimistically and only fall
+/// back to the read lock when a change got in the way. Visitors must not start another visit.
+public class GateIndex {
+
+    private final Map<UUID, Partition> partitions = new HashMap<>();
+    private final Map<Location, GateData> mapView = new MapView();
+    private final TimerWheel timers = new TimerWheel(this);
+    private final StampedLock lock = new StampedLock();
+    private boolean concurrent;
+    // Arms the timer gates being registered
+    private GateVisitor timerArming = timers::arm;
+    // Consecutive lookups almost always hit the same world
+    private Partition lastPartition;
+    private int size;
+
+    // region Lookups
+
+    /// @return the gate at the block, or `null` if there is none
+    public GateData get(Block block) {
+        return get(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /// @return the gate at the coordinates, or `null` if there is none
+    public GateData get(World world, int x, int y, int z) {
+        if (!concurrent) {
+            return find(world, x, y, z);
+        }
+
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0L) {
+            try {
+                GateData data = find(world, x, y, z);
+                if (lock.validate(stamp)) {
+                    return data;
+                }
+            } catch (RuntimeException e) {
+                // A table was resized under the lookup; read it again under the lock
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return find(world, x, y, z);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private GateData find(World world, int x, int y, int z) {
+        Partition partition = partition(world);
+        return partition != null ? partition.gates.get(BlockKey.pack(x, y, z)) : null;
+    }
+
+    /// @return the gate at the block location, or `null` if there is none
+    public GateData get(Location loc) {
+        World world = loc.getWorld();
+        return world != null ? get(world, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()) : null;
+    }
+
+    /// @return `true` if there is a gate at the block
+    public boolean contains(Block block) {
+        return get(block) != null;
+    }
+
+    /// @return `true` if there is a gate at the coordinates
+    public boolean contains(World world, int x, int y, int z) {
+        return get(world, x, y, z) != null;
+    }
+
+    /// @return the wheel that wakes the registered timer gates; timers are armed when they are registered,
+    ///         unless [#setTimerArming(GateVisitor)] hands them elsewhere
+    public TimerWheel getTimers() {
+        return timers;
+    }
+
+    /// @param timerArming receives each timer gate registered from now on, to arm it; by default they are
+    ///                    armed on [#getTimers()]
+    public void setTimerArming(GateVisitor timerArming) {
+        this.timerArming = timerArming;
+    }
+
+    /// Enables the locking needed when gates are registered, looked up and visited from several threads.
+    /// Must be set before the index is shared between threads.
+    public void setConcurrent(boolean concurrent) {
+        this.concurrent = concurrent;
+    }
+
+    /// @return the number of registered gates in all worlds
+    public int size() {
+        return size;
+    }
+
+    /// Visits every registered gate. Gates may be added or removed while visiting;
+    /// such changes may or may not be seen by the visitor.
+    ///
+    /// @param visitor receives the world, block coordinates and data of each gate
+    public void forEach(GateVisitor visitor) {
+        long stamp = readLock();
+        try {
+            for (Partition partition : partitions.values().toArray(new Partition[0])) {
+                partition.gates.forEach((key, data) ->
+                        visitor.visit(partition.world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key), data));
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+    // endregion
+
+    // region Area queries
+
+    /// Visits the gates of a chunk. Gates must not be added or removed while visiting.
+    public void forEachInChunk(World world, int chunkX, int chunkZ, GateVisitor visitor) {
+        long stamp = readLock();
+        try {
+            Partition partition = partition(world);
+            if (partition != null) {
+                partition.buckets.forEachInChunk(chunkX, chunkZ, key -> partition.visit(key, visitor));
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /// Visits the gates inside a box, bounds included. Gates must not be added or removed while visiting.
+    public void forEachInBox(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ,
+                             GateVisitor visitor) {
+        long stamp = readLock();
+        try {
+            Partition partition = partition(world);
+            if (partition != null) {
+                partition.buckets.forEachInBox(minX, minY, minZ, maxX, maxY, maxZ, key -> partition.visit(key, visitor));
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /// Visits the gates whose block centre is within the radius of a point.
+    /// Gates must not be added or removed while visiting.
+    public void forEachInRadius(World world, double x, double y, double z, double radius, GateVisitor visitor) {
+        double radiusSquared = radius * radius;
+        forEachInBox(world,
+                (int) Math.floor(x - radius), (int) Math.floor(y - radius), (int) Math.floor(z - radius),
+                (int) Math.floor(x + radius), (int) Math.floor(y + radius), (int) Math.floor(z + radius),
+                (gateWorld, gateX, gateY, gateZ, data) -> {
+                    double dx = gateX + 0.5 - x, dy = gateY + 0.5 - y, dz = gateZ + 0.5 - z;
+                    if (dx * dx + dy * dy + dz * dz <= radiusSquared) {
+                        visitor.visit(gateWorld, gateX, gateY, gateZ, data);
+                    }
+                });
+    }
+    // endregion
+
+    // region Changes
+
+    /// Registers a gate, replacing the previous one at the same block.
+    /// A gate registered in a chunk that is not loaded starts suspended, see [GateData#isSuspended()].
+    ///
+    /// @return the previous gate, or `null` if there was none
+    public GateData put(Block block, GateData data) {
+        return put(block.getWorld(), block.getX(), block.getY(), block.getZ(), data);
+    }
+
+    /// @return the previous gate, or `null` if there was none
+    public GateData put(World world, int x, int y, int z, GateData data) {
+        Objects.requireNonNull(data, "data");
+        GateData previous;
+        long stamp = writeLock();
+        try {
+            Partition partition = partition(world);
+            if (partition == null) {
+                partition = new Partition(world);
+                partitions.put(world.getUID(), partition);
+                lastPartition = partition;
+            }
+
+            long key = BlockKey.pack(x, y, z);
+            previous = partition.gates.put(key, data);
+            if (previous == null) {
+                partition.buckets.add(key);
+                size++;
+            }
+            if (previous != data) {
+                data.setSuspended(!world.isChunkLoaded(x >> 4, z >> 4));
+                invalidateTopologyAround(partition, x, y, z);
+            }
+        } finally {
+            unlockWrite(stamp);
+        }
+        if (previous != data && data.getType() == GateType.TIMER) {
+            timerArming.visit(world, x, y, z, data);
+        }
+        return previous;
+    }
+
+    /// Unregisters the gate at the block.
+    ///
+    /// @return the removed gate, or `null` if there was none
+    public GateData remove(Block block) {
+        return remove(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    /// @return the removed gate, or `null` if there was none
+    public GateData remove(World world, int x, int y, int z) {
+        long stamp = writeLock();
+        try {
+            Partition partition = partition(world);
+            if (partition == null) {
+                return null;
+            }
+
+            long key = BlockKey.pack(x, y, z);
+            GateData previous = partition.gates.remove(key);
+            if (previous != null) {
+                partition.buckets.remove(key);
+                size--;
+                invalidateTopologyAround(partition, x, y, z);
+            }
+            return previous;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /// Drops the cached topology of every gate whose neighbourhood may include the block: gates up to
+    /// three blocks away horizontally (an output behind a carpet, plus its neighbour) and two blocks vertically
+    /// (what can power the block under an input wire).
+    /// Called for every gate created, replaced or removed, and when a block changes in the world.
+    public void invalidateTopologyAround(World world, int x, int y, int z) {
+        long stamp = readLock();
+        try {
+            Partition partition = partition(world);
+            if (partition != null) {
+                invalidateTopologyAround(partition, x, y, z);
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    private static void invalidateTopologyAround(Partition partition, int x, int y, int z) {
+        invalidateTopologyIn(partition, x, y, z, x, y, z);
+    }
+
+    /// Drops the cached topology of every gate whose neighbourhood may include a block of the box,
+    /// bounds included; see [#invalidateTopologyAround(World, int, int, int)].
+    public void invalidateTopologyIn(World world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        long stamp = readLock();
+        try {
+            Partition partition = partition(world);
+            if (partition != null) {
+                invalidateTopologyIn(partition, minX, minY, minZ, maxX, maxY, maxZ);
+            }
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    private static void invalidateTopologyIn(Partition partition, int minX, int minY, int minZ,
+                                             int maxX, int maxY, int maxZ) {
+        partition.buckets.forEachInBox(minX - 3, minY - 2, minZ - 3, maxX + 3, maxY + 2, maxZ + 3,
+                key -> partition.gates.get(key).setTopology(null));
+    }
+
+    /// Drops the cached topology of every gate.
+    public void invalidateAllTopologies() {
+        forEach((world, x, y, z, data) -> data.setTopology(null));
+    }
+
+    /// Estimates the heap used by the registered gates and by the index itself.
+    ///
+    /// @return the estimate
+    public MemoryStats memoryStats() {
+        long[] recordBytes = {0};
+        forEach((world, x, y, z, data) -> recordBytes[0] += data.getRecordBytes());
+
+        long indexBytes = 0;
+        long stamp = readLock();
+        try {
+            for (Partition partition : partitions.values()) {
+                indexBytes += partition.gates.estimateBytes() + partition.buckets.estimateBytes();
+            }
+            return new MemoryStats(size, recordBytes[0], indexBytes);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /// Unregisters all gates.
+    public void clear() {
+        long stamp = writeLock();
+        try {
+            partitions.clear();
+            timers.clear();
+            lastPartition = null;
+            size = 0;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+    // endregion
+
+    // region Locking
+
+    private long readLock() {
+        return concurrent ? lock.readLock() : 0L;
+    }
+
+    private void unlockRead(long stamp) {
+        if (stamp != 0L) {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private long writeLock() {
+        return concurrent ? lock.writeLock() : 0L;
+    }
+
+    private void unlockWrite(long stamp) {
+        if (stamp != 0L) {
+            lock.unlockWrite(stamp);
+        }
+    }
+    // endregion
+
+    /// Returns a live view of the index keyed by block locations. Keys passed to the view are reduced to
+    /// their block coordinates; keys returned by it are new block locations. Iteration copies the entries.
+    ///
+    /// @return the map view
+    public Map<Location, GateData> asMap() {
+        return mapView;
+    }
+
+    private Partition partition(World world) {
+        Partition partition = lastPartition;
+        if (partition != null && partition.world == world) {
+            return partition;
+        }
+
+        partition = partitions.get(world.getUID());
+        if (partition != null) {
+            lastPartition = partition;
+        }
+        return partition;
+    }
+
+    /// Estimated heap use of the gate registry.
+    ///
+    /// @param gates number of registered gates
+    /// @param recordBytes bytes used by the gate records
+    /// @param indexBytes bytes used by the hash tables and spatial buckets
+    public record MemoryStats(int gates, long recordBytes, long indexBytes) {
+
+        /// Estimated per-gate cost of the previous layout (64-bit JVM, compressed references): a 40-byte
+        /// record, plus in each of the gates map and the update tick map a 32-byte map node, an 80-byte
+        /// location key and about 5 bytes of table slots, plus a 16-byte boxed tick.
+        public static final int LEGACY_BYTES_PER_GATE = 40 + 2 * (32 + 80 + 5) + 16;
+
+        /// @return bytes per gate with the current layout, 0 if there are no gates
+        public long bytesPerGate() {
+            return gates == 0 ? 0 : (recordBytes + indexBytes) / gates;
+        }
+    }
+
+    /// Receives the gates visited by [#forEach(GateVisitor)].
+    @FunctionalInterface
+    public interface GateVisitor {
+        void visit(World world, int x, int y, int z, GateData data);
+    }
+
+    /// The gates of a single world.
+    private static final class Partition {
+        private final World world;
+        private final LongGateMap gates = new LongGateMap();
+        private final ChunkBuckets buckets = new ChunkBuckets();
+
+        private Partition(World world) {
+            this.world = world;
+        }
+
+        private void visit(long key, GateVisitor visitor) {
+            visitor.visit(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key), gates.get(key));
+        }
+    }
+
+    /// `Map<Location, GateData>` view for code that works with locations.
+    private final class MapView extends AbstractMap<Location, GateData> {
+
+        @Override
+        public GateData get(Object key) {
+            return key instanceof Location loc ? GateIndex.this.get(loc) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public GateData put(Location loc, GateData data) {
+            World world = Objects.requireNonNull(loc.getWorld(), "world");
+            return GateIndex.this.put(world, loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), data);
+        }
+
+        @Override
+        public GateData remove(Object key) {
+            if (!(key instanceof Location loc) || loc.getWorld() == null) {
+                return null;
+            }
+            return GateIndex.this.remove(loc.getWorld(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            GateIndex.this.clear();
+        }
+
+        @Override
+        public Set<Entry<Location, GateData>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Location, GateData>> iterator() {
+                    List<Entry<Location, GateData>> entries = new ArrayList<>(size);
+                    GateIndex.this.forEach((world, x, y, z, data) ->
+                            entries.add(new SimpleImmutableEntry<>(new Location(world, x, y, z), data)));
+                    Iterator<Entry<Location, GateData>> delegate = entries.iterator();
+
+                    return new Iterator<>() {
+                        private Entry<Location, GateData> current;
+
+                        @Override
+                        public boolean hasNext() {
+                            return delegate.hasNext();
+                        }
+
+                        @Override
+                        public Entry<Location, GateData> next() {
+                            current = delegate.next();
+                            return current;
+                        }
+
+                        @Override
+                        public void remove() {
+                            if (current == null) {
+                                throw new IllegalStateException();
+                            }
+                            MapView.this.remove(current.getKey());
+                            current = null;
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+        }
+    }
+}
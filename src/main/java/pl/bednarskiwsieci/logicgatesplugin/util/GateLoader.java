@@ -0,0 +1,253 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/// Loads the gates file in the background and registers the gates on the main thread in small slices.
+///
+/// The file is read and decoded on the gate writer, so it never overlaps with a write, and the gates
+/// are grouped by chunk. Every tick the main thread validates and registers whole chunks until its
+/// time budget is used up, starting with chunks that are already loaded. A gate is not ticked until
+/// its chunk has been registered.
+///
+/// Gates of worlds that are not loaded (e.g. worlds loaded later by a world manager) are held back
+/// and registered once their world loads; until then they are kept in every snapshot.
+public class GateLoader {
+
+    private static final long TICK_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final LogicGatesPlugin plugin;
+    private final GatesConfigManager gatesConfigManager;
+    private final Deque<ChunkBatch> batches = new ArrayDeque<>();
+    private final Set<ChunkKey> pendingChunks = new HashSet<>();
+    private final Map<String, List<ChunkBatch>> unloadedWorlds = new HashMap<>();
+    private CompletableFuture<Collection<ChunkBatch>> decoded;
+    private RegionTaskScheduler.TaskHandle task;
+    private Runnable onComplete;
+    private boolean intact = true;
+    private boolean queued;
+    private boolean finished;
+    private int total;
+    private int processed;
+    private int registered;
+    private long startNanos;
+    private long lastProgressNanos;
+
+    /// @param plugin Main plugin instance
+    /// @param gatesConfigManager Manager responsible for the gates file
+    public GateLoader(LogicGatesPlugin plugin, GatesConfigManager gatesConfigManager) {
+        this.plugin = plugin;
+        this.gatesConfigManager = gatesConfigManager;
+    }
+
+    /// Starts decoding the gates file on the given executor and registering its gates every tick.
+    ///
+    /// @param worker executor that reads and decodes the file
+    /// @param onComplete called on the main thread once every gate has been registered, unless the gates file
+    ///                   could not be read in full
+    public void start(Executor worker, Runnable onComplete) {
+        this.onComplete = onComplete;
+        startNanos = System.nanoTime();
+        lastProgressNanos = startNanos;
+        decoded = CompletableFuture.supplyAsync(this::decode, worker);
+        task = plugin.getTaskScheduler().runGlobalTimer(this::tick, 1L, 1L);
+    }
+
+    /// Reads the gates file and journal and groups the gates by chunk.
+    private Collection<ChunkBatch> decode() {
+        Map<GateUtils.LocationKey, GateData> serializedGates = new HashMap<>();
+        intact = gatesConfigManager.readSerializedGates(serializedGates);
+
+        Map<ChunkKey, ChunkBatch> byChunk = new HashMap<>();
+        serializedGates.forEach((key, data) -> byChunk
+                .computeIfAbsent(new ChunkKey(key.world(), key.x() >> 4, key.z() >> 4), ChunkBatch::new)
+                .gates().put(key, data));
+        return byChunk.values();
+    }
+
+    // region Registration
+
+    private void tick() {
+        if (!decoded.isDone()) {
+            return;
+        }
+        if (!queued) {
+            queueDecoded();
+        }
+
+        long tickStart = System.nanoTime();
+        while (!batches.isEmpty() && System.nanoTime() - tickStart < TICK_BUDGET_NANOS) {
+            register(batches.poll());
+        }
+
+        if (batches.isEmpty()) {
+            complete();
+        } else if (tickStart - lastProgressNanos >= PROGRESS_INTERVAL_NANOS) {
+            lastProgressNanos = tickStart;
+            plugin.getLogger().info("Loading gates: " + processed + "/" + total
+                    + " (" + (processed * 100L / total) + "%)");
+        }
+    }
+
+    /// Queues the decoded chunks, loaded ones first.
+    private void queueDecoded() {
+        queued = true;
+        Collection<ChunkBatch> decodedBatches;
+        try {
+            decodedBatches = decoded.join();
+        } catch (CompletionException e) {
+            plugin.getLogger().severe("Failed to load gates: " + e.getCause());
+            intact = false;
+            return;
+        }
+        for (ChunkBatch batch : decodedBatches) {
+            World world = Bukkit.getWorld(batch.chunk().world());
+            if (world != null && world.isChunkLoaded(batch.chunk().x(), batch.chunk().z())) {
+                batches.addFirst(batch);
+            } else {
+                batches.addLast(batch);
+            }
+            pendingChunks.add(batch.chunk());
+            total += batch.gates().size();
+        }
+    }
+
+    /// Validates and registers the gates of one chunk. Gates created in the meantime are kept.
+    /// The gates of a chunk that is not loaded are registered unchecked, and checked when it loads; those of
+    /// a loaded chunk owned by another thread are checked by that thread right after.
+    private void register(ChunkBatch batch) {
+        pendingChunks.remove(batch.chunk());
+        processed += batch.gates().size();
+
+        World world = Bukkit.getWorld(batch.chunk().world());
+        if (world == null) {
+            unloadedWorlds.computeIfAbsent(batch.chunk().world(), name -> new ArrayList<>()).add(batch);
+            return;
+        }
+        register(world, batch);
+    }
+
+    private void register(World world, ChunkBatch batch) {
+        GateIndex gateIndex = plugin.getGateIndex();
+        int chunkX = batch.chunk().x();
+        int chunkZ = batch.chunk().z();
+        boolean readable = plugin.canReadChunk(world, chunkX, chunkZ);
+        batch.gates().forEach((key, data) -> {
+            if (gateIndex.contains(world, key.x(), key.y(), key.z())
+                    || (readable && world.getBlockAt(key.x(), key.y(), key.z()).getType() != Material.GLASS)) {
+                return;
+            }
+            gateIndex.put(world, key.x(), key.y(), key.z(), data);
+            registered++;
+        });
+        if (!readable && world.isChunkLoaded(chunkX, chunkZ)) {
+            plugin.validateChunk(world, chunkX, chunkZ);
+        }
+    }
+
+    private void complete() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        if (task != null) {
+            task.cancel();
+        }
+
+        plugin.getLogger().info("Loaded " + registered + " gates in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) + " ms");
+        unloadedWorlds.forEach((name, held) -> plugin.getLogger().warning("World " + name + " is not loaded, its "
+                + held.stream().mapToInt(batch -> batch.gates().size()).sum() + " gates are registered once it loads"));
+        if (intact) {
+            onComplete.run();
+        } else {
+            plugin.getLogger().warning("Gates are not saved until one of them changes");
+        }
+    }
+
+    /// Registers every remaining gate right away, waiting for the file to be decoded if needed.
+    /// Used on shutdown, so a final save never misses gates that were not registered yet.
+    public void finishNow() {
+        if (finished) {
+            return;
+        }
+        if (!queued) {
+            queueDecoded();
+        }
+        while (!batches.isEmpty()) {
+            register(batches.poll());
+        }
+        complete();
+    }
+
+    /// Registers the gates held back for a world that was not loaded during startup.
+    /// Must be called on the main thread.
+    ///
+    /// @param world the world that has been loaded
+    public void onWorldLoad(World world) {
+        List<ChunkBatch> held = unloadedWorlds.remove(world.getName());
+        if (held == null) {
+            return;
+        }
+        int before = registered;
+        for (ChunkBatch batch : held) {
+            register(world, batch);
+        }
+        plugin.getLogger().info("Loaded " + (registered - before) + " gates of world " + world.getName());
+    }
+
+    /// Adds the gates of worlds that are not loaded to a snapshot, so saving does not drop them.
+    /// Must be called on the main thread.
+    ///
+    /// @param snapshot snapshot of the registered gates
+    public void addUnloadedWorldGates(Map<GateUtils.LocationKey, GateData> snapshot) {
+        for (List<ChunkBatch> held : unloadedWorlds.values()) {
+            for (ChunkBatch batch : held) {
+                batch.gates().forEach((key, data) -> snapshot.putIfAbsent(key, data.copy()));
+            }
+        }
+    }
+    // endregion
+
+    // region Status
+
+    /// @return `true` once every gate has been registered
+    public boolean isFinished() {
+        return finished;
+    }
+
+    /// Checks whether the gates of the block's chunk may still be waiting to be registered.
+    ///
+    /// @param block the block to check
+    /// @return `true` if gates at the block must not be ticked yet
+    public boolean isPending(Block block) {
+        if (finished) {
+            return false;
+        }
+        if (!queued) {
+            return true;
+        }
+        return pendingChunks.contains(new ChunkKey(block.getWorld().getName(), block.getX() >> 4, block.getZ() >> 4));
+    }
+    // endregion
+
+    private record ChunkKey(String world, int x, int z) {
+    }
+
+    private record ChunkBatch(ChunkKey chunk, Map<GateUtils.LocationKey, GateData> gates) {
+        ChunkBatch(ChunkKey chunk) {
+            this(chunk, new HashMap<>());
+        }
+    }
+}
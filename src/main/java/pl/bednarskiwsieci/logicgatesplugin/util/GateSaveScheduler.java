@@ -0,0 +1,213 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Location;
+import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/// Coalesces gate changes and persists them off the main thread.
+///
+/// Gate edits only mark their location as dirty. The first edit schedules a flush after the
+/// configured delay, so a burst of edits (e.g. carpet placement, WorldEdit paste) results in a single
+/// write. The flush takes a snapshot on the main thread and hands it to a single background writer,
+/// which keeps writes ordered.
+///
+/// In journal mode a flush only appends the dirty gates to the journal. Once the journal grows past
+/// the configured threshold, a full snapshot is written in the background and the journal starts over.
+///
+/// With incremental storage (region files, chunk data or a mapped file), changes are recorded in the
+/// storage right away and a flush persists only what changed.
+///
+/// Gates may be marked dirty from any thread, as regions change gates on their own threads on
+/// region-threaded servers; flushes run on the main or global region thread.
+public class GateSaveScheduler {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30L;
+
+    private final LogicGatesPlugin plugin;
+    private final GatesConfigManager gatesConfigManager;
+    private final Set<Location> dirtyGates = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean compactionQueued = new AtomicBoolean(false);
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "LogicGates-GateWriter");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private IncrementalGateStorage gateStorage;
+    private RegionTaskScheduler.TaskHandle pendingFlush;
+
+    /// @param plugin Main plugin instance
+    /// @param gatesConfigManager Manager responsible for the gates file
+    public GateSaveScheduler(LogicGatesPlugin plugin, GatesConfigManager gatesConfigManager) {
+        this.plugin = plugin;
+        this.gatesConfigManager = gatesConfigManager;
+    }
+
+    /// Marks a gate as changed and schedules a coalesced flush.
+    ///
+    /// @param loc location of the created, removed or modified gate
+    public void markDirty(Location loc) {
+        if (gateStorage != null) {
+            gateStorage.applyChange(loc, plugin.getGates().get(loc));
+        }
+        dirtyGates.add(loc);
+        scheduleFlush();
+    }
+
+    /// Schedules a flush after the configured delay unless one is already pending.
+    private synchronized void scheduleFlush() {
+        if (pendingFlush != null || !plugin.isEnabled()) {
+            return;
+        }
+        pendingFlush = plugin.getTaskScheduler().runGlobalLater(this::flush, plugin.getSaveDelayTicks());
+    }
+
+    /// Writes pending changes, if there are any.
+    public void flush() {
+        synchronized (this) {
+            pendingFlush = null;
+        }
+        if (dirtyGates.isEmpty()) {
+            return;
+        }
+        if (gateStorage != null) {
+            dirtyGates.clear();
+            gateStorage.writeDirty();
+        } else if (plugin.isJournalMode()) {
+            appendDirtyToJournal();
+        } else {
+            flushNow();
+        }
+    }
+
+    /// Queues a journal append for every dirty gate, in the state it has on the current tick.
+    private void appendDirtyToJournal() {
+        cancelPendingFlush();
+
+        List<GatesConfigManager.JournalEntry> entries = new ArrayList<>(dirtyGates.size());
+        Map<Location, GateData> gates = plugin.getGates();
+        for (Iterator<Location> iterator = dirtyGates.iterator(); iterator.hasNext(); ) {
+            Location loc = iterator.next();
+            iterator.remove();
+
+            GateData data = gates.get(loc);
+            entries.add(new GatesConfigManager.JournalEntry(
+                    plugin.convertLocationToString(loc),
+                    data == null ? null : data.copy()));
+        }
+
+        long threshold = plugin.getJournalCompactThreshold();
+        writer.execute(() -> {
+            long journalSize = gatesConfigManager.appendJournal(entries);
+            if (journalSize >= threshold && compactionQueued.compareAndSet(false, true)) {
+                // The snapshot has to be taken on the main thread
+                if (plugin.isEnabled()) {
+                    plugin.getTaskScheduler().runGlobal(this::compact);
+                } else {
+                    compactionQueued.set(false);
+                }
+            }
+        });
+    }
+
+    /// Replaces the journal with a fresh snapshot.
+    private void compact() {
+        compactionQueued.set(false);
+        flushNow();
+    }
+
+    /// Snapshots all gates on the calling (main) thread and queues the write on the background writer.
+    public void flushNow() {
+        cancelPendingFlush();
+        dirtyGates.clear();
+
+        if (gateStorage != null) {
+            gateStorage.writeAll();
+            return;
+        }
+        if (plugin.isLoadingGates()) {
+            // A snapshot now would miss gates that are not registered yet; one is saved once loading completes
+            return;
+        }
+
+        Map<GateUtils.LocationKey, GateData> snapshot = snapshot();
+        writer.execute(() -> gatesConfigManager.writeSnapshot(snapshot));
+    }
+
+    /// Snapshots the registered gates, together with those held back for worlds that are not loaded.
+    private Map<GateUtils.LocationKey, GateData> snapshot() {
+        Map<GateUtils.LocationKey, GateData> snapshot = gatesConfigManager.snapshot(plugin.getGates());
+        GateLoader gateLoader = plugin.getGateLoader();
+        if (gateLoader != null) {
+            gateLoader.addUnloadedWorldGates(snapshot);
+        }
+        return snapshot;
+    }
+
+    /// Snapshots the loaded gates on the calling (main) thread and exports them as JSON on the background writer.
+    ///
+    /// @return completes with the written file, or `null` if the export failed
+    public CompletableFuture<File> exportJson() {
+        Map<GateUtils.LocationKey, GateData> snapshot = snapshot();
+        return CompletableFuture.supplyAsync(() -> gatesConfigManager.exportJson(snapshot), writer);
+    }
+
+    /// Forces a final flush and waits for the background writer to finish.
+    /// Called from `onDisable`, after which no more writes are accepted.
+    public void shutdown() {
+        cancelPendingFlush();
+        if (gateStorage != null) {
+            gateStorage.writeDirty();
+        } else if (plugin.isJournalMode()) {
+            if (!dirtyGates.isEmpty()) {
+                appendDirtyToJournal();
+            }
+        } else {
+            flushNow();
+        }
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                plugin.getLogger().severe("Timed out while waiting for gates to be saved");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().severe("Interrupted while waiting for gates to be saved");
+        }
+        if (gateStorage != null) {
+            gateStorage.close();
+        }
+    }
+
+    /// Routes gate changes to incremental storage instead of the gates file.
+    ///
+    /// @param gateStorage the storage, or `null` to use the gates file
+    public void setGateStorage(IncrementalGateStorage gateStorage) {
+        this.gateStorage = gateStorage;
+    }
+
+    /// @return the background executor that performs all gate writes, in submission order
+    public Executor getWriter() {
+        return writer;
+    }
+
+    private synchronized void cancelPendingFlush() {
+        if (pendingFlush != null) {
+            pendingFlush.cancel();
+            pendingFlush = null;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.Block;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/// Settles a cone of combinational gates within one tick, without writing to the world.
+///
+/// The cone's gates are added with the inputs they take from outside the cone, which stay fixed
+/// while settling, and linked to the cone gates that drive their other inputs. [#settle(int)] then
+/// orders the gates by level, drivers before the gates they drive, and evaluates them in that order
+/// until no output changes. A cone without loops settles in one pass plus one to confirm it; gates on
+/// a loop come last and may need more passes, up to the given limit. Only the settled outputs are
+/// read back by the caller, so intermediate values never reach the world.
+///
+/// The settler is reused between ticks. Not thread-safe: must only be used on the main thread.
+public final class GateSettler {
+
+    private static final int INPUTS = 3;
+
+    private final Map<GateData, Integer> indices = new IdentityHashMap<>();
+    private Block[] blocks = new Block[64];
+    private GateData[] gates = new GateData[64];
+    private boolean[] forced = new boolean[64];
+    // Input bits fixed for the whole pass: read from the world or from drivers outside the cone
+    private int[] fixedInputs = new int[64];
+    // Cone index of the driver of each input, or -1
+    private int[] drivers = new int[64 * INPUTS];
+    private int[] inputs = new int[64];
+    private boolean[] outputs = new boolean[64];
+    private int[] order = new int[64];
+    private int[] pendingDrivers = new int[64];
+    private int[] drivenStart = new int[65];
+    private int[] drivenFill = new int[64];
+    private int[] driven = new int[64 * INPUTS];
+    private int size;
+
+    /// Adds a gate to the cone. Its inputs are all fixed and off until set with [#setFixedInput(int, int)]
+    /// or [#link(int, int, int)]; its output starts at the gate's current state.
+    ///
+    /// @param forced whether the output has to be written even if the state does not change
+    /// @return the gate's index in the cone
+    public int add(Block block, GateData data, boolean forced) {
+        if (size == blocks.length) {
+            int capacity = size << 1;
+            blocks = Arrays.copyOf(blocks, capacity);
+            gates = Arrays.copyOf(gates, capacity);
+            this.forced = Arrays.copyOf(this.forced, capacity);
+            fixedInputs = Arrays.copyOf(fixedInputs, capacity);
+            drivers = Arrays.copyOf(drivers, capacity * INPUTS);
+            inputs = Arrays.copyOf(inputs, capacity);
+            outputs = Arrays.copyOf(outputs, capacity);
+            order = Arrays.copyOf(order, capacity);
+            pendingDrivers = Arrays.copyOf(pendingDrivers, capacity);
+            drivenStart = new int[capacity + 1];
+            drivenFill = new int[capacity];
+            driven = new int[capacity * INPUTS];
+        }
+        blocks[size] = block;
+        gates[size] = data;
+        this.forced[size] = forced;
+        fixedInputs[size] = 0;
+        Arrays.fill(drivers, size * INPUTS, (size + 1) * INPUTS, -1);
+        outputs[size] = data.getState();
+        indices.put(data, size);
+        return size++;
+    }
+
+    /// @return the index of the gate in the cone, or -1 if it is not part of it
+    public int indexOf(GateData data) {
+        Integer index = indices.get(data);
+        return index != null ? index : -1;
+    }
+
+    /// Turns a fixed input of a gate on.
+    ///
+    /// @param input the input number, 0 to 7
+    public void setFixedInput(int index, int input) {
+        fixedInputs[index] |= 1 << input;
+    }
+
+    /// Takes an input of a gate from the output of another gate of the cone.
+    ///
+    /// @param input the input number, 0 to 2
+    /// @param driver the cone index of the driving gate
+    public void link(int index, int input, int driver) {
+        drivers[index * INPUTS + input] = driver;
+    }
+
+    /// @param driver the cone index of a gate
+    /// @return whether an input of the gate at `index` is linked to the output of `driver`
+    public boolean isLinked(int index, int driver) {
+        for (int input = 0; input < INPUTS; input++) {
+            if (drivers[index * INPUTS + input] == driver) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// Evaluates the cone until no output changes.
+    ///
+    /// @param maxPasses the most passes over the cone
+    /// @return `true` if the cone settled, `false` if it still changed in the last pass (an oscillating loop)
+    public boolean settle(int maxPasses) {
+        levelise();
+        for (int pass = 0; pass < maxPasses; pass++) {
+            boolean changed = false;
+            for (int n = 0; n < size; n++) {
+                int i = order[n];
+                int bits = fixedInputs[i];
+                for (int input = 0; input < INPUTS; input++) {
+                    int driver = drivers[i * INPUTS + input];
+                    if (driver >= 0 && outputs[driver]) {
+                        bits |= 1 << input;
+                    }
+                }
+                inputs[i] = bits;
+                GateData data = gates[i];
+                boolean output = TruthTables.evaluate(data.getType(), bits, data.getInputCount());
+                if (output != outputs[i]) {
+                    outputs[i] = output;
+                    changed = true;
+                }
+            }
+            if (!changed) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /// Orders the gates so that every gate comes after the cone gates driving it (Kahn's algorithm).
+    /// Gates on loops cannot be ordered that way and follow in the order they were added.
+    private void levelise() {
+        // Gates driven by each gate, as consecutive runs of `driven` starting at `drivenStart`
+        Arrays.fill(pendingDrivers, 0, size, 0);
+        Arrays.fill(drivenStart, 0, size + 1, 0);
+        for (int i = 0; i < size * INPUTS; i++) {
+            int driver = drivers[i];
+            if (driver >= 0) {
+                pendingDrivers[i / INPUTS]++;
+                drivenStart[driver + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            drivenStart[i + 1] += drivenStart[i];
+        }
+        System.arraycopy(drivenStart, 0, drivenFill, 0, size);
+        for (int i = 0; i < size * INPUTS; i++) {
+            int driver = drivers[i];
+            if (driver >= 0) {
+                driven[drivenFill[driver]++] = i / INPUTS;
+            }
+        }
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (pendingDrivers[i] == 0) {
+                order[count++] = i;
+            }
+        }
+        for (int n = 0; n < count; n++) {
+            int placed = order[n];
+            for (int j = drivenStart[placed]; j < drivenStart[placed + 1]; j++) {
+                if (--pendingDrivers[driven[j]] == 0) {
+                    order[count++] = driven[j];
+                }
+            }
+        }
+
+        if (count < size) {
+            for (int i = 0; i < size; i++) {
+                if (pendingDrivers[i] > 0) {
+                    order[count++] = i;
+                }
+            }
+        }
+    }
+
+    /// @return the number of gates in the cone
+    public int size() {
+        return size;
+    }
+
+    public Block block(int index) {
+        return blocks[index];
+    }
+
+    public GateData data(int index) {
+        return gates[index];
+    }
+
+    public boolean forced(int index) {
+        return forced[index];
+    }
+
+    /// @return the input bits of the gate in the last pass
+    public int inputs(int index) {
+        return inputs[index];
+    }
+
+    /// @return the settled output of the gate
+    public boolean output(int index) {
+        return outputs[index];
+    }
+
+    /// Empties the cone, keeping its buffers.
+    public void clear() {
+        Arrays.fill(blocks, 0, size, null);
+        Arrays.fill(gates, 0, size, null);
+        indices.clear();
+        size = 0;
+    }
+}
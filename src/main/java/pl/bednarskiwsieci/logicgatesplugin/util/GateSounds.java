@@ -0,0 +1,168 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Location;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.entity.Player;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/// Plays the sounds of gates whose output changed.
+///
+/// Between [#begin()] and [#flush()] sound requests are collected instead of played: all requests for
+/// the same sound in the same chunk become one sound, played at the first gate that asked for it.
+/// Batches belong to the thread that began them, so the main thread batches a whole tick and each
+/// region thread batches the run of a chunk's gates. Outside of a batch, sounds are played right away.
+///
+/// Either way a sound is only sent to players within hearing range, and each player gets at most a
+/// configured number of gate sounds per gate clock tick, counted across all threads. Each gate type has
+/// its own sound, or none.
+public class GateSounds {
+
+    private final GateClock clock;
+    private final Map<GateType, Sound> sounds = new EnumMap<>(GateType.class);
+    private final ThreadLocal<Batch> batches = ThreadLocal.withInitial(Batch::new);
+    // Sounds sent to each player during quotaTick; cleared when the tick changes
+    private final Map<UUID, Integer> playedThisTick = new ConcurrentHashMap<>();
+    private volatile long quotaTick = -1L;
+    private volatile boolean enabled = true;
+    private volatile double range = 16.0;
+    private volatile int maxPerPlayer = 4;
+    private volatile float volume = 0.1f;
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder played = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    /// @param clock Clock whose ticks the per-player limit counts
+    public GateSounds(GateClock clock) {
+        this.clock = clock;
+        for (GateType type : GateType.values()) {
+            sounds.put(type, Sound.BLOCK_NOTE_BLOCK_PLING);
+        }
+    }
+
+    /// Starts collecting the sounds of this thread until its next [#flush()].
+    public void begin() {
+        batches.get().active = true;
+    }
+
+    /// Plays the sound of a gate type at a gate.
+    public void play(Block gateBlock, GateType type) {
+        Sound sound = sounds.get(type);
+        if (!enabled || sound == null) {
+            return;
+        }
+
+        requested.increment();
+        Batch batch = batches.get();
+        if (!batch.active) {
+            playNearby(gateBlock.getWorld(), gateBlock.getLocation(), sound, clock.getTick());
+            return;
+        }
+
+        long chunkKey = ((long) (gateBlock.getX() >> 4) << 32) | ((gateBlock.getZ() >> 4) & 0xFFFFFFFFL);
+        Map<Sound, Location> chunkSounds = batch.pending.computeIfAbsent(gateBlock.getWorld(), world -> new HashMap<>())
+                .computeIfAbsent(chunkKey, key -> new EnumMap<>(Sound.class));
+        if (chunkSounds.putIfAbsent(sound, gateBlock.getLocation()) != null) {
+            suppressed.increment();
+        }
+    }
+
+    /// Plays the sounds collected by this thread to the players in range and stops collecting.
+    public void flush() {
+        Batch batch = batches.get();
+        batch.active = false;
+        long tick = clock.getTick();
+        batch.pending.forEach((world, chunks) -> {
+            chunks.forEach((chunkKey, chunkSounds) ->
+                    chunkSounds.forEach((sound, location) -> playNearby(world, location, sound, tick)));
+            chunks.clear();
+        });
+    }
+
+    /// Sends a sound to each player within range who has not reached the limit for the tick.
+    private void playNearby(World world, Location location, Sound sound, long tick) {
+        double rangeSquared = range * range;
+        for (Player player : world.getPlayers()) {
+            if (player.getLocation().distanceSquared(location) > rangeSquared) {
+                continue;
+            }
+            if (!withinLimit(player, tick)) {
+                suppressed.increment();
+                continue;
+            }
+            player.playSound(location, sound, volume, 1.0f);
+            played.increment();
+        }
+    }
+
+    /// Counts a sound for a player.
+    ///
+    /// @return `false` if the player already got the most gate sounds allowed for the tick
+    private boolean withinLimit(Player player, long tick) {
+        if (tick != quotaTick) {
+            synchronized (playedThisTick) {
+                if (tick != quotaTick) {
+                    playedThisTick.clear();
+                    quotaTick = tick;
+                }
+            }
+        }
+        return playedThisTick.merge(player.getUniqueId(), 1, Integer::sum) <= maxPerPlayer;
+    }
+
+    /// @param type the gate type
+    /// @param sound the sound played when a gate of that type changes its output, or `null` for none
+    public void setSound(GateType type, Sound sound) {
+        sounds.put(type, sound);
+    }
+
+    /// @param enabled `false` to play no gate sounds at all
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /// @param range distance in blocks within which players hear gate sounds
+    public void setRange(double range) {
+        this.range = range;
+    }
+
+    /// @param maxPerPlayer most gate sounds a player hears per tick
+    public void setMaxPerPlayer(int maxPerPlayer) {
+        this.maxPerPlayer = maxPerPlayer;
+    }
+
+    /// @param volume volume of gate sounds
+    public void setVolume(float volume) {
+        this.volume = volume;
+    }
+
+    /// @return number of sounds gates asked for since startup
+    public long getRequestedCount() {
+        return requested.sum();
+    }
+
+    /// @return number of sounds sent to players since startup
+    public long getPlayedCount() {
+        return played.sum();
+    }
+
+    /// @return number of sounds merged into another sound of the same chunk or over a player's limit, since startup
+    public long getSuppressedCount() {
+        return suppressed.sum();
+    }
+
+    /// Sounds collected by one thread between [#begin()] and [#flush()].
+    private static final class Batch {
+        // First location of each sound per world, then per chunk, then per sound
+        private final Map<World, Map<Long, Map<Sound, Location>>> pending = new HashMap<>();
+        private boolean active;
+    }
+}
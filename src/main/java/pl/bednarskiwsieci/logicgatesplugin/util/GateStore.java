@@ -0,0 +1,53 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/// Persistence backend for gates, queried by chunk or area instead of loading everything at once.
+///
+/// Reads happen on the main thread (e.g. when a chunk loads), while batches are written from the
+/// background writer, so implementations must allow both at the same time. Returned gate data is
+/// detached from the store and may be used freely. Errors are logged, not thrown.
+public interface GateStore {
+
+    /// @param world world name
+    /// @param chunkX chunk X coordinate
+    /// @param chunkZ chunk Z coordinate
+    /// @return the gates stored in the chunk
+    Map<GateUtils.LocationKey, GateData> loadChunk(String world, int chunkX, int chunkZ);
+
+    /// Returns the gates inside a box, bounds included.
+    ///
+    /// @param world world name
+    /// @return the gates stored in the box
+    Map<GateUtils.LocationKey, GateData> loadRegion(String world, int minX, int minY, int minZ,
+                                                    int maxX, int maxY, int maxZ);
+
+    /// Inserts or replaces gates in a single batch.
+    ///
+    /// @param gates the gates to store
+    /// @return `true` if the batch was stored
+    boolean upsertBatch(Map<GateUtils.LocationKey, GateData> gates);
+
+    /// Removes gates in a single batch. Keys without a stored gate are ignored.
+    ///
+    /// @param keys the gates to remove
+    /// @return `true` if the batch was applied
+    boolean deleteBatch(Collection<GateUtils.LocationKey> keys);
+
+    /// Passes every gate stored for a world to the action.
+    ///
+    /// @param world world name
+    /// @param action receives each stored gate
+    void forEachInWorld(String world, BiConsumer<GateUtils.LocationKey, GateData> action);
+
+    /// @return names of the worlds that have stored gates
+    Set<String> getWorlds();
+
+    /// Releases the store. Called once, after the last write.
+    void close();
+}
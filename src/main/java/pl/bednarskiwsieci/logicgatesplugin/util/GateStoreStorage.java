@@ -0,0 +1,259 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/// Loads gates from a [GateStore] together with their chunks and writes changes back in batches.
+///
+/// Changes stay visible to reads until the store has committed them, so a chunk that loads again
+/// (or an area query) right after a change sees it even while the batch is still being written.
+public class GateStoreStorage implements ChunkBoundStorage {
+
+    private static final String MIGRATED_SUFFIX = ".migrated";
+
+    private final LogicGatesPlugin plugin;
+    private final GateStore store;
+    private final Executor writer;
+    private final Map<ChunkKey, Set<Location>> loadedChunks = new HashMap<>();
+    private final Map<GateUtils.LocationKey, PendingChange> uncommitted = new ConcurrentHashMap<>();
+    private final Set<GateUtils.LocationKey> dirty = new HashSet<>();
+
+    /// @param plugin Main plugin instance
+    /// @param store Backend the gates are persisted in
+    /// @param writer Background executor that performs all writes, in submission order
+    public GateStoreStorage(LogicGatesPlugin plugin, GateStore store, Executor writer) {
+        this.plugin = plugin;
+        this.store = store;
+        this.writer = writer;
+    }
+
+    /// @return the backend the gates are persisted in
+    public GateStore getStore() {
+        return store;
+    }
+
+    // region Chunk lifecycle
+
+    @Override
+    public synchronized void load() {
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                // The chunk's blocks are read by the thread that owns it
+                plugin.getTaskScheduler().runInRegion(world, chunk.getX(), chunk.getZ(), () -> onChunkLoad(chunk));
+            }
+        }
+    }
+
+    /// Reads the chunk's gates from the store and registers those whose glass block is still in place.
+    ///
+    /// @param chunk the chunk that has been loaded
+    @Override
+    public synchronized void onChunkLoad(Chunk chunk) {
+        ChunkKey chunkKey = ChunkKey.of(chunk);
+        if (loadedChunks.containsKey(chunkKey)) {
+            return;
+        }
+
+        Map<GateUtils.LocationKey, GateData> chunkGates = store.loadChunk(chunkKey.world(), chunkKey.x(), chunkKey.z());
+        applyUncommitted(chunkGates, chunkKey.world(), chunkKey.x() << 4, Integer.MIN_VALUE, chunkKey.z() << 4,
+                (chunkKey.x() << 4) + 15, Integer.MAX_VALUE, (chunkKey.z() << 4) + 15);
+
+        Set<Location> registered = new HashSet<>();
+        World world = chunk.getWorld();
+        chunkGates.forEach((key, data) -> {
+            Location loc = new Location(world, key.x(), key.y(), key.z());
+            if (loc.getBlock().getType() == Material.GLASS) {
+                plugin.getGates().put(loc, data);
+                registered.add(loc);
+            } else {
+                applyChange(loc, null);
+            }
+        });
+        loadedChunks.put(chunkKey, registered);
+    }
+
+    /// Queues the current state of the chunk's gates and unregisters them.
+    ///
+    /// @param chunk the chunk that is being unloaded
+    @Override
+    public synchronized void onChunkUnload(Chunk chunk) {
+        Set<Location> registered = loadedChunks.remove(ChunkKey.of(chunk));
+        if (registered == null) {
+            return;
+        }
+
+        for (Location loc : registered) {
+            GateData data = plugin.getGates().remove(loc);
+            if (data != null) {
+                applyChange(loc, data);
+            }
+        }
+    }
+    // endregion
+
+    // region Changes and writes
+
+    @Override
+    public synchronized void applyChange(Location loc, GateData data) {
+        if (loc.getWorld() == null) {
+            return;
+        }
+
+        GateUtils.LocationKey key = GateUtils.LocationKey.of(loc);
+        uncommitted.put(key, new PendingChange(data == null ? null : data.copy()));
+        dirty.add(key);
+
+        Set<Location> registered = loadedChunks.get(new ChunkKey(key.world(), key.x() >> 4, key.z() >> 4));
+        if (registered != null) {
+            Location blockLoc = new Location(loc.getWorld(), key.x(), key.y(), key.z());
+            if (data != null) {
+                registered.add(blockLoc);
+            } else {
+                registered.remove(blockLoc);
+            }
+        }
+    }
+
+    /// Sends every change since the last write to the store as one upsert and one delete batch.
+    @Override
+    public synchronized void writeDirty() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        Map<GateUtils.LocationKey, PendingChange> changes = new HashMap<>(dirty.size() * 4 / 3 + 1);
+        for (GateUtils.LocationKey key : dirty) {
+            PendingChange change = uncommitted.get(key);
+            if (change != null) {
+                changes.put(key, change);
+            }
+        }
+        dirty.clear();
+        submit(changes);
+    }
+
+    /// Queues the current state of every loaded gate and writes all changes.
+    @Override
+    public synchronized void writeAll() {
+        loadedChunks.values().forEach(registered -> registered.forEach(loc -> {
+            GateData data = plugin.getGates().get(loc);
+            if (data != null) {
+                applyChange(loc, data);
+            }
+        }));
+        writeDirty();
+    }
+
+    @Override
+    public void close() {
+        store.close();
+    }
+
+    private void submit(Map<GateUtils.LocationKey, PendingChange> changes) {
+        writer.execute(() -> {
+            Map<GateUtils.LocationKey, GateData> upserts = new HashMap<>();
+            List<GateUtils.LocationKey> deletes = new ArrayList<>();
+            changes.forEach((key, change) -> {
+                if (change.data() != null) {
+                    upserts.put(key, change.data());
+                } else {
+                    deletes.add(key);
+                }
+            });
+
+            boolean stored = store.upsertBatch(upserts);
+            stored &= store.deleteBatch(deletes);
+            if (stored) {
+                // Only forget changes that were not replaced in the meantime
+                changes.forEach(uncommitted::remove);
+            } else if (plugin.isEnabled()) {
+                // Keep the changes and retry them with the next write
+                plugin.getTaskScheduler().runGlobal(() -> {
+                    synchronized (this) {
+                        dirty.addAll(changes.keySet());
+                    }
+                });
+            }
+        });
+    }
+
+    /// Overlays uncommitted changes inside the box on gates read from the store.
+    private void applyUncommitted(Map<GateUtils.LocationKey, GateData> gates, String world,
+                                  int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        uncommitted.forEach((key, change) -> {
+            if (!key.world().equals(world) || key.x() < minX || key.x() > maxX || key.y() < minY || key.y() > maxY
+                    || key.z() < minZ || key.z() > maxZ) {
+                return;
+            }
+            if (change.data() != null) {
+                gates.put(key, change.data().copy());
+            } else {
+                gates.remove(key);
+            }
+        });
+    }
+    // endregion
+
+    // region Queries
+
+    /// Finds the gates inside a box using the store's index, including ones in unloaded chunks.
+    ///
+    /// @param world world name
+    /// @return locations of the gates inside the box, bounds included
+    public Set<GateUtils.LocationKey> findGates(String world, int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        Map<GateUtils.LocationKey, GateData> gates = store.loadRegion(world, minX, minY, minZ, maxX, maxY, maxZ);
+        applyUncommitted(gates, world, minX, minY, minZ, maxX, maxY, maxZ);
+        return gates.keySet();
+    }
+    // endregion
+
+    // region Migration
+
+    /// Copies the gates from the gates file into the store, one batch per world.
+    ///
+    /// @param gatesConfigManager manager of the legacy gates file
+    @Override
+    public void migrateFromGatesFile(GatesConfigManager gatesConfigManager) {
+        FileGateStore source = new FileGateStore(gatesConfigManager);
+        Set<String> worlds = source.getWorlds();
+        if (worlds.isEmpty()) {
+            return;
+        }
+
+        int migrated = 0;
+        for (String world : worlds) {
+            Map<GateUtils.LocationKey, GateData> batch = new HashMap<>();
+            source.forEachInWorld(world, batch::put);
+            if (!store.upsertBatch(batch)) {
+                plugin.getLogger().severe("Migration of gates into the gate store failed, the gates file was left in place");
+                return;
+            }
+            migrated += batch.size();
+        }
+
+        gatesConfigManager.retireGatesFile(MIGRATED_SUFFIX);
+        plugin.getLogger().info("Migrated " + migrated + " gates from " + worlds.size() + " worlds into the gate store");
+    }
+    // endregion
+
+    /// A change that has not been committed to the store yet.
+    ///
+    /// @param data detached gate data, or `null` if the gate was removed
+    private record PendingChange(GateData data) {
+    }
+
+    private record ChunkKey(String world, int x, int z) {
+        static ChunkKey of(Chunk chunk) {
+            return new ChunkKey(chunk.getWorld().getName(), chunk.getX(), chunk.getZ());
+        }
+    }
+}
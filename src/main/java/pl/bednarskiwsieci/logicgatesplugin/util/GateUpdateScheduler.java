@@ -0,0 +1,417 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/// Schedules gate updates by tick of the [GateClock].
+///
+/// Updates are kept in one bucket per target tick, in the order they were requested. A processing pass
+/// takes the buckets of every tick up to the clock's current one, so when the clock advances several
+/// ticks at once under lag, updates delayed into those ticks run together. Each bucket
+/// remembers which gates it holds, so a gate is updated at most once per tick however often it is
+/// requested. Blocks that are not registered gates are ignored. The number of pending updates is
+/// capped: once the cap is reached, further requests go to an overflow set that holds each gate at
+/// most once, and are scheduled again as the queue drains, so no gate misses its update.
+///
+/// Each pass may be limited by a gate count and a time budget. Due updates join a backlog with two
+/// lanes, one for gates in chunks near players and one for the rest; the near lane is worked off
+/// first and whatever the budget does not cover is carried over to the next pass. While there is time
+/// left, the whole backlog is handed over at once so the wave stays in lock-step; once the budget is
+/// tight it is handed over in slices sized from the measured cost per gate.
+///
+/// Updates of suspended gates, whose chunk is not loaded, are parked per chunk instead of run, so that
+/// no chunk is loaded to process them. [#resume(World, int, int)] schedules them again.
+///
+/// Not thread-safe: must only be used by one thread at a time. On region-threaded servers each chunk with
+/// gates has a scheduler of its own, see [RegionGateEngine].
+public class GateUpdateScheduler {
+
+    // Smallest slice handed over once the time budget is tight, so every pass makes progress
+    private static final int MIN_SLICE = 64;
+
+    private final GateIndex gateIndex;
+    private final GateClock clock;
+    private final Map<Long, TickBucket> buckets = new HashMap<>();
+    // Blocks handed to the current pass, reused between passes
+    private final List<Block> due = new ArrayList<>();
+    // Last tick whose updates were moved to the backlog
+    private long processedTick;
+    private int pending;
+    private int maxPending = 100_000;
+    private long processed;
+    private long coalesced;
+    private long dropped;
+    // Reused for the bucket of the next tick once it has been processed
+    private TickBucket spare;
+    // Due updates not processed yet, near players and elsewhere
+    private final Lane nearLane = new Lane();
+    private final Lane farLane = new Lane();
+    private final Map<World, LongGateMap> backlogMembers = new HashMap<>(4);
+    private int maxPerTick;
+    private long budgetNanos;
+    // Moving average of the time one gate update takes, 0 until measured
+    private long nanosPerGate;
+    private long deferred;
+    // Gates requested while the queue was full, in request order, and per world
+    private final Lane overflowLane = new Lane();
+    private final Map<World, LongGateMap> overflowMembers = new HashMap<>(4);
+    // Updates of suspended gates per world, then per chunk
+    private final Map<World, Map<Long, LongGateMap>> parked = new HashMap<>(4);
+    private int parkedCount;
+
+    /// @param gateIndex Registry used to skip blocks that are not gates
+    /// @param clock Clock whose ticks updates are scheduled in
+    public GateUpdateScheduler(GateIndex gateIndex, GateClock clock) {
+        this.gateIndex = gateIndex;
+        this.clock = clock;
+        this.processedTick = clock.getTick();
+    }
+
+    /// Schedules a gate update for the next processing pass.
+    ///
+    /// @param block the gate block
+    public void schedule(Block block) {
+        schedule(block.getWorld(), block.getX(), block.getY(), block.getZ(), 0);
+    }
+
+    /// Schedules a gate update after a delay.
+    ///
+    /// @param block the gate block
+    /// @param delayTicks number of ticks to wait after the next processing pass
+    public void schedule(Block block, int delayTicks) {
+        schedule(block.getWorld(), block.getX(), block.getY(), block.getZ(), delayTicks);
+    }
+
+    /// Schedules a gate update after a delay.
+    ///
+    /// @param delayTicks number of ticks to wait after the next processing pass
+    public void schedule(World world, int x, int y, int z, int delayTicks) {
+        GateData data = gateIndex.get(world, x, y, z);
+        if (data == null) {
+            return;
+        }
+        if (data.isSuspended()) {
+            park(world, BlockKey.pack(x, y, z), data);
+            return;
+        }
+
+        // The next pass takes the current tick unless it already did
+        long target = Math.max(clock.getTick(), processedTick + 1) + Math.max(0, delayTicks);
+        TickBucket bucket = buckets.get(target);
+        long key = BlockKey.pack(x, y, z);
+        if (bucket != null && bucket.contains(world, key)) {
+            coalesced++;
+            return;
+        }
+        if (pending >= maxPending) {
+            overflow(world, key, data);
+            return;
+        }
+
+        if (bucket == null) {
+            bucket = spare != null ? spare : new TickBucket();
+            spare = null;
+            buckets.put(target, bucket);
+        }
+        bucket.add(world, key, data);
+        pending++;
+    }
+
+    /// Moves the updates scheduled up to the clock's current tick to the backlog and runs as much of the
+    /// backlog as the budget allows. Updates requested while processing are scheduled for a later pass.
+    ///
+    /// @param update called with the due gate blocks that are still glass, in lane and request order;
+    ///               once per pass unless the time budget runs short
+    /// @param observed chunks whose gates go to the near lane
+    public void process(Consumer<List<Block>> update, ObservedChunks observed) {
+        long started = System.nanoTime();
+        long now = clock.getTick();
+        for (long tick = processedTick + 1; tick <= now && !buckets.isEmpty(); tick++) {
+            TickBucket bucket = buckets.remove(tick);
+            if (bucket != null) {
+                enqueue(bucket, observed);
+            }
+        }
+        processedTick = Math.max(processedTick, now);
+
+        int limit = maxPerTick > 0 ? maxPerTick : Integer.MAX_VALUE;
+        int taken = 0;
+        while (taken < limit && (nearLane.size() > 0 || farLane.size() > 0)) {
+            int slice = limit - taken;
+            if (budgetNanos > 0 && nanosPerGate > 0) {
+                long remaining = budgetNanos - (System.nanoTime() - started);
+                slice = (int) Math.min(slice, Math.max(MIN_SLICE, remaining / nanosPerGate));
+            }
+
+            long sliceStarted = System.nanoTime();
+            int count = 0;
+            while (count < slice && (nearLane.size() > 0 || farLane.size() > 0)) {
+                Lane lane = nearLane.size() > 0 ? nearLane : farLane;
+                World world = lane.peekWorld();
+                long key = lane.peekKey();
+                lane.poll();
+                backlogMembers.get(world).remove(key);
+                count++;
+                GateData data = gateIndex.get(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+                if (data == null) {
+                    continue;
+                }
+                if (data.isSuspended()) {
+                    park(world, key, data);
+                    continue;
+                }
+                Block block = world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+                if (block.getType() == Material.GLASS) {
+                    due.add(block);
+                }
+            }
+            pending -= count;
+            processed += count;
+            taken += count;
+
+            try {
+                update.accept(due);
+            } finally {
+                due.clear();
+            }
+
+            long nanos = (System.nanoTime() - sliceStarted) / Math.max(1, count);
+            nanosPerGate = nanosPerGate == 0 ? Math.max(1L, nanos) : Math.max(1L, (nanosPerGate * 7 + nanos) / 8);
+            if (budgetNanos > 0 && System.nanoTime() - started >= budgetNanos) {
+                break;
+            }
+        }
+        deferred += nearLane.size() + farLane.size();
+        refill();
+    }
+
+    // Helper method: hold back the update of a gate until the queue has room, at most once per gate
+    private void overflow(World world, long key, GateData data) {
+        if (overflowMembers.computeIfAbsent(world, w -> new LongGateMap()).put(key, data) == null) {
+            overflowLane.add(world, key);
+            dropped++;
+        } else {
+            coalesced++;
+        }
+    }
+
+    // Helper method: schedule held back updates for the next pass, as far as the queue has room
+    private void refill() {
+        while (overflowLane.size() > 0 && pending < maxPending) {
+            World world = overflowLane.peekWorld();
+            long key = overflowLane.peekKey();
+            overflowLane.poll();
+            overflowMembers.get(world).remove(key);
+            schedule(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key), 0);
+        }
+    }
+
+    // Helper method: append a bucket to the backlog lanes, merging gates that are already waiting
+    private void enqueue(TickBucket bucket, ObservedChunks observed) {
+        for (int i = 0; i < bucket.size; i++) {
+            World world = bucket.worlds[i];
+            long key = bucket.keys[i];
+            LongGateMap waiting = backlogMembers.computeIfAbsent(world, w -> new LongGateMap());
+            if (waiting.get(key) != null) {
+                pending--;
+                coalesced++;
+                continue;
+            }
+            waiting.put(key, bucket.members.get(world).get(key));
+            boolean near = observed.contains(world, BlockKey.x(key), BlockKey.z(key));
+            (near ? nearLane : farLane).add(world, key);
+        }
+        bucket.clear();
+        spare = bucket;
+    }
+
+    // Helper method: remember the update of a suspended gate until its chunk is loaded again
+    private void park(World world, long key, GateData data) {
+        long chunkKey = ((long) (BlockKey.x(key) >> 4) << 32) | ((BlockKey.z(key) >> 4) & 0xFFFFFFFFL);
+        LongGateMap chunkUpdates = parked.computeIfAbsent(world, w -> new HashMap<>())
+                .computeIfAbsent(chunkKey, k -> new LongGateMap());
+        if (chunkUpdates.put(key, data) == null) {
+            parkedCount++;
+        } else {
+            coalesced++;
+        }
+    }
+
+    /// Schedules the parked updates of a chunk for the next processing pass.
+    /// Call after the chunk's gates were resumed.
+    public void resume(World world, int chunkX, int chunkZ) {
+        Map<Long, LongGateMap> worldUpdates = parked.get(world);
+        if (worldUpdates == null) {
+            return;
+        }
+        LongGateMap chunkUpdates = worldUpdates.remove(((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL));
+        if (chunkUpdates == null) {
+            return;
+        }
+        parkedCount -= chunkUpdates.size();
+        chunkUpdates.forEach((key, data) -> schedule(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key), 0));
+    }
+
+    /// Drops every pending update.
+    public void clear() {
+        buckets.clear();
+        nearLane.clear();
+        farLane.clear();
+        backlogMembers.values().forEach(LongGateMap::clear);
+        overflowLane.clear();
+        overflowMembers.values().forEach(LongGateMap::clear);
+        parked.clear();
+        parkedCount = 0;
+        pending = 0;
+    }
+
+    /// @return number of updates waiting to be processed
+    public int getQueueDepth() {
+        return pending;
+    }
+
+    /// @return number of due updates carried over to the next pass
+    public int getBacklog() {
+        return nearLane.size() + farLane.size();
+    }
+
+    /// @return number of carried over updates of gates near players
+    public int getNearBacklog() {
+        return nearLane.size();
+    }
+
+    /// @return number of times an update was carried over to the next pass, since startup
+    public long getDeferredCount() {
+        return deferred;
+    }
+
+    /// @return number of updates held back because the queue was full, waiting for room
+    public int getOverflowCount() {
+        return overflowLane.size();
+    }
+
+    /// @return number of updates parked until their chunk is loaded
+    public int getParkedCount() {
+        return parkedCount;
+    }
+
+    /// @return number of updates processed since startup
+    public long getProcessedCount() {
+        return processed;
+    }
+
+    /// @return number of requests merged into an update already scheduled for the same tick
+    public long getCoalescedCount() {
+        return coalesced;
+    }
+
+    /// @return number of updates held back because the queue was full, since startup
+    public long getDroppedCount() {
+        return dropped;
+    }
+
+    /// @param maxPending maximum number of pending updates before requests are held back
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+    }
+
+    /// @param maxPerTick most updates processed per pass; 0 for no limit
+    public void setMaxPerTick(int maxPerTick) {
+        this.maxPerTick = maxPerTick;
+    }
+
+    /// @param budgetMillis time a pass may spend on updates before the rest is carried over; 0 for no limit
+    public void setBudgetMillis(double budgetMillis) {
+        this.budgetNanos = (long) (budgetMillis * 1_000_000L);
+    }
+
+    /// Due updates in the order they are processed.
+    private static final class Lane {
+        private World[] worlds = new World[16];
+        private long[] keys = new long[16];
+        private int head;
+        private int tail;
+
+        int size() {
+            return tail - head;
+        }
+
+        void add(World world, long key) {
+            if (tail == keys.length) {
+                // Move the waiting entries to the front, growing only if the lane is more than half full
+                int size = size();
+                int capacity = size > keys.length >> 1 ? keys.length << 1 : keys.length;
+                World[] newWorlds = new World[capacity];
+                long[] newKeys = new long[capacity];
+                System.arraycopy(worlds, head, newWorlds, 0, size);
+                System.arraycopy(keys, head, newKeys, 0, size);
+                worlds = newWorlds;
+                keys = newKeys;
+                head = 0;
+                tail = size;
+            }
+            worlds[tail] = world;
+            keys[tail++] = key;
+        }
+
+        World peekWorld() {
+            return worlds[head];
+        }
+
+        long peekKey() {
+            return keys[head];
+        }
+
+        void poll() {
+            worlds[head++] = null;
+            if (head == tail) {
+                head = 0;
+                tail = 0;
+            }
+        }
+
+        void clear() {
+            Arrays.fill(worlds, head, tail, null);
+            head = 0;
+            tail = 0;
+        }
+    }
+
+    /// The updates of one tick, in request order, with a per-world set of the gates they hold.
+    private static final class TickBucket {
+        private World[] worlds = new World[16];
+        private long[] keys = new long[16];
+        private int size;
+        private final Map<World, LongGateMap> members = new HashMap<>(4);
+
+        boolean contains(World world, long key) {
+            LongGateMap worldMembers = members.get(world);
+            return worldMembers != null && worldMembers.get(key) != null;
+        }
+
+        void add(World world, long key, GateData data) {
+            if (size == keys.length) {
+                worlds = Arrays.copyOf(worlds, size << 1);
+                keys = Arrays.copyOf(keys, size << 1);
+            }
+            worlds[size] = world;
+            keys[size++] = key;
+            members.computeIfAbsent(world, w -> new LongGateMap()).put(key, data);
+        }
+
+        void clear() {
+            Arrays.fill(worlds, 0, size, null);
+            size = 0;
+            members.values().forEach(LongGateMap::clear);
+        }
+    }
+}
@@ -12,7 +12,6 @@ import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
 import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
 import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
 
-import java.util.Arrays;
 
 import static pl.bednarskiwsieci.logicgatesplugin.listeners.GateListener.ROTATION_ORDER;
 
@@ -43,32 +42,74 @@ public final class GateUtils {
     /// @param str The string in "worldName_x_y_z" format
     /// @return Corresponding Location or null if parsing fails
     public static Location convertStringToLocation(String str) {
-        String[] parts = str.split("_");
-        if (parts.length != 4) {
+        LocationKey key = parseLocationKey(str);
+        if (key == null) {
             Bukkit.getLogger().warning("Invalid location format: " + str);
             return null;
         }
+        return new Location(Bukkit.getWorld(key.world()), key.x(), key.y(), key.z());
+    }
+
+    /// Splits a "worldName_x_y_z" string into its parts without resolving the world.
+    /// The coordinates are parsed from the right, so world names may contain underscores.
+    ///
+    /// @param str The string in "worldName_x_y_z" format
+    /// @return The parsed key or null if the string is malformed
+    public static LocationKey parseLocationKey(String str) {
+        int zSep = str.lastIndexOf('_');
+        int ySep = zSep > 0 ? str.lastIndexOf('_', zSep - 1) : -1;
+        int xSep = ySep > 0 ? str.lastIndexOf('_', ySep - 1) : -1;
+        if (xSep <= 0) {
+            return null;
+        }
 
         try {
-            World world = Bukkit.getWorld(parts[0]);
-            int x = Integer.parseInt(parts[1]);
-            int y = Integer.parseInt(parts[2]);
-            int z = Integer.parseInt(parts[3]);
-            return new Location(world, x, y, z);
-        } catch (Exception e) {
-            Bukkit.getLogger().warning("Failed to parse location: " + str);
+            return new LocationKey(str.substring(0, xSep),
+                    Integer.parseInt(str, xSep + 1, ySep, 10),
+                    Integer.parseInt(str, ySep + 1, zSep, 10),
+                    Integer.parseInt(str, zSep + 1, str.length(), 10));
+        } catch (NumberFormatException e) {
             return null;
         }
     }
 
+    /// World name and block coordinates of a serialized gate location.
+    ///
+    /// @param world The world name
+    /// @param x Block X coordinate
+    /// @param y Block Y coordinate
+    /// @param z Block Z coordinate
+    public record LocationKey(String world, int x, int y, int z) {
+
+        /// Creates a key from the block coordinates of a location.
+        ///
+        /// @param loc The location, which must have a world
+        /// @return The key of the block at the location
+        public static LocationKey of(Location loc) {
+            return new LocationKey(loc.getWorld().getName(), loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        }
+
+        /// Resolves the key to a location in its world.
+        ///
+        /// @return The location, or null if the world is not loaded
+        public Location toLocation() {
+            World bukkitWorld = Bukkit.getWorld(world);
+            return bukkitWorld == null ? null : new Location(bukkitWorld, x, y, z);
+        }
+
+        /// @return The key in "worldName_x_y_z" format
+        public String toLocationString() {
+            return world + "_" + x + "_" + y + "_" + z;
+        }
+    }
+
     /// Rotates a BlockFace clockwise based on the provided rotation order.
     ///
     /// @param face The original BlockFace to rotate
     /// @param rotationOrder Array defining rotation sequence
     /// @return New rotated BlockFace
     public static BlockFace rotateClockwise(BlockFace face, BlockFace[] rotationOrder) {
-        int index = Arrays.asList(rotationOrder).indexOf(face);
-        return rotationOrder[(index + 1) % 4]; // Next index
+        return rotationOrder[(indexOf(face, rotationOrder) + 1) % 4]; // Next index
     }
 
     /// Rotates a BlockFace counter-clockwise based on the provided rotation order.
@@ -77,8 +118,19 @@ public final class GateUtils {
     /// @param rotationOrder Array defining rotation sequence
     /// @return New rotated BlockFace
     public static BlockFace rotateCounterClockwise(BlockFace face, BlockFace[] rotationOrder) {
-        int index = Arrays.asList(rotationOrder).indexOf(face);
-        return rotationOrder[(index + 3) % 4]; // Previous index
+        return rotationOrder[(indexOf(face, rotationOrder) + 3) % 4]; // Previous index
+    }
+
+    /// Finds a face in the rotation order without allocating.
+    ///
+    /// @return the index of the face, or -1 if it is not in the rotation order
+    public static int indexOf(BlockFace face, BlockFace[] rotationOrder) {
+        for (int i = 0; i < rotationOrder.length; i++) {
+            if (rotationOrder[i] == face) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /// Calculates the output of a logic gate based on its type and inputs.
@@ -86,118 +138,118 @@ public final class GateUtils {
     /// @param type The gate type to calculate for
     /// @param input1 First input state
     /// @param input2 Second input state (ignored for single-input gates)
+    /// @param input3 Third input state (ignored unless the gate has three inputs)
     /// @return Resulting output state
     public static boolean calculateOutput(GateType type, boolean input1, boolean input2, boolean input3,
             GateData data) {
-        boolean isThreeInput = data.isThreeInput();
-        return switch (type) {
-            case XNOR -> isThreeInput ? (input1 == input2 && input2 == input3) : (input1 == input2);
-            case IMPLICATION -> isThreeInput ? (!input1 || !input2 || input3) : (!input1 || input2);
-            case XOR -> {
-                if (isThreeInput) {
-                    int count = (input1 ? 1 : 0) + (input2 ? 1 : 0) + (input3 ? 1 : 0);
-                    yield (count & 1) == 1;
-                } else {
-                    yield input1 != input2;
-                }
-            }
-            case AND -> isThreeInput ? (input1 && input2 && input3) : (input1 && input2);
-            case OR -> isThreeInput ? (input1 || input2 || input3) : (input1 || input2);
-            case NOT -> !input1;
-            case NAND -> isThreeInput ? !(input1 && input2 && input3) : !(input1 && input2);
-            case NOR -> isThreeInput ? !(input1 || input2 || input3) : !(input1 || input2);
-            case TIMER -> {
-                long currentTime = System.currentTimeMillis();
-                long interval = data.getInterval();
-                if (currentTime - data.getLastToggleTime() >= interval) {
-                    data.setState(!data.getState());
-                    data.setLastToggleTime(currentTime);
-                }
-                yield data.getState();
-            }
-            case RS_LATCH -> {
-                if (input1 && input2) {
-                    yield data.getState();
-                } else if (input1) {
-                    data.setState(true);
-                } else if (input2) {
-                    data.setState(false);
-                }
-                yield data.getState();
+        int inputs = (input1 ? 1 : 0) | (input2 ? 2 : 0) | (input3 ? 4 : 0);
+        return calculateOutput(type, inputs, data);
+    }
+
+    /// Calculates the output of a logic gate from its input bits.
+    /// Combinational types are looked up in their [TruthTables]; only the latch and the timer keep state.
+    ///
+    /// @param type The gate type to calculate for
+    /// @param inputs Input states, input 1 in bit 0; only the gate's [GateData#getInputCount()] bits are used
+    /// @return Resulting output state
+    public static boolean calculateOutput(GateType type, int inputs, GateData data) {
+        if (TruthTables.isCombinational(type)) {
+            return TruthTables.evaluate(type, inputs, data.getInputCount());
+        }
+        if (type == GateType.RS_LATCH) {
+            // Set on input 1, reset on input 2, hold on both or neither
+            int setReset = inputs & 3;
+            if (setReset == 1) {
+                data.setState(true);
+            } else if (setReset == 2) {
+                data.setState(false);
             }
-            default -> false;
-        };
+        }
+        // Timers are toggled by the timer wheel when due
+        return data.getState();
     }
 
     /// Applies redstone power to a block with appropriate type handling.
+    /// The block is only written, with one physics update, if its data actually changes.
     ///
     /// @param block The target block to modify
     /// @param power The power level to set (0-15)
-    public static synchronized void setRedstonePower(Block block, int power) {
+    public static void setRedstonePower(Block block, int power) {
         if (block == null)
             return;
 
-        Material type = block.getType();
         try {
-            BlockData data = block.getBlockData();
+            BlockData current = block.getBlockData();
+            BlockData powered = withRedstonePower(current, power);
+            if (!powered.equals(current)) {
+                block.setBlockData(powered);
+            }
+        } catch (Exception e) {
+            Bukkit.getLogger().warning(
+                    "Failed to set redstone power for block: " + block.getType() + " due to " + e.getMessage());
+        }
+    }
 
-            switch (type) {
-                case REDSTONE_WIRE -> {
-                    if (data instanceof RedstoneWire wire) {
-                        wire.setPower(power);
-                        block.setBlockData(wire);
-                    }
+    /// Returns block data with redstone power applied, with appropriate type handling.
+    ///
+    /// @param data The current block data, which is not modified
+    /// @param power The power level to set (0-15)
+    /// @return A modified copy, or `data` itself if power does not apply to this kind of block
+    public static BlockData withRedstonePower(BlockData data, int power) {
+        BlockData powered = data.clone();
+        switch (data.getMaterial()) {
+            case REDSTONE_WIRE -> {
+                if (powered instanceof RedstoneWire wire) {
+                    wire.setPower(power);
+                    return wire;
+                }
+            }
+            case REDSTONE_LAMP, REDSTONE_TORCH, REDSTONE_WALL_TORCH, FURNACE, CAMPFIRE -> {
+                if (powered instanceof Lightable lightable) {
+                    lightable.setLit(power > 0);
+                    return lightable;
                 }
-                case REDSTONE_LAMP, REDSTONE_TORCH, REDSTONE_WALL_TORCH, FURNACE, CAMPFIRE -> {
-                    if (data instanceof Lightable lightable) {
-                        lightable.setLit(power > 0);
-                        block.setBlockData(lightable);
-                    }
+            }
+            case REPEATER -> {
+                if (powered instanceof Repeater repeater) {
+                    repeater.setPowered(power > 0);
+                    return repeater;
                 }
-                case REPEATER -> {
-                    if (data instanceof Repeater repeater) {
-                        repeater.setPowered(power > 0);
-                        block.setBlockData(repeater);
-                    }
+            }
+            case COMPARATOR -> {
+                if (powered instanceof Comparator comparator) {
+                    comparator.setPowered(power > 0);
+                    return comparator;
                 }
-                case COMPARATOR -> {
-                    if (data instanceof Comparator comparator) {
-                        comparator.setPowered(power > 0);
-                        block.setBlockData(comparator);
-                    }
+            }
+            case PISTON, STICKY_PISTON -> {
+                if (powered instanceof Piston piston) {
+                    piston.setExtended(power > 0);
+                    return piston;
                 }
-                case PISTON, STICKY_PISTON -> {
-                    if (data instanceof Piston piston) {
-                        piston.setExtended(power > 0);
-                        block.setBlockData(piston);
-                    }
+            }
+            case TARGET -> {
+                if (powered instanceof AnaloguePowerable target) {
+                    target.setPower(power > 0 ? 15 : 0);
+                    return target;
+                }
+            }
+            default -> {
+                boolean applies = false;
+                if (powered instanceof Openable openable) {
+                    openable.setOpen(power > 0);
+                    applies = true;
                 }
-                case TARGET -> {
-                    if (data instanceof AnaloguePowerable target) {
-                        target.setPower(power > 0 ? 15 : 0);
-                        block.setBlockData(target);
-                    }
+                if (powered instanceof Powerable powerable) {
+                    powerable.setPowered(power > 0);
+                    applies = true;
                 }
-                default -> {
-                    if (data instanceof Openable openable) {
-                        openable.setOpen(power > 0);
-                        block.setBlockData(openable);
-                    }
-                    if (data instanceof Powerable powerable) {
-                        powerable.setPowered(power > 0);
-                        block.setBlockData(powerable);
-                    }
+                if (applies) {
+                    return powered;
                 }
             }
-
-            block.getState().update(true, true);
-        } catch (ClassCastException e) {
-            Bukkit.getLogger()
-                    .warning("Failed to set redstone power for block (ClassCastException): " + block.getType());
-        } catch (Exception e) {
-            Bukkit.getLogger().warning(
-                    "Failed to set redstone power for block: " + block.getType() + " due to " + e.getMessage());
         }
+        return data;
     }
 
     /// Displays particles indicating gate inputs and outputs.
@@ -260,12 +312,20 @@ public final class GateUtils {
                     5, new Particle.DustOptions(Color.GREEN, 1));
         } else {
             // Inputs for other gates: minimum 2 inputs
-            GateData data = plugin.getGates().get(gateBlock.getLocation());
-            if (data.isThreeInput()) {
+            GateData data = plugin.getGateIndex().get(gateBlock);
+            if (data.getInputCount() >= 3) {
                 world.spawnParticle(Particle.REDSTONE,
                         thirdInputLocation,
                         5, new Particle.DustOptions(Color.AQUA, 1));
             }
+            // Stacked inputs, one layer of up to three per INPUT_LAYER_SPACING blocks below the gate
+            Location[] layerInputs = {inputLocation, secondInputLocation, thirdInputLocation};
+            for (int input = LogicGatesPlugin.INPUTS_PER_LAYER; input < data.getInputCount(); input++) {
+                int depth = input / LogicGatesPlugin.INPUTS_PER_LAYER * LogicGatesPlugin.INPUT_LAYER_SPACING;
+                world.spawnParticle(Particle.REDSTONE,
+                        layerInputs[input % LogicGatesPlugin.INPUTS_PER_LAYER].clone().add(0, -depth, 0),
+                        5, new Particle.DustOptions(Color.AQUA, 1));
+            }
             world.spawnParticle(Particle.REDSTONE,
                     inputLocation,
                     5, new Particle.DustOptions(Color.RED, 1));
@@ -2,25 +2,62 @@ package pl.bednarskiwsieci.logicgatesplugin.util;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.block.BlockFace;
 import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
 import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
 
-import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
+/// Persists gates in a compact binary file, with an optional append-only journal of later changes.
+///
+/// File layout: magic, format version and a varint world count. Each world stores its name and a
+/// varint chunk count; each chunk stores its zigzag varint coordinates, a varint gate count and its
+/// gates as [GateCodec] records. The file is read and written as a stream, so no intermediate copy
+/// of the whole file is kept in memory.
+///
+/// A `gates.json` from earlier versions is converted on first start and kept as `gates.json.migrated`.
 public class GatesConfigManager {
-    private static final String GATES_FILE_NAME = "gates.json";
+    private static final String GATES_FILE_NAME = "gates.dat";
+    private static final String LEGACY_FILE_NAME = "gates.json";
+    private static final String EXPORT_FILE_NAME = "gates-export.json";
+    private static final String JOURNAL_FILE_NAME = "gates.journal";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    // Gates file header
+    private static final int FILE_MAGIC = 0x4C474154; // "LGAT"
+    private static final byte FORMAT_VERSION = 1;
+
+    // Journal record opcodes
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_REMOVE = 2;
+    private static final byte FLAG_STATE = 1;
+    // Input count - 2 in bits 1-3; older records only set bit 1, for three inputs
+    private static final int FLAG_INPUTS_SHIFT = 1;
+    private static final int FLAG_INPUTS_MASK = 7;
 
     private final LogicGatesPlugin plugin;
     private final Gson gson;
     private File gatesFile;
+    private File legacyFile;
+    private File journalFile;
 
     public GatesConfigManager(LogicGatesPlugin plugin) {
         this.plugin = plugin;
@@ -28,58 +65,377 @@ public class GatesConfigManager {
         initializeGatesFile();
     }
 
-    /// Initializes the gates file. If the file doesn't exist, it creates a new one.
+    /// Resolves the gates files and makes sure the data folder exists.
     private void initializeGatesFile() {
         gatesFile = new File(plugin.getDataFolder(), GATES_FILE_NAME);
+        legacyFile = new File(plugin.getDataFolder(), LEGACY_FILE_NAME);
+        journalFile = new File(plugin.getDataFolder(), JOURNAL_FILE_NAME);
+        gatesFile.getParentFile().mkdirs();
+    }
 
-        if (!gatesFile.exists()) {
-            try {
-                gatesFile.getParentFile().mkdirs();
-                gatesFile.createNewFile();
-            } catch (IOException e) {
-                plugin.getLogger().severe("Failed to create " + GATES_FILE_NAME + ": " + e.getMessage());
+    /// Saves the current state of gates to the gates file.
+    ///
+    /// @param gates a map containing the locations and data of the gates to be saved.
+    public void saveGates(Map<Location, GateData> gates) {
+        writeSnapshot(snapshot(gates));
+    }
+
+    /// Takes a detached copy of all gates, keyed by their block coordinates.
+    /// Must be called on the main thread so the copy reflects a single consistent tick.
+    ///
+    /// @param gates the live gates map
+    /// @return a snapshot that is safe to hand over to another thread
+    public Map<GateUtils.LocationKey, GateData> snapshot(Map<Location, GateData> gates) {
+        Map<GateUtils.LocationKey, GateData> serializableGates = new HashMap<>(gates.size() * 4 / 3 + 1);
+
+        gates.forEach((location, gateData) -> {
+            if (location.getWorld() != null) {
+                serializableGates.put(GateUtils.LocationKey.of(location), gateData.copy());
             }
-        }
+        });
+        return serializableGates;
     }
 
-    /// Saves the current state of gates to the gates file.
+    /// Writes a snapshot to the gates file. The data goes to a temporary file first, which then
+    /// replaces the gates file, so a crash mid-write never leaves a truncated file behind.
+    /// Once the snapshot is in place the journal is discarded, as all of its records are included.
+    /// Safe to call from any thread.
     ///
-    /// @param gates a ConcurrentHashMap containing the locations and data of the gates to be saved.
-    public void saveGates(ConcurrentHashMap<Location, GateData> gates) {
-        Map<String, GateData> serializableGates = new HashMap<>();
+    /// @param serializableGates snapshot produced by [#snapshot(Map)]
+    /// @return `true` if the snapshot was written
+    public boolean writeSnapshot(Map<GateUtils.LocationKey, GateData> serializableGates) {
+        Path target = gatesFile.toPath();
+        Path temp = target.resolveSibling(GATES_FILE_NAME + TEMP_SUFFIX);
 
-        gates.forEach((location, gateData) ->
-                serializableGates.put(plugin.convertLocationToString(location), gateData)
-        );
+        // Group by world and chunk, so each chunk's coordinates are stored once
+        Map<String, Map<Long, List<Map.Entry<GateUtils.LocationKey, GateData>>>> byChunk = new HashMap<>();
+        for (Map.Entry<GateUtils.LocationKey, GateData> entry : serializableGates.entrySet()) {
+            GateUtils.LocationKey key = entry.getKey();
+            long chunkKey = ((long) (key.x() >> 4) << 32) | ((key.z() >> 4) & 0xFFFFFFFFL);
+            byChunk.computeIfAbsent(key.world(), k -> new HashMap<>())
+                    .computeIfAbsent(chunkKey, k -> new ArrayList<>())
+                    .add(entry);
+        }
 
-        try (FileWriter writer = new FileWriter(gatesFile)) {
-            gson.toJson(serializableGates, writer);
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temp), BUFFER_SIZE))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeByte(FORMAT_VERSION);
+                VarInts.writeVarLong(out, byChunk.size());
+                for (Map.Entry<String, Map<Long, List<Map.Entry<GateUtils.LocationKey, GateData>>>> world : byChunk.entrySet()) {
+                    out.writeUTF(world.getKey());
+                    VarInts.writeVarLong(out, world.getValue().size());
+                    for (Map.Entry<Long, List<Map.Entry<GateUtils.LocationKey, GateData>>> chunk : world.getValue().entrySet()) {
+                        VarInts.writeSignedVarInt(out, (int) (chunk.getKey() >> 32));
+                        VarInts.writeSignedVarInt(out, (int) (long) chunk.getKey());
+                        VarInts.writeVarLong(out, chunk.getValue().size());
+                        for (Map.Entry<GateUtils.LocationKey, GateData> gate : chunk.getValue()) {
+                            GateUtils.LocationKey key = gate.getKey();
+                            GateCodec.writeGate(out, key.x(), key.y(), key.z(), gate.getValue());
+                        }
+                    }
+                }
+            }
+            moveIntoPlace(temp, target);
+            Files.deleteIfExists(journalFile.toPath());
+            return true;
         } catch (IOException e) {
             plugin.getLogger().severe("Failed to save gates: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /// Streams the gates file into the sink.
+    /// A file that cannot be read in full is moved aside as `gates.dat.corrupt`, so it is never replaced by a
+    /// snapshot of the gates that could be read.
+    ///
+    /// @param sink receives every stored gate
+    /// @return `false` if the file could not be read in full
+    private boolean readGatesFile(BiConsumer<GateUtils.LocationKey, GateData> sink) {
+        if (!gatesFile.exists()) return true;
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(gatesFile.toPath()), BUFFER_SIZE))) {
+            int magic = in.readInt();
+            byte version = in.readByte();
+            if (magic != FILE_MAGIC || version != FORMAT_VERSION) {
+                plugin.getLogger().severe("Unsupported " + GATES_FILE_NAME + " format, no gates were loaded");
+                return quarantineGatesFile();
+            }
+
+            long worlds = VarInts.readVarLong(in);
+            for (long w = 0; w < worlds; w++) {
+                String world = in.readUTF();
+                long chunks = VarInts.readVarLong(in);
+                for (long c = 0; c < chunks; c++) {
+                    int chunkX = VarInts.readSignedVarInt(in);
+                    int chunkZ = VarInts.readSignedVarInt(in);
+                    long count = VarInts.readVarLong(in);
+                    for (long g = 0; g < count; g++) {
+                        GateCodec.DecodedGate gate = GateCodec.readGate(in, chunkX, chunkZ);
+                        if (gate.data() != null) {
+                            sink.accept(new GateUtils.LocationKey(world, gate.x(), gate.y(), gate.z()), gate.data());
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read " + GATES_FILE_NAME + ": " + e);
+            return quarantineGatesFile();
+        }
+        return true;
+    }
+
+    /// Moves an unreadable gates file aside, keeping it for manual recovery.
+    ///
+    /// @return always `false`, the result of the failed read
+    private boolean quarantineGatesFile() {
+        try {
+            Files.move(gatesFile.toPath(), gatesFile.toPath().resolveSibling(GATES_FILE_NAME + CORRUPT_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING);
+            plugin.getLogger().severe(GATES_FILE_NAME + " was moved to " + GATES_FILE_NAME + CORRUPT_SUFFIX
+                    + ", it will not be overwritten");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to move " + GATES_FILE_NAME + " aside: " + e.getMessage());
+        }
+        return false;
+    }
+
+    /// Converts a `gates.json` from earlier versions into the binary gates file, together with its journal.
+    /// Does nothing once the binary file exists.
+    private void migrateLegacyFile() {
+        if (gatesFile.exists() || !legacyFile.exists()) return;
+
+        Map<GateUtils.LocationKey, GateData> legacyGates = new HashMap<>();
+        if (legacyFile.length() > 0) {
+            try (JsonReader reader = new JsonReader(Files.newBufferedReader(legacyFile.toPath(), StandardCharsets.UTF_8))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String locationStr = reader.nextName();
+                    GateData data = gson.fromJson(reader, GateData.class);
+                    GateUtils.LocationKey key = GateUtils.parseLocationKey(locationStr);
+                    if (key == null || data == null) {
+                        plugin.getLogger().warning("Failed to parse location: " + locationStr);
+                        continue;
+                    }
+                    legacyGates.put(key, data);
+                }
+                reader.endObject();
+            } catch (IOException | RuntimeException e) {
+                plugin.getLogger().severe("Failed to migrate " + LEGACY_FILE_NAME + ", it was left in place: " + e.getMessage());
+                return;
+            }
+        }
+        replayJournal(putOrRemove(legacyGates));
+
+        writeSnapshot(legacyGates);
+        try {
+            Files.move(legacyFile.toPath(), legacyFile.toPath().resolveSibling(LEGACY_FILE_NAME + MIGRATED_SUFFIX),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Failed to rename " + LEGACY_FILE_NAME + ": " + e.getMessage());
+        }
+        plugin.getLogger().info("Migrated " + legacyGates.size() + " gates from " + LEGACY_FILE_NAME + " to " + GATES_FILE_NAME);
+    }
+
+    /// Writes a snapshot as pretty-printed JSON, in the format of `gates.json` from earlier versions.
+    /// Meant for debugging; safe to call from any thread.
+    ///
+    /// @param serializableGates snapshot produced by [#snapshot(Map)]
+    /// @return the written file, or `null` if the export failed
+    public File exportJson(Map<GateUtils.LocationKey, GateData> serializableGates) {
+        File exportFile = new File(plugin.getDataFolder(), EXPORT_FILE_NAME);
+        try (JsonWriter writer = gson.newJsonWriter(Files.newBufferedWriter(exportFile.toPath(), StandardCharsets.UTF_8))) {
+            writer.beginObject();
+            for (Map.Entry<GateUtils.LocationKey, GateData> entry : serializableGates.entrySet()) {
+                writer.name(entry.getKey().toLocationString());
+                gson.toJson(entry.getValue(), GateData.class, writer);
+            }
+            writer.endObject();
+            return exportFile;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to export gates: " + e.getMessage());
+            return null;
         }
     }
 
-    /// Loads the gates from the gates file into the provided ConcurrentHashMap.
+    /// Appends gate changes to the journal and syncs it to disk.
+    /// Safe to call from any thread, but calls must not overlap.
     ///
-    /// @param gates a ConcurrentHashMap that will be populated with the loaded gates.
-    public void loadGates(ConcurrentHashMap<Location, GateData> gates) {
-        try (FileReader reader = new FileReader(gatesFile)) {
-            Map<String, GateData> serializedGates = gson.fromJson(reader,
-                    new com.google.gson.reflect.TypeToken<Map<String, GateData>>() {
-                    }.getType()
-            );
-
-            if (serializedGates == null) return;
-
-            serializedGates.forEach((locationStr, gateData) -> {
-                Location loc = plugin.convertStringToLocation(locationStr);
-                if (loc != null && loc.getBlock().getType() == Material.GLASS) {
-                    // Use thread-safe put operation
-                    gates.put(loc, gateData);
+    /// @param entries the changes to append, in order
+    /// @return the journal size in bytes after the append, or -1 if the append failed
+    public long appendJournal(List<JournalEntry> entries) {
+        try (FileOutputStream fileStream = new FileOutputStream(journalFile, true);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileStream))) {
+            for (JournalEntry entry : entries) {
+                writeJournalEntry(out, entry);
+            }
+            out.flush();
+            fileStream.getChannel().force(false);
+            return fileStream.getChannel().size();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to append to " + JOURNAL_FILE_NAME + ": " + e.getMessage());
+            return -1L;
+        }
+    }
+
+    /// Encodes a single journal record.
+    private void writeJournalEntry(DataOutputStream out, JournalEntry entry) throws IOException {
+        GateData data = entry.data();
+        if (data == null) {
+            out.writeByte(OP_REMOVE);
+            out.writeUTF(entry.location());
+            return;
+        }
+
+        byte flags = 0;
+        if (data.getState()) flags |= FLAG_STATE;
+        flags |= (byte) ((data.getConfiguredInputCount() - 2) << FLAG_INPUTS_SHIFT);
+
+        out.writeByte(OP_UPSERT);
+        out.writeUTF(entry.location());
+        out.writeUTF(data.getType().name());
+        // A gate without a facing is recorded facing north, as GateCodec does in the gates file
+        BlockFace facing = data.getFacing();
+        out.writeUTF((facing != null ? facing : BlockFace.NORTH).name());
+        out.writeByte(flags);
+        out.writeLong(data.getInterval());
+    }
+
+    /// Replays the journal on top of the gates read from the last snapshot.
+    /// A truncated record at the end (e.g. after a crash mid-append) ends the replay.
+    ///
+    /// @param sink receives every change; the data is `null` for a removed gate
+    private void replayJournal(BiConsumer<GateUtils.LocationKey, GateData> sink) {
+        if (!journalFile.exists()) return;
+
+        int replayed = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(journalFile)))) {
+            while (true) {
+                byte op = in.readByte();
+                String location = in.readUTF();
+                GateUtils.LocationKey key = GateUtils.parseLocationKey(location);
+                if (key == null) {
+                    plugin.getLogger().warning("Invalid location in " + JOURNAL_FILE_NAME + ", stopping replay");
+                    break;
+                }
+                if (op == OP_REMOVE) {
+                    sink.accept(key, null);
+                } else if (op == OP_UPSERT) {
+                    GateType type = GateType.valueOf(in.readUTF());
+                    BlockFace facing = BlockFace.valueOf(in.readUTF());
+                    byte flags = in.readByte();
+                    long interval = in.readLong();
+
+                    GateData data = GateData.create(facing, type);
+                    data.setState((flags & FLAG_STATE) != 0);
+                    data.setInputCount(2 + ((flags >> FLAG_INPUTS_SHIFT) & FLAG_INPUTS_MASK));
+                    data.setInterval(interval);
+                    sink.accept(key, data);
+                } else {
+                    plugin.getLogger().warning("Unknown record in " + JOURNAL_FILE_NAME + ", stopping replay");
+                    break;
+                }
+                replayed++;
+            }
+        } catch (EOFException e) {
+            // End of journal reached
+        } catch (IOException | IllegalArgumentException e) {
+            plugin.getLogger().warning("Failed to replay " + JOURNAL_FILE_NAME + ": " + e.getMessage());
+        }
+
+        if (replayed > 0) {
+            plugin.getLogger().info("Replayed " + replayed + " gate changes from " + JOURNAL_FILE_NAME);
+        }
+    }
+
+    /// Replaces the target with the temporary file, atomically where the file system allows it.
+    static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /// Loads the gates from the gates file into the provided map.
+    /// Gates are inserted while the file is streamed, skipping those whose glass block is gone. Gates in
+    /// chunks that are not loaded are inserted unchecked, and checked when their chunk loads; those in
+    /// loaded chunks owned by another thread are checked by that thread.
+    ///
+    /// @param gates a map that will be populated with the loaded gates.
+    public void loadGates(Map<Location, GateData> gates) {
+        migrateLegacyFile();
+
+        BiConsumer<GateUtils.LocationKey, GateData> sink = (key, gateData) -> {
+            Location loc = key.toLocation();
+            if (loc == null) return;
+            if (gateData == null) {
+                gates.remove(loc);
+            } else if (!plugin.canReadChunk(loc.getWorld(), key.x() >> 4, key.z() >> 4)) {
+                gates.put(loc, gateData);
+                if (loc.getWorld().isChunkLoaded(key.x() >> 4, key.z() >> 4)) {
+                    plugin.validateChunk(loc.getWorld(), key.x() >> 4, key.z() >> 4);
                 }
-            });
+            } else if (loc.getBlock().getType() == Material.GLASS) {
+                gates.put(loc, gateData);
+            }
+        };
+        readGatesFile(sink);
+        replayJournal(sink);
+    }
+
+    /// Reads the gates file and replays the journal on top of it, without validating any gate.
+    ///
+    /// @return gates keyed by their block coordinates; empty if there is nothing to load
+    public Map<GateUtils.LocationKey, GateData> readSerializedGates() {
+        Map<GateUtils.LocationKey, GateData> serializedGates = new HashMap<>();
+        readSerializedGates(serializedGates);
+        return serializedGates;
+    }
+
+    /// Reads the gates file and replays the journal on top of it into the given map, without validating any gate.
+    ///
+    /// @param serializedGates receives the gates, keyed by their block coordinates
+    /// @return `false` if the gates file could not be read in full and was moved aside
+    public boolean readSerializedGates(Map<GateUtils.LocationKey, GateData> serializedGates) {
+        migrateLegacyFile();
+
+        boolean intact = readGatesFile(putOrRemove(serializedGates));
+        replayJournal(putOrRemove(serializedGates));
+        return intact;
+    }
+
+    private static BiConsumer<GateUtils.LocationKey, GateData> putOrRemove(Map<GateUtils.LocationKey, GateData> target) {
+        return (key, data) -> {
+            if (data == null) {
+                target.remove(key);
+            } else {
+                target.put(key, data);
+            }
+        };
+    }
+
+    /// Moves the gates file and journal out of the way after their contents were migrated elsewhere.
+    ///
+    /// @param suffix suffix appended to the name of the retired files
+    public void retireGatesFile(String suffix) {
+        try {
+            if (gatesFile.exists()) {
+                Files.move(gatesFile.toPath(), gatesFile.toPath().resolveSibling(GATES_FILE_NAME + suffix),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(journalFile.toPath());
         } catch (IOException e) {
-            plugin.getLogger().warning("No gates file found, starting fresh");
+            plugin.getLogger().warning("Failed to retire " + GATES_FILE_NAME + ": " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    /// A single journaled gate change.
+    ///
+    /// @param location serialized gate location
+    /// @param data detached gate data, or `null` if the gate was removed
+    public record JournalEntry(String location, GateData data) {
+    }
+}
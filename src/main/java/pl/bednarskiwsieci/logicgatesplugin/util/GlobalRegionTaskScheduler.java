@@ -0,0 +1,63 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/// Scheduler for servers with a single main thread: all work runs on it through the Bukkit scheduler,
+/// immediate region and entity work right away.
+public class GlobalRegionTaskScheduler implements RegionTaskScheduler {
+
+    private final Plugin plugin;
+
+    /// @param plugin Plugin that owns the tasks
+    public GlobalRegionTaskScheduler(Plugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        return Bukkit.getScheduler().runTaskTimer(plugin, task, delayTicks, periodTicks)::cancel;
+    }
+
+    @Override
+    public TaskHandle runGlobalLater(Runnable task, long delayTicks) {
+        return Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks)::cancel;
+    }
+
+    @Override
+    public void runGlobal(Runnable task) {
+        Bukkit.getScheduler().runTask(plugin, task);
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, task);
+    }
+
+    @Override
+    public void runInRegion(World world, int chunkX, int chunkZ, Runnable task) {
+        task.run();
+    }
+
+    @Override
+    public void runInRegionLater(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        Bukkit.getScheduler().runTaskLater(plugin, task, delayTicks);
+    }
+
+    @Override
+    public boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        return Bukkit.isPrimaryThread();
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        task.run();
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return false;
+    }
+}
@@ -0,0 +1,36 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Location;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+/// Gate storage that persists individual gate changes instead of rewriting the gates file.
+///
+/// Changes are recorded as they happen and persisted by the save scheduler's coalesced flush.
+/// On region-threaded servers changes are recorded from the threads of the regions, so implementations
+/// synchronize their methods; writes are started from the main or global region thread.
+public interface IncrementalGateStorage {
+
+    /// Moves gates from the gates file (and its journal) into this storage, if there are any.
+    ///
+    /// @param gatesConfigManager manager of the legacy gates file
+    void migrateFromGatesFile(GatesConfigManager gatesConfigManager);
+
+    /// Registers the stored gates in the plugin's gates map on startup.
+    void load();
+
+    /// Records a gate change. It is persisted by the next [#writeDirty()].
+    ///
+    /// @param loc location of the changed gate
+    /// @param data current gate data, or `null` if the gate was removed
+    void applyChange(Location loc, GateData data);
+
+    /// Persists everything that changed since the last write.
+    void writeDirty();
+
+    /// Persists all gates that are currently loaded.
+    void writeAll();
+
+    /// Releases the resources held by the storage. Called once on shutdown, after the final write.
+    default void close() {
+    }
+}
@@ -0,0 +1,122 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+/// Open-addressing hash map from packed block coordinates to gates, with linear probing.
+/// Lookups do not allocate. Not thread-safe.
+final class LongGateMap {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private GateData[] values = new GateData[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size;
+
+    GateData get(long key) {
+        for (int i = BlockKey.hash(key) & mask; ; i = (i + 1) & mask) {
+            GateData value = values[i];
+            if (value == null || keys[i] == key) {
+                return value;
+            }
+        }
+    }
+
+    GateData put(long key, GateData value) {
+        int i = BlockKey.hash(key) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                GateData previous = values[i];
+                values[i] = value;
+                return previous;
+            }
+        }
+
+        keys[i] = key;
+        values[i] = value;
+        // Keep the table at most half full, so probe sequences stay short
+        if (++size > (mask + 1) >> 1) {
+            resize((mask + 1) << 1);
+        }
+        return null;
+    }
+
+    GateData remove(long key) {
+        int i = BlockKey.hash(key) & mask;
+        for (; values[i] != null; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                GateData previous = values[i];
+                shiftBack(i);
+                size--;
+                return previous;
+            }
+        }
+        return null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /// @return the estimated heap size of the table in bytes
+    long estimateBytes() {
+        // Object and two arrays, 8 + 4 bytes per slot
+        return 32 + 16 + 16 + (mask + 1L) * 12;
+    }
+
+    void clear() {
+        keys = new long[INITIAL_CAPACITY];
+        values = new GateData[INITIAL_CAPACITY];
+        mask = INITIAL_CAPACITY - 1;
+        size = 0;
+    }
+
+    /// Visits every entry. Entries added or removed while visiting may or may not be seen.
+    void forEach(Visitor visitor) {
+        long[] currentKeys = keys;
+        GateData[] currentValues = values;
+        for (int i = 0; i < currentValues.length; i++) {
+            GateData value = currentValues[i];
+            if (value != null) {
+                visitor.visit(currentKeys[i], value);
+            }
+        }
+    }
+
+    /// Empties a slot and moves later entries of its probe sequence back into the gap.
+    private void shiftBack(int hole) {
+        values[hole] = null;
+        for (int i = (hole + 1) & mask; values[i] != null; i = (i + 1) & mask) {
+            int home = BlockKey.hash(keys[i]) & mask;
+            if (((hole - home) & mask) < ((i - home) & mask)) {
+                keys[hole] = keys[i];
+                values[hole] = values[i];
+                values[i] = null;
+                hole = i;
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        GateData[] oldValues = values;
+        keys = new long[capacity];
+        values = new GateData[capacity];
+        mask = capacity - 1;
+
+        for (int j = 0; j < oldValues.length; j++) {
+            if (oldValues[j] == null) continue;
+            int i = BlockKey.hash(oldKeys[j]) & mask;
+            while (values[i] != null) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    @FunctionalInterface
+    interface Visitor {
+        void visit(long key, GateData data);
+    }
+}
@@ -0,0 +1,182 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/// Stores gates in memory-mapped slot tables, one file per world (`mapped/<world>.gates`).
+///
+/// Every change is written straight into its slot, so there is nothing to serialize on save: a flush
+/// only asks the OS to sync the mapping, and startup maps the files instead of parsing them. The tables
+/// are persistence only: loaded gates live in the [GateIndex] as with every other storage mode, and a
+/// table is only read when it is opened.
+public class MappedGateStore implements IncrementalGateStorage {
+
+    private static final String MAPPED_FOLDER_NAME = "mapped";
+    private static final String TABLE_FILE_SUFFIX = ".gates";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+
+    private final LogicGatesPlugin plugin;
+    private final Executor writer;
+    private final File mappedFolder;
+    private final Map<String, MappedGateTable> tables = new HashMap<>();
+
+    /// @param plugin Main plugin instance
+    /// @param writer Background executor used to sync the mappings to disk
+    public MappedGateStore(LogicGatesPlugin plugin, Executor writer) {
+        this.plugin = plugin;
+        this.writer = writer;
+        this.mappedFolder = new File(plugin.getDataFolder(), MAPPED_FOLDER_NAME);
+        mappedFolder.mkdirs();
+    }
+
+    /// Maps the table of every loaded world and registers the gates whose glass block is still in place.
+    /// Gates in chunks that are not loaded are registered unchecked, and checked when their chunk loads;
+    /// those in loaded chunks owned by another thread are checked by that thread.
+    @Override
+    public void load() {
+        for (World world : Bukkit.getWorlds()) {
+            File file = tableFile(world.getName());
+            if (!file.exists() || tables.containsKey(world.getName())) {
+                continue;
+            }
+
+            List<Location> invalid = new ArrayList<>();
+            MappedGateTable table = openTable(world.getName(), (x, y, z, data) -> {
+                Location loc = new Location(world, x, y, z);
+                if (!plugin.canReadChunk(world, x >> 4, z >> 4)) {
+                    plugin.getGates().put(loc, data);
+                    if (world.isChunkLoaded(x >> 4, z >> 4)) {
+                        plugin.validateChunk(world, x >> 4, z >> 4);
+                    }
+                } else if (loc.getBlock().getType() == Material.GLASS) {
+                    plugin.getGates().put(loc, data);
+                } else {
+                    invalid.add(loc);
+                }
+            });
+            if (table != null) {
+                invalid.forEach(loc -> table.remove(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ()));
+            }
+        }
+    }
+
+    // region Changes and writes
+
+    @Override
+    public synchronized void applyChange(Location loc, GateData data) {
+        if (loc.getWorld() == null) {
+            return;
+        }
+
+        MappedGateTable table = getTable(loc.getWorld().getName());
+        if (table == null) {
+            return;
+        }
+        try {
+            if (data != null) {
+                table.put(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ(), data);
+            } else {
+                table.remove(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to store gate at " + plugin.formatLocation(loc) + ": " + e.getMessage());
+        }
+    }
+
+    /// Changes are already in the mappings, so this only syncs them to disk in the background.
+    @Override
+    public synchronized void writeDirty() {
+        List<MappedGateTable> snapshot = new ArrayList<>(tables.values());
+        writer.execute(() -> snapshot.forEach(MappedGateTable::force));
+    }
+
+    /// Copies the current state of every loaded gate into its slot and syncs the mappings.
+    @Override
+    public synchronized void writeAll() {
+        plugin.getGates().forEach(this::applyChange);
+        writeDirty();
+    }
+
+    @Override
+    public void close() {
+        for (Map.Entry<String, MappedGateTable> entry : tables.entrySet()) {
+            try {
+                entry.getValue().close();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to close gate table of world " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+        tables.clear();
+    }
+    // endregion
+
+    // region Migration
+
+    /// Copies the gates from the gates file into the tables of their worlds.
+    /// Worlds do not need to be loaded, as tables are keyed by world name.
+    ///
+    /// @param gatesConfigManager manager of the legacy gates file
+    @Override
+    public void migrateFromGatesFile(GatesConfigManager gatesConfigManager) {
+        Map<GateUtils.LocationKey, GateData> legacyGates = gatesConfigManager.readSerializedGates();
+        if (legacyGates.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<GateUtils.LocationKey, GateData> entry : legacyGates.entrySet()) {
+            GateUtils.LocationKey key = entry.getKey();
+            MappedGateTable table = getTable(key.world());
+            if (table == null) {
+                return;
+            }
+            try {
+                table.put(key.x(), key.y(), key.z(), entry.getValue());
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to migrate gates into " + tableFile(key.world()).getName()
+                        + ", the gates file was left in place: " + e.getMessage());
+                return;
+            }
+        }
+        tables.values().forEach(MappedGateTable::force);
+
+        gatesConfigManager.retireGatesFile(MIGRATED_SUFFIX);
+        plugin.getLogger().info("Migrated " + legacyGates.size() + " gates into " + tables.size() + " gate tables");
+    }
+    // endregion
+
+    // region Tables
+
+    private File tableFile(String world) {
+        return new File(mappedFolder, world + TABLE_FILE_SUFFIX);
+    }
+
+    /// @return the table of the world, opened if needed, or `null` if it cannot be opened
+    private MappedGateTable getTable(String world) {
+        MappedGateTable table = tables.get(world);
+        return table != null ? table : openTable(world, null);
+    }
+
+    private MappedGateTable openTable(String world, MappedGateTable.SlotVisitor visitor) {
+        try {
+            MappedGateTable table = MappedGateTable.open(tableFile(world).toPath(), visitor);
+            tables.put(world, table);
+            return table;
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open " + tableFile(world).getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+    // endregion
+}
@@ -0,0 +1,295 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static pl.bednarskiwsieci.logicgatesplugin.listeners.GateListener.ROTATION_ORDER;
+
+/// Fixed-width gate slots of one world in a memory-mapped file.
+///
+/// Each slot holds the packed block position, flags, type, facing and interval, plus 8 reserved bytes
+/// (formerly the last toggle time, now always 0). The slots form an open-addressing hash table keyed by
+/// position (linear probing, at most half full), so a gate's slot is found by probing the file itself
+/// and the table keeps no index next to the gates already loaded on the heap. Opening a file moves every
+/// slot a probe would not reach, e.g. after a torn write or in files written before slots were placed
+/// by position. Writes go straight into the mapping and are persisted by the OS; [#force()] syncs them
+/// to disk. Not thread-safe.
+final class MappedGateTable implements Closeable {
+
+    private static final int FILE_MAGIC = 0x4C474D54; // "LGMT"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    // Slot layout
+    private static final int SLOT_SIZE = 32;
+    private static final int POS_OFFSET = 0;
+    private static final int FLAGS_OFFSET = 8;
+    private static final int TYPE_OFFSET = 9;
+    private static final int FACING_OFFSET = 10;
+    private static final int INTERVAL_OFFSET = 16;
+    private static final int RESERVED_OFFSET = 24;
+    private static final int FLAG_USED = 1;
+    private static final int FLAG_STATE = 1 << 1;
+    // Input count - 2 in bits 2-4; older files only set bit 2, for three inputs
+    private static final int FLAG_INPUTS_SHIFT = 2;
+    private static final int FLAG_INPUTS_MASK = 7;
+
+    private static final GateType[] TYPES = GateType.values();
+
+    private final FileChannel channel;
+    private MappedByteBuffer slots;
+    private int capacity;
+    private int mask;
+    private int size;
+
+    private MappedGateTable(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /// Maps the table file, creating it if needed, and moves misplaced slots.
+    ///
+    /// @param file the table file
+    /// @param visitor receives every stored gate; may be `null`
+    /// @return the opened table
+    static MappedGateTable open(Path file, SlotVisitor visitor) throws IOException {
+        FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedGateTable table = new MappedGateTable(channel);
+        try {
+            table.init(visitor);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return table;
+    }
+
+    private void init(SlotVisitor visitor) throws IOException {
+        long fileSize = channel.size();
+        boolean created = fileSize < HEADER_SIZE;
+        long fileSlots = created ? 0 : (fileSize - HEADER_SIZE) / SLOT_SIZE;
+        capacity = INITIAL_CAPACITY;
+        while (capacity < fileSlots) {
+            capacity <<= 1;
+        }
+        map();
+
+        if (created) {
+            slots.putInt(0, FILE_MAGIC);
+            slots.putInt(4, FORMAT_VERSION);
+        } else if (slots.getInt(0) != FILE_MAGIC || slots.getInt(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported gate table format");
+        }
+
+        for (int slot = 0; slot < capacity; slot++) {
+            if (!isUsed(slot)) {
+                continue;
+            }
+            if ((slots.get(offset(slot) + TYPE_OFFSET) & 0xFF) >= TYPES.length) {
+                // Unknown type, e.g. after a torn write
+                clear(slot);
+                continue;
+            }
+            size++;
+        }
+        while (size > capacity >> 1) {
+            capacity <<= 1;
+            map();
+        }
+        rehash();
+
+        if (visitor != null) {
+            for (int slot = 0; slot < capacity; slot++) {
+                if (isUsed(slot)) {
+                    long pos = position(slot);
+                    visitor.visit(BlockKey.x(pos), BlockKey.y(pos), BlockKey.z(pos), readSlot(offset(slot)));
+                }
+            }
+        }
+    }
+
+    // region Operations
+
+    /// Inserts or overwrites the gate at the given position.
+    void put(int x, int y, int z, GateData data) throws IOException {
+        long pos = BlockKey.pack(x, y, z);
+        int slot = find(pos);
+        if (!isUsed(slot)) {
+            if (size + 1 > capacity >> 1) {
+                grow();
+                slot = find(pos);
+            }
+            size++;
+        }
+        writeSlot(offset(slot), pos, data);
+    }
+
+    /// Removes the gate at the given position, if there is one.
+    void remove(int x, int y, int z) {
+        int hole = find(BlockKey.pack(x, y, z));
+        if (!isUsed(hole)) {
+            return;
+        }
+
+        clear(hole);
+        size--;
+        // Shift later slots of the probe sequence back into the gap
+        for (int i = (hole + 1) & mask; isUsed(i); i = (i + 1) & mask) {
+            int home = home(position(i));
+            if (((hole - home) & mask) < ((i - home) & mask)) {
+                copySlot(i, hole);
+                clear(i);
+                hole = i;
+            }
+        }
+    }
+
+    /// @return the number of stored gates
+    int size() {
+        return size;
+    }
+
+    /// Syncs the mapping to disk.
+    void force() {
+        slots.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        slots.force();
+        channel.close();
+    }
+    // endregion
+
+    // region Slots
+
+    private static int offset(int slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private void writeSlot(int offset, long pos, GateData data) {
+        int flags = FLAG_USED;
+        if (data.getState()) flags |= FLAG_STATE;
+        flags |= (data.getConfiguredInputCount() - 2) << FLAG_INPUTS_SHIFT;
+
+        slots.putLong(offset + POS_OFFSET, pos);
+        slots.put(offset + TYPE_OFFSET, (byte) data.getType().ordinal());
+        slots.put(offset + FACING_OFFSET, (byte) GateCodec.facingIndex(data.getFacing()));
+        slots.putLong(offset + INTERVAL_OFFSET, data.getInterval());
+        slots.putLong(offset + RESERVED_OFFSET, 0L);
+        // Written last, so a slot only becomes used once it is complete
+        slots.put(offset + FLAGS_OFFSET, (byte) flags);
+    }
+
+    private GateData readSlot(int offset) {
+        int typeOrdinal = slots.get(offset + TYPE_OFFSET) & 0xFF;
+        if (typeOrdinal >= TYPES.length) {
+            return null;
+        }
+
+        int flags = slots.get(offset + FLAGS_OFFSET);
+        GateData data = GateData.create(ROTATION_ORDER[slots.get(offset + FACING_OFFSET) & 3], TYPES[typeOrdinal]);
+        data.setState((flags & FLAG_STATE) != 0);
+        data.setInputCount(2 + ((flags >> FLAG_INPUTS_SHIFT) & FLAG_INPUTS_MASK));
+        data.setInterval(slots.getLong(offset + INTERVAL_OFFSET));
+        return data;
+    }
+
+    /// Doubles the number of slots and moves every gate to its place in the larger table.
+    /// The file is extended by mapping a larger region.
+    private void grow() throws IOException {
+        slots.force();
+        capacity <<= 1;
+        map();
+        rehash();
+    }
+
+    private void map() throws IOException {
+        slots = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+        mask = capacity - 1;
+    }
+
+    /// Moves every slot that a probe from its home would not reach into the first free slot on the way,
+    /// and frees slots repeating a position found earlier on the way. Every move shortens a probe
+    /// sequence, so the passes end. A move writes the new slot before freeing the old one, so an
+    /// interrupted move leaves a duplicate, which the next open removes.
+    private void rehash() {
+        boolean moved;
+        do {
+            moved = false;
+            for (int slot = 0; slot < capacity; slot++) {
+                if (!isUsed(slot)) {
+                    continue;
+                }
+
+                long pos = position(slot);
+                for (int i = home(pos); i != slot; i = (i + 1) & mask) {
+                    if (!isUsed(i)) {
+                        copySlot(slot, i);
+                        clear(slot);
+                        moved = true;
+                        break;
+                    }
+                    if (position(i) == pos) {
+                        clear(slot);
+                        size--;
+                        moved = true;
+                        break;
+                    }
+                }
+            }
+        } while (moved);
+    }
+
+    /// @return the slot holding the position, or the free slot ending its probe sequence
+    private int find(long pos) {
+        for (int i = home(pos); ; i = (i + 1) & mask) {
+            if (!isUsed(i) || position(i) == pos) {
+                return i;
+            }
+        }
+    }
+
+    private int home(long pos) {
+        return BlockKey.hash(pos) & mask;
+    }
+
+    private boolean isUsed(int slot) {
+        return (slots.get(offset(slot) + FLAGS_OFFSET) & FLAG_USED) != 0;
+    }
+
+    private long position(int slot) {
+        return slots.getLong(offset(slot) + POS_OFFSET);
+    }
+
+    private void clear(int slot) {
+        slots.put(offset(slot) + FLAGS_OFFSET, (byte) 0);
+    }
+
+    /// Copies a slot into a free one, flags last, like [#writeSlot(int, long, GateData)].
+    private void copySlot(int source, int target) {
+        int from = offset(source);
+        int to = offset(target);
+        slots.putLong(to + POS_OFFSET, slots.getLong(from + POS_OFFSET));
+        slots.put(to + TYPE_OFFSET, slots.get(from + TYPE_OFFSET));
+        slots.put(to + FACING_OFFSET, slots.get(from + FACING_OFFSET));
+        slots.putLong(to + INTERVAL_OFFSET, slots.getLong(from + INTERVAL_OFFSET));
+        slots.putLong(to + RESERVED_OFFSET, slots.getLong(from + RESERVED_OFFSET));
+        slots.put(to + FLAGS_OFFSET, slots.get(from + FLAGS_OFFSET));
+    }
+    // endregion
+
+    /// Receives the gates found while a table is opened.
+    @FunctionalInterface
+    interface SlotVisitor {
+        void visit(int x, int y, int z, GateData data);
+    }
+}
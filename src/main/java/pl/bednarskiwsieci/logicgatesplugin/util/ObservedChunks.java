@@ -0,0 +1,152 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/// The chunks within a radius of online players, used to update gates players can see first.
+///
+/// [#update(Iterable)] only rebuilds the chunks when a player changed chunk, joined or left since the
+/// last update; otherwise it just reads the player positions. Chunks are kept in primitive sets, so
+/// lookups cost one hash probe and neither lookups nor updates box their keys. Not thread-safe.
+public class ObservedChunks {
+
+    private final Map<World, ChunkSet> chunks = new HashMap<>();
+    // Position of each player at the last update, in iteration order
+    private World[] playerWorlds = new World[16];
+    private long[] playerChunks = new long[16];
+    private int playerCount;
+    private boolean stale = true;
+    private final Location location = new Location(null, 0, 0, 0);
+    private int radius = 4;
+
+    /// Replaces the observed chunks with the ones around the given players.
+    public void update(Iterable<? extends Player> players) {
+        int count = 0;
+        boolean changed = stale;
+        for (Player player : players) {
+            player.getLocation(location);
+            World world = location.getWorld();
+            long chunk = chunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+            if (count == playerWorlds.length) {
+                playerWorlds = Arrays.copyOf(playerWorlds, count * 2);
+                playerChunks = Arrays.copyOf(playerChunks, count * 2);
+            }
+            if (count >= playerCount || playerWorlds[count] != world || playerChunks[count] != chunk) {
+                playerWorlds[count] = world;
+                playerChunks[count] = chunk;
+                changed = true;
+            }
+            count++;
+        }
+        if (!changed && count == playerCount) {
+            return;
+        }
+
+        Arrays.fill(playerWorlds, count, playerWorlds.length, null);
+        playerCount = count;
+        stale = false;
+        chunks.values().forEach(ChunkSet::clear);
+        for (int i = 0; i < count; i++) {
+            ChunkSet worldChunks = chunks.computeIfAbsent(playerWorlds[i], world -> new ChunkSet());
+            int centerX = (int) (playerChunks[i] >> 32);
+            int centerZ = (int) playerChunks[i];
+            for (int chunkX = centerX - radius; chunkX <= centerX + radius; chunkX++) {
+                for (int chunkZ = centerZ - radius; chunkZ <= centerZ + radius; chunkZ++) {
+                    worldChunks.add(chunkKey(chunkX, chunkZ));
+                }
+            }
+        }
+    }
+
+    /// Forgets every observed chunk.
+    public void clear() {
+        chunks.values().forEach(ChunkSet::clear);
+        stale = true;
+    }
+
+    /// @return `true` if the chunk holding the block coordinates is near a player
+    public boolean contains(World world, int x, int z) {
+        ChunkSet worldChunks = chunks.get(world);
+        return worldChunks != null && worldChunks.contains(chunkKey(x >> 4, z >> 4));
+    }
+
+    /// @param radius distance from a player's chunk, in chunks, within which chunks are observed
+    public void setRadius(int radius) {
+        this.radius = radius;
+        stale = true;
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /// Open-addressing set of chunk keys, with linear probing. Cleared sets keep their capacity.
+    private static final class ChunkSet {
+        // Chunk X of Integer.MIN_VALUE is far beyond the world border, so no chunk has this key
+        private static final long EMPTY = Long.MIN_VALUE;
+        private static final int INITIAL_CAPACITY = 256;
+
+        private long[] keys = newKeys(INITIAL_CAPACITY);
+        private int mask = INITIAL_CAPACITY - 1;
+        private int size;
+
+        void add(long key) {
+            int i = BlockKey.hash(key) & mask;
+            for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return;
+                }
+            }
+
+            keys[i] = key;
+            // Keep the table at most half full, so probe sequences stay short
+            if (++size > (mask + 1) >> 1) {
+                resize((mask + 1) << 1);
+            }
+        }
+
+        boolean contains(long key) {
+            for (int i = BlockKey.hash(key) & mask; ; i = (i + 1) & mask) {
+                long stored = keys[i];
+                if (stored == key) {
+                    return true;
+                }
+                if (stored == EMPTY) {
+                    return false;
+                }
+            }
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(keys, EMPTY);
+                size = 0;
+            }
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            keys = newKeys(capacity);
+            mask = capacity - 1;
+            for (long key : oldKeys) {
+                if (key == EMPTY) continue;
+                int i = BlockKey.hash(key) & mask;
+                while (keys[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+            }
+        }
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+    }
+}
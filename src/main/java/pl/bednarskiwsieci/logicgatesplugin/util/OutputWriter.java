@@ -0,0 +1,109 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/// Writes gate outputs to the world, skipping writes that would not change the block.
+///
+/// Between [#begin()] and [#flush()] writes are collected per chunk instead of applied: a block written
+/// several times keeps only its last data, and a block that ends up in the state it started in is not
+/// written at all. The flush then applies each remaining change with a single physics update, chunk
+/// by chunk. Outside of a batch, writes are applied right away. Writes to blocks in chunks that are
+/// not loaded are dropped rather than loading the chunk.
+///
+/// Batches are only used on the main thread. Without a batch, as on region-threaded servers, writes may come
+/// from any thread that owns the written blocks; the counters are thread-safe.
+public class OutputWriter {
+
+    // Pending block data per world, then per chunk, then per packed block key, in write order
+    private final Map<World, Map<Long, Map<Long, BlockData>>> pending = new HashMap<>();
+    private boolean batching;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder elided = new LongAdder();
+
+    /// Starts collecting writes until the next [#flush()].
+    public void begin() {
+        batching = true;
+    }
+
+    /// Sets the redstone power of an output block, see [GateUtils#withRedstonePower(BlockData, int)].
+    ///
+    /// @param power The power level to set (0-15)
+    public void writePower(Block block, int power) {
+        write(block, data -> GateUtils.withRedstonePower(data, power));
+    }
+
+    /// Replaces an output block with the default state of a material.
+    public void writeType(Block block, Material type) {
+        write(block, data -> data.getMaterial() == type ? data : type.createBlockData());
+    }
+
+    private void write(Block block, UnaryOperator<BlockData> change) {
+        if (!block.getWorld().isChunkLoaded(block.getX() >> 4, block.getZ() >> 4)) {
+            return;
+        }
+        try {
+            if (!batching) {
+                BlockData current = block.getBlockData();
+                apply(block, current, change.apply(current));
+                return;
+            }
+
+            long chunkKey = ((long) (block.getX() >> 4) << 32) | ((block.getZ() >> 4) & 0xFFFFFFFFL);
+            Map<Long, BlockData> writes = pending.computeIfAbsent(block.getWorld(), world -> new HashMap<>())
+                    .computeIfAbsent(chunkKey, key -> new LinkedHashMap<>());
+            long key = BlockKey.pack(block.getX(), block.getY(), block.getZ());
+            BlockData data = writes.get(key);
+            writes.put(key, change.apply(data != null ? data : block.getBlockData()));
+        } catch (Exception e) {
+            Bukkit.getLogger().warning(
+                    "Failed to set redstone power for block: " + block.getType() + " due to " + e.getMessage());
+        }
+    }
+
+    /// Applies the collected writes chunk by chunk and stops collecting.
+    public void flush() {
+        batching = false;
+        pending.forEach((world, chunks) -> {
+            chunks.forEach((chunkKey, writes) -> writes.forEach((key, data) -> {
+                Block block = world.getBlockAt(BlockKey.x(key), BlockKey.y(key), BlockKey.z(key));
+                try {
+                    apply(block, block.getBlockData(), data);
+                } catch (Exception e) {
+                    Bukkit.getLogger().warning(
+                            "Failed to set redstone power for block: " + block.getType() + " due to " + e.getMessage());
+                }
+            }));
+            chunks.clear();
+        });
+    }
+
+    // Helper method: write the block with one physics update, unless it already has the data
+    private void apply(Block block, BlockData current, BlockData data) {
+        if (data.equals(current)) {
+            elided.increment();
+            return;
+        }
+        block.setBlockData(data, true);
+        written.increment();
+    }
+
+    /// @return number of output blocks written since startup
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /// @return number of output writes skipped since startup because they would not change the block
+    public long getElidedCount() {
+        return elided.sum();
+    }
+}
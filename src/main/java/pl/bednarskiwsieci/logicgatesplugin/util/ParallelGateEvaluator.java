@@ -0,0 +1,128 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/// Evaluates large [GateBatch]es on a worker pool.
+///
+/// A tick runs in three phases. The batch is filled on the main thread, which snapshots every input;
+/// the batch is then split into shares, one per thread, which are evaluated at the same time, the calling
+/// thread taking one of them; finally the outputs are merged back into the batch and applied on the main
+/// thread as before. Every gate of a wave is evaluated from the snapshot, never from another gate's new
+/// output, so any split is independent and the results are identical to [GateBatch#evaluate()].
+///
+/// Each share covers a range of the words of every group of the batch, so the work splits evenly without
+/// copying gates. Splitting by connected circuit instead (union-find over the netlist) was measured to
+/// take longer on the calling thread than evaluating the whole wave serially.
+///
+/// Batches below the threshold, or all of them with fewer than two threads, are evaluated serially.
+///
+/// Not thread-safe: batches must be handed over by one thread at a time. On region-threaded servers the
+/// regions already update their gates in parallel, so the plugin does not use it there.
+public class ParallelGateEvaluator {
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5L;
+
+    private ForkJoinPool pool;
+    private int threshold = 4096;
+    private Share[] shares = new Share[0];
+
+    /// Evaluates every gate in the batch, in parallel if it is large enough.
+    public void evaluate(GateBatch batch) {
+        if (pool == null || batch.size() < threshold) {
+            batch.evaluate();
+            return;
+        }
+
+        int words = batch.outputWords();
+        for (Share share : shares) {
+            share.prepare(batch, words);
+        }
+        for (int i = 1; i < shares.length; i++) {
+            pool.execute(shares[i].task);
+        }
+        shares[0].run();
+        for (int i = 1; i < shares.length; i++) {
+            shares[i].task.join();
+        }
+
+        batch.clearOutputs();
+        for (Share share : shares) {
+            batch.mergeOutputs(share.outputs);
+            share.batch = null;
+        }
+    }
+
+    /// Sets the number of threads that evaluate a batch together, replacing the current pool.
+    /// The calling thread is one of them.
+    ///
+    /// @param threads number of threads; below 2 every batch is evaluated on the calling thread
+    public void setThreads(int threads) {
+        shutdown();
+        if (threads > 1) {
+            pool = new ForkJoinPool(threads - 1, forkJoinPool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("LogicGates-Evaluator-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+            shares = new Share[threads];
+            for (int i = 0; i < threads; i++) {
+                shares[i] = new Share(i, threads);
+            }
+        }
+    }
+
+    /// @param threshold the smallest batch that is evaluated in parallel
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /// Stops the worker threads. Later batches are evaluated on the calling thread.
+    public void shutdown() {
+        if (pool == null) {
+            return;
+        }
+        pool.shutdown();
+        try {
+            pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pool = null;
+        shares = new Share[0];
+    }
+
+    /// One thread's share of a batch, with the buffers it evaluates into.
+    private static final class Share implements Runnable {
+        private final int index;
+        private final int count;
+        private final GateBatch.Scratch scratch = new GateBatch.Scratch();
+        private final ForkJoinTask<?> task = ForkJoinTask.adapt(this);
+        private long[] outputs = new long[0];
+        private GateBatch batch;
+
+        private Share(int index, int count) {
+            this.index = index;
+            this.count = count;
+        }
+
+        private void prepare(GateBatch batch, int words) {
+            this.batch = batch;
+            if (outputs.length < words) {
+                outputs = new long[words];
+            } else {
+                Arrays.fill(outputs, 0, words, 0L);
+            }
+            task.reinitialize();
+        }
+
+        @Override
+        public void run() {
+            batch.evaluatePart(index, count, scratch, outputs);
+        }
+    }
+}
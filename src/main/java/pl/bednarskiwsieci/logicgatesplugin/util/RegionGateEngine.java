@@ -0,0 +1,284 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/// Runs the gate engine on region-threaded servers, where the blocks of a chunk may only be touched by
+/// the thread that owns its region.
+///
+/// Each chunk with gates gets a shard with its own [GateUpdateScheduler] and [TimerWheel], which only the
+/// shard's task touches. The task runs on the thread owning the chunk: it advances the wheel to the
+/// [GateClock]'s tick, processes the due updates (checking the glass blocks there) and schedules itself
+/// for the next tick while work remains. Updates and timer arms requested from any thread are appended
+/// to the shard's inbox and picked up by its next run, so no lock is held while gates are updated.
+///
+/// Thread-safe.
+public class RegionGateEngine {
+
+    // Chunks near players are not known on the region threads, so all updates go to the far lane
+    private static final ObservedChunks NOWHERE = new ObservedChunks();
+
+    private final GateIndex gateIndex;
+    private final GateClock clock;
+    private final RegionTaskScheduler taskScheduler;
+    private final Consumer<List<Block>> update;
+    private final TimerFiring firing;
+    private final Map<World, Map<Long, Shard>> shards = new ConcurrentHashMap<>();
+    private volatile int maxPending = 100_000;
+    private volatile int maxPerTick;
+    private volatile double budgetMillis;
+    private volatile Runnable beginRun = () -> { };
+    private volatile Runnable endRun = () -> { };
+
+    /// @param gateIndex Registry of the gates, in concurrent mode
+    /// @param clock Clock advanced by the global thread, whose ticks the shards follow
+    /// @param taskScheduler Scheduler that runs the shard tasks on the threads owning their chunks
+    /// @param update Updates a wave of due gates of one chunk, see [GateUpdateScheduler#process(Consumer, ObservedChunks)]
+    /// @param firing Toggles a due timer gate and re-arms it on the wheel it is given
+    public RegionGateEngine(GateIndex gateIndex, GateClock clock, RegionTaskScheduler taskScheduler,
+                            Consumer<List<Block>> update, TimerFiring firing) {
+        this.gateIndex = gateIndex;
+        this.clock = clock;
+        this.taskScheduler = taskScheduler;
+        this.update = update;
+        this.firing = firing;
+    }
+
+    /// Schedules a gate update for the next run of its chunk's task. Blocks that are not gates are ignored.
+    ///
+    /// @param delayTicks number of ticks to wait after the next run
+    public void schedule(World world, int x, int y, int z, int delayTicks) {
+        if (gateIndex.get(world, x, y, z) == null) {
+            return;
+        }
+        Shard shard = shard(world, x >> 4, z >> 4);
+        synchronized (shard) {
+            shard.incoming.addUpdate(BlockKey.pack(x, y, z), delayTicks);
+        }
+        shard.wake();
+    }
+
+    /// Arms a timer gate to fire one interval from now on its chunk's wheel, replacing its previous deadline.
+    public void arm(World world, int x, int y, int z, GateData data) {
+        Shard shard = shard(world, x >> 4, z >> 4);
+        synchronized (shard) {
+            shard.incoming.addTimer(BlockKey.pack(x, y, z), data);
+        }
+        shard.wake();
+    }
+
+    /// Schedules the updates parked while the chunk was not loaded.
+    /// Call after the chunk's gates were resumed.
+    public void resume(World world, int chunkX, int chunkZ) {
+        Map<Long, Shard> worldShards = shards.get(world);
+        Shard shard = worldShards != null ? worldShards.get(chunkKey(chunkX, chunkZ)) : null;
+        if (shard == null) {
+            return;
+        }
+        synchronized (shard) {
+            shard.incoming.resume = true;
+        }
+        shard.wake();
+    }
+
+    /// Drops every shard with its pending updates and armed timers. Tasks already queued find nothing to do.
+    public void clear() {
+        shards.values().forEach(worldShards -> worldShards.values().forEach(Shard::close));
+        shards.clear();
+    }
+
+    /// Sums a counter over the update schedulers of all shards. The shards keep running, so the sum is
+    /// only approximate.
+    ///
+    /// @param counter a getter of [GateUpdateScheduler]
+    /// @return the sum
+    public long sum(ToLongFunction<GateUpdateScheduler> counter) {
+        long sum = 0;
+        for (Map<Long, Shard> worldShards : shards.values()) {
+            for (Shard shard : worldShards.values()) {
+                sum += counter.applyAsLong(shard.updates);
+            }
+        }
+        return sum;
+    }
+
+    /// Sets work done around every run of a chunk's task, on its thread, e.g. to batch what the run's
+    /// updates produce.
+    ///
+    /// @param begin runs before the chunk's timers and updates
+    /// @param end runs after them, even if they failed
+    public void setRunHooks(Runnable begin, Runnable end) {
+        this.beginRun = begin;
+        this.endRun = end;
+    }
+
+    /// @return the number of chunks with a shard
+    public int getShardCount() {
+        return shards.values().stream().mapToInt(Map::size).sum();
+    }
+
+    /// @param maxPending maximum number of pending updates per chunk before requests are held back
+    public void setMaxPending(int maxPending) {
+        this.maxPending = maxPending;
+        forEachShard(shard -> shard.updates.setMaxPending(maxPending));
+    }
+
+    /// @param maxPerTick most updates processed per chunk and tick; 0 for no limit
+    public void setMaxPerTick(int maxPerTick) {
+        this.maxPerTick = maxPerTick;
+        forEachShard(shard -> shard.updates.setMaxPerTick(maxPerTick));
+    }
+
+    /// @param budgetMillis time a chunk's task may spend on updates before the rest is carried over; 0 for no limit
+    public void setBudgetMillis(double budgetMillis) {
+        this.budgetMillis = budgetMillis;
+        forEachShard(shard -> shard.updates.setBudgetMillis(budgetMillis));
+    }
+
+    private void forEachShard(Consumer<Shard> action) {
+        shards.values().forEach(worldShards -> worldShards.values().forEach(action));
+    }
+
+    private Shard shard(World world, int chunkX, int chunkZ) {
+        return shards.computeIfAbsent(world, w -> new ConcurrentHashMap<>())
+                .computeIfAbsent(chunkKey(chunkX, chunkZ), key -> new Shard(world, chunkX, chunkZ));
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /// Toggles a due timer gate.
+    @FunctionalInterface
+    public interface TimerFiring {
+        /// @param timers the wheel of the gate's chunk, to re-arm the timer on
+        /// @param deadline the tick the timer was due on
+        void fire(TimerWheel timers, World world, int x, int y, int z, GateData data, long deadline);
+    }
+
+    /// The engine state of one chunk. Only [#run()] touches the scheduler and the wheel; other threads
+    /// only append to the inbox, holding the shard's lock.
+    private final class Shard implements Runnable {
+        private final World world;
+        private final int chunkX;
+        private final int chunkZ;
+        private final GateUpdateScheduler updates;
+        private final TimerWheel timers;
+        private final TimerWheel.TimerVisitor fire;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        // Requests appended since the last run, swapped with the drained ones on each run
+        private Requests incoming = new Requests();
+        private Requests draining = new Requests();
+        private volatile boolean closed;
+
+        private Shard(World world, int chunkX, int chunkZ) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.updates = new GateUpdateScheduler(gateIndex, clock);
+            this.timers = new TimerWheel(gateIndex, clock.getTick());
+            this.fire = (w, x, y, z, data, deadline) -> firing.fire(timers, w, x, y, z, data, deadline);
+            updates.setMaxPending(maxPending);
+            updates.setMaxPerTick(maxPerTick);
+            updates.setBudgetMillis(budgetMillis);
+        }
+
+        // Runs on the next tick at the earliest, so a request made by a running task never re-enters it
+        private void wake() {
+            if (!closed && scheduled.compareAndSet(false, true)) {
+                taskScheduler.runInRegionLater(world, chunkX, chunkZ, this, 1L);
+            }
+        }
+
+        @Override
+        public void run() {
+            scheduled.set(false);
+            if (closed) {
+                return;
+            }
+
+            Requests requests;
+            synchronized (this) {
+                requests = incoming;
+                incoming = draining;
+                draining = requests;
+            }
+            long tick = clock.getTick();
+            for (int i = 0; i < requests.timerCount; i++) {
+                long key = requests.timerKeys[i];
+                GateData data = requests.timerData[i];
+                timers.scheduleAt(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key), data,
+                        tick + data.getIntervalTicks());
+            }
+            for (int i = 0; i < requests.updateCount; i++) {
+                long key = requests.updateKeys[i];
+                updates.schedule(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key), requests.updateDelays[i]);
+            }
+            if (requests.resume) {
+                updates.resume(world, chunkX, chunkZ);
+            }
+            requests.clear();
+
+            Runnable end = endRun;
+            beginRun.run();
+            try {
+                timers.advanceTo(tick, fire);
+                updates.process(update, NOWHERE);
+            } finally {
+                end.run();
+            }
+            if (timers.size() > 0 || updates.getQueueDepth() > 0 || updates.getOverflowCount() > 0) {
+                wake();
+            }
+        }
+
+        private void close() {
+            closed = true;
+        }
+    }
+
+    /// Update requests and timer arms made to a shard, in request order.
+    private static final class Requests {
+        private long[] updateKeys = new long[16];
+        private int[] updateDelays = new int[16];
+        private int updateCount;
+        private long[] timerKeys = new long[4];
+        private GateData[] timerData = new GateData[4];
+        private int timerCount;
+        private boolean resume;
+
+        void addUpdate(long key, int delayTicks) {
+            if (updateCount == updateKeys.length) {
+                updateKeys = Arrays.copyOf(updateKeys, updateCount << 1);
+                updateDelays = Arrays.copyOf(updateDelays, updateCount << 1);
+            }
+            updateKeys[updateCount] = key;
+            updateDelays[updateCount++] = delayTicks;
+        }
+
+        void addTimer(long key, GateData data) {
+            if (timerCount == timerKeys.length) {
+                timerKeys = Arrays.copyOf(timerKeys, timerCount << 1);
+                timerData = Arrays.copyOf(timerData, timerCount << 1);
+            }
+            timerKeys[timerCount] = key;
+            timerData[timerCount++] = data;
+        }
+
+        void clear() {
+            Arrays.fill(timerData, 0, timerCount, null);
+            updateCount = 0;
+            timerCount = 0;
+            resume = false;
+        }
+    }
+}
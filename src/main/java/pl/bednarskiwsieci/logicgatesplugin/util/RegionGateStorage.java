@@ -0,0 +1,357 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import com.google.gson.Gson;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import pl.bednarskiwsieci.logicgatesplugin.LogicGatesPlugin;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/// Stores gates in per-region shard files (`regions/<world>/r.<x>.<z>.json`, 32x32 chunks each).
+///
+/// A shard is read when the first of its chunks loads, and only the gates of loaded chunks are
+/// registered in the plugin's gates map. When the last chunk of a region unloads, the shard is written
+/// (if it changed) and released, so memory use follows the loaded area instead of the total gate count.
+///
+/// Methods are synchronized, as chunks load and gates change on several threads on region-threaded servers.
+public class RegionGateStorage implements ChunkBoundStorage {
+
+    private static final String REGIONS_FOLDER_NAME = "regions";
+    private static final String MIGRATED_SUFFIX = ".migrated";
+    private static final String CORRUPT_SUFFIX = ".corrupt";
+    private static final int REGION_SHIFT = 5;
+
+    private final LogicGatesPlugin plugin;
+    private final Gson gson = new Gson();
+    private final Executor writer;
+    private final File regionsFolder;
+    private final Map<RegionKey, Shard> shards = new HashMap<>();
+    // Shards that were released while their write was still queued; read from here instead of disk
+    private final Map<RegionKey, Map<String, GateData>> pendingWrites = new ConcurrentHashMap<>();
+
+    /// @param plugin Main plugin instance
+    /// @param writer Background executor used for shard writes
+    public RegionGateStorage(LogicGatesPlugin plugin, Executor writer) {
+        this.plugin = plugin;
+        this.writer = writer;
+        this.regionsFolder = new File(plugin.getDataFolder(), REGIONS_FOLDER_NAME);
+    }
+
+    // region Chunk lifecycle
+
+    @Override
+    public synchronized void load() {
+        for (World world : Bukkit.getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                // The chunk's blocks are read by the thread that owns it
+                plugin.getTaskScheduler().runInRegion(world, chunk.getX(), chunk.getZ(), () -> onChunkLoad(chunk));
+            }
+        }
+    }
+
+    /// Reads the chunk's shard if needed and registers the chunk's gates.
+    /// Gates whose glass block is gone are dropped from the shard.
+    ///
+    /// @param chunk the chunk that has been loaded
+    @Override
+    public synchronized void onChunkLoad(Chunk chunk) {
+        World world = chunk.getWorld();
+        Shard shard = getOrReadShard(regionOf(world.getName(), chunk.getX(), chunk.getZ()));
+        long chunkKey = chunkKey(chunk.getX(), chunk.getZ());
+        if (!shard.loadedChunks.add(chunkKey)) {
+            return;
+        }
+
+        Map<String, GateData> chunkGates = shard.gatesByChunk.get(chunkKey);
+        if (chunkGates == null) {
+            return;
+        }
+
+        for (Iterator<Map.Entry<String, GateData>> iterator = chunkGates.entrySet().iterator(); iterator.hasNext(); ) {
+            Map.Entry<String, GateData> entry = iterator.next();
+            int[] coords = parseBlockKey(entry.getKey());
+            if (coords == null) {
+                iterator.remove();
+                shard.dirty = true;
+                continue;
+            }
+
+            Block block = world.getBlockAt(coords[0], coords[1], coords[2]);
+            if (block.getType() == Material.GLASS) {
+                plugin.getGateIndex().put(block, entry.getValue());
+            } else {
+                iterator.remove();
+                shard.dirty = true;
+            }
+        }
+    }
+
+    /// Unregisters the chunk's gates. Releases the shard once none of its chunks are loaded.
+    ///
+    /// @param chunk the chunk that is being unloaded
+    @Override
+    public synchronized void onChunkUnload(Chunk chunk) {
+        World world = chunk.getWorld();
+        RegionKey regionKey = regionOf(world.getName(), chunk.getX(), chunk.getZ());
+        Shard shard = shards.get(regionKey);
+        if (shard == null) {
+            return;
+        }
+
+        long chunkKey = chunkKey(chunk.getX(), chunk.getZ());
+        shard.loadedChunks.remove(chunkKey);
+
+        Map<String, GateData> chunkGates = shard.gatesByChunk.get(chunkKey);
+        if (chunkGates != null) {
+            for (String blockKey : chunkGates.keySet()) {
+                int[] coords = parseBlockKey(blockKey);
+                if (coords != null) {
+                    plugin.getGateIndex().remove(world, coords[0], coords[1], coords[2]);
+                }
+            }
+        }
+
+        if (shard.loadedChunks.isEmpty()) {
+            if (shard.dirty) {
+                writeShard(regionKey, shard);
+            }
+            shards.remove(regionKey);
+        }
+    }
+    // endregion
+
+    // region Changes and writes
+
+    /// Records a gate change in its shard. The shard is written with the next flush.
+    ///
+    /// @param loc location of the changed gate
+    /// @param data current gate data, or `null` if the gate was removed
+    @Override
+    public synchronized void applyChange(Location loc, GateData data) {
+        if (loc.getWorld() == null) {
+            return;
+        }
+
+        int chunkX = loc.getBlockX() >> 4;
+        int chunkZ = loc.getBlockZ() >> 4;
+        Shard shard = getOrReadShard(regionOf(loc.getWorld().getName(), chunkX, chunkZ));
+        String blockKey = blockKey(loc.getBlockX(), loc.getBlockY(), loc.getBlockZ());
+        long chunkKey = chunkKey(chunkX, chunkZ);
+
+        if (data != null) {
+            shard.gatesByChunk.computeIfAbsent(chunkKey, key -> new HashMap<>()).put(blockKey, data);
+        } else {
+            Map<String, GateData> chunkGates = shard.gatesByChunk.get(chunkKey);
+            if (chunkGates != null) {
+                chunkGates.remove(blockKey);
+                if (chunkGates.isEmpty()) {
+                    shard.gatesByChunk.remove(chunkKey);
+                }
+            }
+        }
+        shard.dirty = true;
+    }
+
+    /// Queues a write for every shard that changed since it was last written.
+    @Override
+    public synchronized void writeDirty() {
+        shards.forEach((regionKey, shard) -> {
+            if (shard.dirty) {
+                writeShard(regionKey, shard);
+            }
+        });
+    }
+
+    /// Queues a write for every loaded shard, changed or not.
+    @Override
+    public synchronized void writeAll() {
+        shards.forEach(this::writeShard);
+    }
+
+    /// Copies the shard on the calling thread and writes the copy on the writer.
+    private void writeShard(RegionKey regionKey, Shard shard) {
+        Map<String, GateData> snapshot = new HashMap<>();
+        shard.gatesByChunk.values().forEach(chunkGates ->
+                chunkGates.forEach((blockKey, data) -> snapshot.put(blockKey, data.copy())));
+        shard.dirty = false;
+
+        pendingWrites.put(regionKey, snapshot);
+        writer.execute(() -> {
+            writeShardFile(regionKey, snapshot);
+            pendingWrites.remove(regionKey, snapshot);
+        });
+    }
+
+    /// Writes a shard file via a temporary file. Removes the file if the shard is empty.
+    private void writeShardFile(RegionKey regionKey, Map<String, GateData> snapshot) {
+        Path target = shardFile(regionKey).toPath();
+        try {
+            if (snapshot.isEmpty()) {
+                Files.deleteIfExists(target);
+                return;
+            }
+
+            Files.createDirectories(target.getParent());
+            Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                gson.toJson(snapshot, writer);
+            }
+            GatesConfigManager.moveIntoPlace(temp, target);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to save gate region " + target.getFileName() + ": " + e.getMessage());
+        }
+    }
+    // endregion
+
+    // region Shard reading
+
+    private Shard getOrReadShard(RegionKey regionKey) {
+        Shard shard = shards.get(regionKey);
+        if (shard == null) {
+            shard = readShard(regionKey);
+            shards.put(regionKey, shard);
+        }
+        return shard;
+    }
+
+    /// Reads a shard, preferring a write that is still queued over the file on disk.
+    private Shard readShard(RegionKey regionKey) {
+        Shard shard = new Shard();
+        Map<String, GateData> stored = pendingWrites.get(regionKey);
+        if (stored == null) {
+            stored = readShardFile(shardFile(regionKey));
+        }
+
+        stored.forEach((blockKey, data) -> {
+            int[] coords = parseBlockKey(blockKey);
+            if (coords != null) {
+                shard.gatesByChunk
+                        .computeIfAbsent(chunkKey(coords[0] >> 4, coords[2] >> 4), key -> new HashMap<>())
+                        .put(blockKey, data.copy());
+            }
+        });
+        return shard;
+    }
+
+    /// Reads a shard file. A file that cannot be parsed is moved aside with the `.corrupt` suffix, so the
+    /// next write of its region starts a new file instead of replacing the gates that could not be read.
+    private Map<String, GateData> readShardFile(File file) {
+        if (!file.exists()) {
+            return Collections.emptyMap();
+        }
+
+        try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Map<String, GateData> stored = gson.fromJson(reader,
+                    new com.google.gson.reflect.TypeToken<Map<String, GateData>>() {
+                    }.getType());
+            return stored != null ? stored : Collections.emptyMap();
+        } catch (IOException | RuntimeException e) {
+            plugin.getLogger().severe("Failed to read gate region " + file.getName() + ": " + e.getMessage());
+            quarantineShardFile(file);
+            return Collections.emptyMap();
+        }
+    }
+
+    private void quarantineShardFile(File file) {
+        Path corrupt = file.toPath().resolveSibling(file.getName() + CORRUPT_SUFFIX);
+        try {
+            Files.move(file.toPath(), corrupt, StandardCopyOption.REPLACE_EXISTING);
+            plugin.getLogger().severe(file.getName() + " was moved to " + corrupt.getFileName()
+                    + ", it will not be overwritten");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to move " + file.getName() + " aside: " + e.getMessage());
+        }
+    }
+    // endregion
+
+    // region Migration
+
+    /// Moves the gates from the gates file (and its journal) into region shards.
+    /// Runs once: afterwards the old file is renamed so it is not migrated again.
+    ///
+    /// @param gatesConfigManager manager of the legacy gates file
+    @Override
+    public void migrateFromGatesFile(GatesConfigManager gatesConfigManager) {
+        Map<GateUtils.LocationKey, GateData> legacyGates = gatesConfigManager.readSerializedGates();
+        if (legacyGates.isEmpty()) {
+            return;
+        }
+
+        Map<RegionKey, Map<String, GateData>> byRegion = new HashMap<>();
+        legacyGates.forEach((key, data) -> {
+            RegionKey regionKey = regionOf(key.world(), key.x() >> 4, key.z() >> 4);
+            byRegion.computeIfAbsent(regionKey, k -> new HashMap<>())
+                    .put(blockKey(key.x(), key.y(), key.z()), data);
+        });
+
+        byRegion.forEach(this::writeShardFile);
+        gatesConfigManager.retireGatesFile(MIGRATED_SUFFIX);
+        plugin.getLogger().info("Migrated " + legacyGates.size() + " gates into " + byRegion.size() + " region files");
+    }
+    // endregion
+
+    // region Keys
+
+    private File shardFile(RegionKey regionKey) {
+        return new File(new File(regionsFolder, regionKey.world()), "r." + regionKey.x() + "." + regionKey.z() + ".json");
+    }
+
+    private static RegionKey regionOf(String world, int chunkX, int chunkZ) {
+        return new RegionKey(world, chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+    }
+
+    private static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    private static String blockKey(int x, int y, int z) {
+        return x + "_" + y + "_" + z;
+    }
+
+    /// Parses an `x_y_z` block key.
+    ///
+    /// @return the coordinates, or `null` if the key is malformed
+    private static int[] parseBlockKey(String blockKey) {
+        int first = blockKey.indexOf('_', 1);
+        int second = first > 0 ? blockKey.indexOf('_', first + 2) : -1;
+        if (second < 0) {
+            return null;
+        }
+        try {
+            return new int[]{
+                    Integer.parseInt(blockKey, 0, first, 10),
+                    Integer.parseInt(blockKey, first + 1, second, 10),
+                    Integer.parseInt(blockKey, second + 1, blockKey.length(), 10)
+            };
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+    // endregion
+
+    /// Identifies a region file: a world and a 32x32 chunk area.
+    private record RegionKey(String world, int x, int z) {
+    }
+
+    /// In-memory contents of a region file, grouped by chunk.
+    private static final class Shard {
+        private final Map<Long, Map<String, GateData>> gatesByChunk = new HashMap<>();
+        private final Set<Long> loadedChunks = new HashSet<>();
+        private boolean dirty;
+    }
+}
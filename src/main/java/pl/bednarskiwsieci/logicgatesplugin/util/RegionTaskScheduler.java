@@ -0,0 +1,68 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+import org.bukkit.plugin.Plugin;
+
+/// Runs the tasks of the plugin.
+///
+/// On Paper and Spigot there is one main thread: [GlobalRegionTaskScheduler] runs global and region
+/// tasks through the Bukkit scheduler, and immediate region or entity work right away. On
+/// region-threaded servers (Folia), world data may only be touched by the thread that owns its region,
+/// so [FoliaRegionTaskScheduler] runs global tasks on the global region thread and hands region and
+/// entity work to the thread that owns it. The Bukkit scheduler is not available there at all.
+///
+/// The plugin only schedules through this interface, so tests can substitute a scheduler that runs
+/// regions on threads of their own.
+public interface RegionTaskScheduler {
+
+    /// Creates the scheduler matching the server the plugin runs on.
+    static RegionTaskScheduler create(Plugin plugin) {
+        return FoliaRegionTaskScheduler.isSupported()
+                ? new FoliaRegionTaskScheduler(plugin)
+                : new GlobalRegionTaskScheduler(plugin);
+    }
+
+    /// Runs a task repeatedly on the global thread (the main thread unless regions are threaded).
+    ///
+    /// @param delayTicks ticks before the first run
+    /// @param periodTicks ticks between runs
+    /// @return a handle that cancels the task
+    TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks);
+
+    /// Runs a task once on the global thread after a delay.
+    ///
+    /// @param delayTicks ticks before the run, at least 1
+    /// @return a handle that cancels the task
+    TaskHandle runGlobalLater(Runnable task, long delayTicks);
+
+    /// Runs a task on the global thread on the next tick.
+    void runGlobal(Runnable task);
+
+    /// Runs a task on a thread that does not tick the server.
+    void runAsync(Runnable task);
+
+    /// Runs a task on the thread that owns the chunk, right away if that is the calling thread.
+    void runInRegion(World world, int chunkX, int chunkZ, Runnable task);
+
+    /// Runs a task on the thread that owns the chunk after a delay, never right away.
+    ///
+    /// @param delayTicks ticks before the run, at least 1
+    void runInRegionLater(World world, int chunkX, int chunkZ, Runnable task, long delayTicks);
+
+    /// @return `true` if the calling thread may touch the blocks of the chunk
+    boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ);
+
+    /// Runs a task on the thread that owns the entity, right away if that is the calling thread.
+    /// The task is dropped if the entity is removed first.
+    void runForEntity(Entity entity, Runnable task);
+
+    /// @return `true` if regions are ticked by separate threads, so region work may run concurrently
+    boolean isRegionThreaded();
+
+    /// A scheduled repeating task.
+    @FunctionalInterface
+    interface TaskHandle {
+        void cancel();
+    }
+}
@@ -0,0 +1,258 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+/// [GateStore] backed by an embedded SQLite database file, indexed by world and chunk.
+///
+/// Batches are written in a single transaction. Reads use a separate connection, which the
+/// database's write-ahead log lets run alongside a write, so loading a chunk on the main thread never
+/// waits for a batch that is being committed in the background.
+public class SqliteGateStore implements GateStore {
+
+    private static final String SELECT_COLUMNS = "SELECT x, y, z, type, facing, flags, interval FROM gates";
+    private static final int FLAG_STATE = 1;
+    // Input count - 2 in bits 1-3; older rows only set bit 1, for three inputs
+    private static final int FLAG_INPUTS_SHIFT = 1;
+    private static final int FLAG_INPUTS_MASK = 7;
+
+    private final Logger logger;
+    private final Connection readConnection;
+    private final Connection writeConnection;
+
+    private SqliteGateStore(Logger logger, Connection readConnection, Connection writeConnection) {
+        this.logger = logger;
+        this.readConnection = readConnection;
+        this.writeConnection = writeConnection;
+    }
+
+    /// Opens the database, creating the file and schema if needed.
+    ///
+    /// @param file the database file
+    /// @param logger logger used to report failed queries
+    /// @return the opened store
+    public static SqliteGateStore open(File file, Logger logger) throws SQLException {
+        try {
+            // Registers the driver bundled with the server
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite driver is not available", e);
+        }
+
+        String url = "jdbc:sqlite:" + file.getAbsolutePath();
+        Connection writeConnection = DriverManager.getConnection(url);
+        try (Statement statement = writeConnection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("CREATE TABLE IF NOT EXISTS gates ("
+                    + "world TEXT NOT NULL, x INTEGER NOT NULL, y INTEGER NOT NULL, z INTEGER NOT NULL, "
+                    + "chunk_x INTEGER NOT NULL, chunk_z INTEGER NOT NULL, "
+                    + "type TEXT NOT NULL, facing TEXT NOT NULL, flags INTEGER NOT NULL, interval INTEGER NOT NULL, "
+                    + "PRIMARY KEY (world, x, y, z)) WITHOUT ROWID");
+            statement.execute("CREATE INDEX IF NOT EXISTS gates_by_chunk ON gates (world, chunk_x, chunk_z)");
+        } catch (SQLException e) {
+            writeConnection.close();
+            throw e;
+        }
+        return new SqliteGateStore(logger, DriverManager.getConnection(url), writeConnection);
+    }
+
+    // region Queries
+
+    @Override
+    public Map<GateUtils.LocationKey, GateData> loadChunk(String world, int chunkX, int chunkZ) {
+        synchronized (readConnection) {
+            try (PreparedStatement statement = readConnection.prepareStatement(
+                    SELECT_COLUMNS + " WHERE world = ? AND chunk_x = ? AND chunk_z = ?")) {
+                statement.setString(1, world);
+                statement.setInt(2, chunkX);
+                statement.setInt(3, chunkZ);
+                return readGates(world, statement);
+            } catch (SQLException e) {
+                logger.severe("Failed to load gates of chunk " + chunkX + ", " + chunkZ + ": " + e.getMessage());
+                return new HashMap<>();
+            }
+        }
+    }
+
+    @Override
+    public Map<GateUtils.LocationKey, GateData> loadRegion(String world, int minX, int minY, int minZ,
+                                                           int maxX, int maxY, int maxZ) {
+        synchronized (readConnection) {
+            // The chunk bounds let the query use the chunk index
+            try (PreparedStatement statement = readConnection.prepareStatement(SELECT_COLUMNS
+                    + " WHERE world = ? AND chunk_x BETWEEN ? AND ? AND chunk_z BETWEEN ? AND ?"
+                    + " AND x BETWEEN ? AND ? AND y BETWEEN ? AND ? AND z BETWEEN ? AND ?")) {
+                statement.setString(1, world);
+                statement.setInt(2, minX >> 4);
+                statement.setInt(3, maxX >> 4);
+                statement.setInt(4, minZ >> 4);
+                statement.setInt(5, maxZ >> 4);
+                statement.setInt(6, minX);
+                statement.setInt(7, maxX);
+                statement.setInt(8, minY);
+                statement.setInt(9, maxY);
+                statement.setInt(10, minZ);
+                statement.setInt(11, maxZ);
+                return readGates(world, statement);
+            } catch (SQLException e) {
+                logger.severe("Failed to query gates: " + e.getMessage());
+                return new HashMap<>();
+            }
+        }
+    }
+
+    @Override
+    public void forEachInWorld(String world, BiConsumer<GateUtils.LocationKey, GateData> action) {
+        Map<GateUtils.LocationKey, GateData> gates;
+        synchronized (readConnection) {
+            try (PreparedStatement statement = readConnection.prepareStatement(SELECT_COLUMNS + " WHERE world = ?")) {
+                statement.setString(1, world);
+                gates = readGates(world, statement);
+            } catch (SQLException e) {
+                logger.severe("Failed to read gates of world " + world + ": " + e.getMessage());
+                return;
+            }
+        }
+        gates.forEach(action);
+    }
+
+    @Override
+    public Set<String> getWorlds() {
+        Set<String> worlds = new HashSet<>();
+        synchronized (readConnection) {
+            try (Statement statement = readConnection.createStatement();
+                 ResultSet result = statement.executeQuery("SELECT DISTINCT world FROM gates")) {
+                while (result.next()) {
+                    worlds.add(result.getString(1));
+                }
+            } catch (SQLException e) {
+                logger.severe("Failed to list worlds with gates: " + e.getMessage());
+            }
+        }
+        return worlds;
+    }
+
+    private Map<GateUtils.LocationKey, GateData> readGates(String world, PreparedStatement statement) throws SQLException {
+        Map<GateUtils.LocationKey, GateData> gates = new HashMap<>();
+        try (ResultSet result = statement.executeQuery()) {
+            while (result.next()) {
+                GateData data;
+                try {
+                    data = GateData.create(BlockFace.valueOf(result.getString(5)), GateType.valueOf(result.getString(4)));
+                } catch (IllegalArgumentException e) {
+                    logger.warning("Skipping stored gate with unknown type or facing: " + e.getMessage());
+                    continue;
+                }
+
+                int flags = result.getInt(6);
+                data.setState((flags & FLAG_STATE) != 0);
+                data.setInputCount(2 + ((flags >> FLAG_INPUTS_SHIFT) & FLAG_INPUTS_MASK));
+                data.setInterval(result.getLong(7));
+                gates.put(new GateUtils.LocationKey(world, result.getInt(1), result.getInt(2), result.getInt(3)), data);
+            }
+        }
+        return gates;
+    }
+    // endregion
+
+    // region Batches
+
+    @Override
+    public boolean upsertBatch(Map<GateUtils.LocationKey, GateData> gates) {
+        if (gates.isEmpty()) return true;
+
+        synchronized (writeConnection) {
+            try {
+                writeConnection.setAutoCommit(false);
+                try (PreparedStatement statement = writeConnection.prepareStatement(
+                        "INSERT OR REPLACE INTO gates (world, x, y, z, chunk_x, chunk_z, type, facing, flags, interval)"
+                                + " VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+                    for (Map.Entry<GateUtils.LocationKey, GateData> entry : gates.entrySet()) {
+                        GateUtils.LocationKey key = entry.getKey();
+                        GateData data = entry.getValue();
+                        int flags = 0;
+                        if (data.getState()) flags |= FLAG_STATE;
+                        flags |= (data.getConfiguredInputCount() - 2) << FLAG_INPUTS_SHIFT;
+
+                        statement.setString(1, key.world());
+                        statement.setInt(2, key.x());
+                        statement.setInt(3, key.y());
+                        statement.setInt(4, key.z());
+                        statement.setInt(5, key.x() >> 4);
+                        statement.setInt(6, key.z() >> 4);
+                        statement.setString(7, data.getType().name());
+                        statement.setString(8, data.getFacing().name());
+                        statement.setInt(9, flags);
+                        statement.setLong(10, data.getInterval());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                writeConnection.commit();
+                return true;
+            } catch (SQLException e) {
+                rollback();
+                logger.severe("Failed to store " + gates.size() + " gates: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public boolean deleteBatch(Collection<GateUtils.LocationKey> keys) {
+        if (keys.isEmpty()) return true;
+
+        synchronized (writeConnection) {
+            try {
+                writeConnection.setAutoCommit(false);
+                try (PreparedStatement statement = writeConnection.prepareStatement(
+                        "DELETE FROM gates WHERE world = ? AND x = ? AND y = ? AND z = ?")) {
+                    for (GateUtils.LocationKey key : keys) {
+                        statement.setString(1, key.world());
+                        statement.setInt(2, key.x());
+                        statement.setInt(3, key.y());
+                        statement.setInt(4, key.z());
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+                writeConnection.commit();
+                return true;
+            } catch (SQLException e) {
+                rollback();
+                logger.severe("Failed to remove " + keys.size() + " gates: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            writeConnection.rollback();
+        } catch (SQLException e) {
+            logger.severe("Failed to roll back gate changes: " + e.getMessage());
+        }
+    }
+    // endregion
+
+    @Override
+    public void close() {
+        for (Connection connection : List.of(readConnection, writeConnection)) {
+            synchronized (connection) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    logger.severe("Failed to close the gate database: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.World;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+
+import java.util.Arrays;
+
+/// Hierarchical timing wheel that wakes timer gates on the tick of their next toggle.
+///
+/// Level 0 has one slot per tick for the next 64 ticks; every further level covers 64 slots of the
+/// level below. Entries further away than level 0 are moved down a level each time the wheel reaches
+/// their slot, so advancing one tick only touches the entries that are due (plus an occasional
+/// cascade), however many timers are armed. Deadlines beyond the last level are parked in its
+/// furthest slot and re-armed when reached.
+///
+/// A gate has at most one live entry: re-arming it leaves the old entry behind, which is discarded
+/// when reached because its deadline no longer matches [GateData#getArmedTick()]. Entries of gates that
+/// were unregistered are discarded the same way.
+///
+/// A timer fires at most once per [#advanceTo(long, TimerVisitor)] call: a deadline that is not after
+/// the tick being advanced to, such as a missed toggle replayed by [GateClock.LatePolicy#CATCH_UP],
+/// fires on the first tick after it, in the next call. The timer is still told the deadline it was
+/// armed for, so it keeps its phase.
+///
+/// Not thread-safe: must only be used by one thread at a time, the main thread unless regions are threaded.
+public class TimerWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    private static final long MAX_DELAY = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final GateIndex gateIndex;
+    private final Entry[][] slots = new Entry[LEVELS][SLOTS];
+    // Entries of discarded or fired timers, reused to avoid allocating on every toggle
+    private Entry free;
+    // Last tick the wheel advanced to
+    private long now;
+    // Tick the wheel is advancing to, or `now` between calls
+    private long horizon;
+    private int size;
+
+    /// @param gateIndex Registry used to discard entries of unregistered gates
+    public TimerWheel(GateIndex gateIndex) {
+        this(gateIndex, 0L);
+    }
+
+    /// @param gateIndex Registry used to discard entries of unregistered gates
+    /// @param tick Tick the wheel starts at, so a wheel created late does not advance from tick 0
+    public TimerWheel(GateIndex gateIndex, long tick) {
+        this.gateIndex = gateIndex;
+        this.now = tick;
+        this.horizon = tick;
+    }
+
+    /// Arms a timer to fire one interval from now, replacing its previous deadline.
+    public void arm(World world, int x, int y, int z, GateData data) {
+        schedule(world, x, y, z, data, data.getIntervalTicks());
+    }
+
+    /// Arms a timer after a delay, replacing its previous deadline.
+    ///
+    /// @param delayTicks number of ticks until the timer fires, at least 1
+    public void schedule(World world, int x, int y, int z, GateData data, long delayTicks) {
+        scheduleAt(world, x, y, z, data, now + delayTicks);
+    }
+
+    /// Arms a timer for a tick, replacing its previous deadline. A tick that is not after the one the
+    /// wheel is advancing to fires on the first tick after it.
+    ///
+    /// @param tick the deadline, passed back to the visitor when the timer fires
+    public void scheduleAt(World world, int x, int y, int z, GateData data, long tick) {
+        long deadline = Math.max(1L, tick);
+        data.setArmedTick(deadline);
+        insert(obtain(world, BlockKey.pack(x, y, z), data, deadline, Math.max(horizon + 1, deadline)));
+        size++;
+    }
+
+    /// Advances the wheel tick by tick up to the given tick and fires the timers due on the way.
+    /// Timers armed while firing are not due before the next call.
+    ///
+    /// @param tick the tick to advance to
+    /// @param visitor receives each due timer that is still registered and was not re-armed
+    public void advanceTo(long tick, TimerVisitor visitor) {
+        horizon = Math.max(now, tick);
+        try {
+            while (now < tick) {
+                advance(visitor);
+            }
+        } finally {
+            horizon = now;
+        }
+    }
+
+    /// @return the last tick the wheel advanced to
+    public long getTick() {
+        return now;
+    }
+
+    private void advance(TimerVisitor visitor) {
+        now++;
+        cascade();
+
+        int slot = (int) (now & SLOT_MASK);
+        Entry entry = slots[0][slot];
+        slots[0][slot] = null;
+        while (entry != null) {
+            Entry next = entry.next;
+            size--;
+            if (entry.fireTick > now) {
+                // Parked beyond the last level
+                size++;
+                insert(entry);
+            } else {
+                World world = entry.world;
+                long key = entry.key;
+                GateData data = entry.data;
+                long deadline = entry.deadline;
+                boolean live = data.getArmedTick() == entry.deadline
+                        && gateIndex.get(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key)) == data;
+                release(entry);
+                if (live) {
+                    data.setArmedTick(0L);
+                    visitor.fire(world, BlockKey.x(key), BlockKey.y(key), BlockKey.z(key), data, deadline);
+                }
+            }
+            entry = next;
+        }
+    }
+
+    /// Discards all entries.
+    public void clear() {
+        for (Entry[] level : slots) {
+            Arrays.fill(level, null);
+        }
+        size = 0;
+    }
+
+    /// @return the number of entries in the wheel, including stale ones not yet discarded
+    public int size() {
+        return size;
+    }
+
+    /// Moves the entries of the higher-level slots that start at the current tick down the wheel,
+    /// highest level first so that entries can fall through several levels at once.
+    private void cascade() {
+        int level = 0;
+        while (level < LEVELS - 1 && (now & ((1L << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        for (; level > 0; level--) {
+            int slot = (int) ((now >>> (SLOT_BITS * level)) & SLOT_MASK);
+            Entry entry = slots[level][slot];
+            slots[level][slot] = null;
+            while (entry != null) {
+                Entry next = entry.next;
+                insert(entry);
+                entry = next;
+            }
+        }
+    }
+
+    private void insert(Entry entry) {
+        long delay = Math.min(entry.fireTick - now, MAX_DELAY);
+        long target = now + delay;
+        int level = 0;
+        while (level < LEVELS - 1 && delay >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) ((target >>> (SLOT_BITS * level)) & SLOT_MASK);
+        entry.next = slots[level][slot];
+        slots[level][slot] = entry;
+    }
+
+    private Entry obtain(World world, long key, GateData data, long deadline, long fireTick) {
+        Entry entry = free;
+        if (entry != null) {
+            free = entry.next;
+        } else {
+            entry = new Entry();
+        }
+        entry.world = world;
+        entry.key = key;
+        entry.data = data;
+        entry.deadline = deadline;
+        entry.fireTick = fireTick;
+        return entry;
+    }
+
+    private void release(Entry entry) {
+        entry.world = null;
+        entry.data = null;
+        entry.next = free;
+        free = entry;
+    }
+
+    @FunctionalInterface
+    public interface TimerVisitor {
+        /// @param deadline the tick the timer was due on
+        void fire(World world, int x, int y, int z, GateData data, long deadline);
+    }
+
+    private static final class Entry {
+        private World world;
+        private long key;
+        private GateData data;
+        private long deadline;
+        // Tick the entry is placed for: its deadline, or the first tick after the one it was armed in
+        private long fireTick;
+        private Entry next;
+    }
+}
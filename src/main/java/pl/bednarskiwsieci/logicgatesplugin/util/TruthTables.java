@@ -0,0 +1,90 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+/// Truth tables of the combinational gate types for 1 to [#MAX_INPUTS] inputs.
+///
+/// Inputs are passed as a bit mask, input 1 in bit 0. Each table holds one output bit per input
+/// combination, so a gate is evaluated as `(table >>> inputs) & 1` without branching on its type or
+/// input count. Tables of up to 6 inputs fit in one long; wider ones span up to four.
+///
+/// For more than two inputs the types generalize the way the three-input gates always have:
+/// XOR is odd parity, XNOR means all inputs are equal, and IMPLICATION means the last input follows
+/// from all the others. NOT only looks at its first input.
+public final class TruthTables {
+
+    public static final int MAX_INPUTS = 8;
+
+    private static final GateType[] TYPES = GateType.values();
+    private static final int WORDS_PER_TABLE = (1 << MAX_INPUTS) / Long.SIZE;
+    private static final int TABLES_PER_TYPE = MAX_INPUTS + 1;
+    // Indexed by ((type ordinal * TABLES_PER_TYPE) + input count) * WORDS_PER_TABLE + word
+    private static final long[] TABLES = new long[TYPES.length * TABLES_PER_TYPE * WORDS_PER_TABLE];
+    private static final boolean[] COMBINATIONAL = new boolean[TYPES.length];
+
+    static {
+        for (GateType type : TYPES) {
+            for (int count = 1; count <= MAX_INPUTS; count++) {
+                int base = (type.ordinal() * TABLES_PER_TYPE + count) * WORDS_PER_TABLE;
+                for (int inputs = 0; inputs < 1 << count; inputs++) {
+                    Boolean output = define(type, inputs, count);
+                    if (output == null) {
+                        break;
+                    }
+                    COMBINATIONAL[type.ordinal()] = true;
+                    if (output) {
+                        TABLES[base + (inputs >>> 6)] |= 1L << inputs;
+                    }
+                }
+            }
+        }
+    }
+
+    private TruthTables() {
+    }
+
+    /// @return `true` if the type's output depends only on its inputs, i.e. it has truth tables
+    public static boolean isCombinational(GateType type) {
+        return COMBINATIONAL[type.ordinal()];
+    }
+
+    /// Evaluates a combinational gate.
+    ///
+    /// @param type a combinational gate type
+    /// @param inputs the input states, input 1 in bit 0; bits at or above `count` are ignored
+    /// @param count the number of inputs, 1 to [#MAX_INPUTS]
+    /// @return the output state
+    public static boolean evaluate(GateType type, int inputs, int count) {
+        int index = inputs & ((1 << count) - 1);
+        long word = TABLES[(type.ordinal() * TABLES_PER_TYPE + count) * WORDS_PER_TABLE + (index >>> 6)];
+        return ((word >>> index) & 1L) != 0;
+    }
+
+    /// Returns the table of a gate for inputs 0 to 63 (all of it for up to 6 inputs).
+    ///
+    /// @param type a combinational gate type
+    /// @param count the number of inputs, 1 to [#MAX_INPUTS]
+    /// @return the output bits, indexed by the input mask
+    public static long table(GateType type, int count) {
+        return TABLES[(type.ordinal() * TABLES_PER_TYPE + count) * WORDS_PER_TABLE];
+    }
+
+    /// Defines the output of a combinational type for one input combination.
+    ///
+    /// @return the output, or `null` if the type is not combinational
+    private static Boolean define(GateType type, int inputs, int count) {
+        int all = (1 << count) - 1;
+        int last = 1 << (count - 1);
+        return switch (type) {
+            case AND -> inputs == all;
+            case OR -> inputs != 0;
+            case NAND -> inputs != all;
+            case NOR -> inputs == 0;
+            case XOR -> (Integer.bitCount(inputs) & 1) == 1;
+            case XNOR -> inputs == 0 || inputs == all;
+            case IMPLICATION -> (inputs & ~last) != (all & ~last) || (inputs & last) != 0;
+            case NOT -> (inputs & 1) == 0;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,59 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/// Variable-length integer encoding (LEB128) used by the binary gate formats.
+/// Small values take a single byte; signed values are zigzag-encoded first.
+public final class VarInts {
+
+    private VarInts() {
+        // Private constructor to prevent instantiation of utility class
+    }
+
+    /// Writes an unsigned variable-length long.
+    ///
+    /// @param out the output to write to
+    /// @param value the value, treated as unsigned
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /// Reads an unsigned variable-length long.
+    ///
+    /// @param in the input to read from
+    /// @return the decoded value
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length number");
+    }
+
+    /// Writes a signed int using zigzag encoding, so small negative values stay short.
+    ///
+    /// @param out the output to write to
+    /// @param value the signed value
+    public static void writeSignedVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, ((long) (value << 1) ^ (value >> 31)) & 0xFFFFFFFFL);
+    }
+
+    /// Reads a zigzag-encoded signed int.
+    ///
+    /// @param in the input to read from
+    /// @return the decoded value
+    public static int readSignedVarInt(DataInput in) throws IOException {
+        int raw = (int) readVarLong(in);
+        return (raw >>> 1) ^ -(raw & 1);
+    }
+}
@@ -0,0 +1,38 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+/// The combinational part of `GateUtils.calculateOutput` as it was before the truth tables,
+/// kept as the reference the table and batch evaluation are checked against.
+final class BaselineGates {
+
+    private BaselineGates() {
+    }
+
+    static boolean calculateOutput(GateType type, boolean input1, boolean input2, boolean input3,
+                                   boolean isThreeInput) {
+        return switch (type) {
+            case XNOR -> isThreeInput ? (input1 == input2 && input2 == input3) : (input1 == input2);
+            case IMPLICATION -> isThreeInput ? (!input1 || !input2 || input3) : (!input1 || input2);
+            case XOR -> {
+                if (isThreeInput) {
+                    int count = (input1 ? 1 : 0) + (input2 ? 1 : 0) + (input3 ? 1 : 0);
+                    yield (count & 1) == 1;
+                } else {
+                    yield input1 != input2;
+                }
+            }
+            case AND -> isThreeInput ? (input1 && input2 && input3) : (input1 && input2);
+            case OR -> isThreeInput ? (input1 || input2 || input3) : (input1 || input2);
+            case NOT -> !input1;
+            case NAND -> isThreeInput ? !(input1 && input2 && input3) : !(input1 && input2);
+            case NOR -> isThreeInput ? !(input1 || input2 || input3) : !(input1 || input2);
+            default -> throw new IllegalArgumentException("Not a combinational gate type: " + type);
+        };
+    }
+
+    /// @param inputs input 1 in bit 0
+    static boolean calculateOutput(GateType type, int inputs, boolean isThreeInput) {
+        return calculateOutput(type, (inputs & 1) != 0, (inputs & 2) != 0, (inputs & 4) != 0, isThreeInput);
+    }
+}
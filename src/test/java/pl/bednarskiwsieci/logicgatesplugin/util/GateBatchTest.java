@@ -0,0 +1,80 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class GateBatchTest {
+
+    private static final GateType[] COMBINATIONAL = {
+            GateType.XOR, GateType.AND, GateType.OR, GateType.NOT,
+            GateType.NAND, GateType.NOR, GateType.XNOR, GateType.IMPLICATION
+    };
+
+    @Test
+    void randomBatchesMatchTheBaseline() {
+        Random random = new Random(42);
+        GateBatch batch = new GateBatch();
+        // Batches up to several words per group, reusing the same batch
+        for (int round = 0; round < 200; round++) {
+            int size = random.nextInt(600);
+            GateData[] gates = new GateData[size];
+            int[] inputs = new int[size];
+            for (int i = 0; i < size; i++) {
+                gates[i] = GateData.create(BlockFace.NORTH, COMBINATIONAL[random.nextInt(COMBINATIONAL.length)]);
+                gates[i].setThreeInput(random.nextBoolean());
+                inputs[i] = random.nextInt(8);
+                batch.add(null, gates[i], inputs[i], (i & 1) == 0);
+            }
+
+            batch.evaluate();
+
+            assertEquals(size, batch.size());
+            for (int i = 0; i < size; i++) {
+                GateData data = gates[i];
+                String gate = "round " + round + " gate " + i + " " + data.getType()
+                        + (data.isThreeInput() ? " with three inputs " : " ") + Integer.toBinaryString(inputs[i]);
+                assertEquals(BaselineGates.calculateOutput(data.getType(), inputs[i], data.isThreeInput()),
+                        batch.output(i), gate);
+                assertSame(data, batch.data(i));
+                assertEquals(inputs[i], batch.inputs(i));
+                assertEquals((i & 1) == 0, batch.forced(i));
+            }
+            batch.clear();
+        }
+    }
+
+    @Test
+    void bitSlicesMatchTheTruthTables() {
+        Random random = new Random(7);
+        for (GateType type : COMBINATIONAL) {
+            for (int count = 1; count <= TruthTables.MAX_INPUTS; count++) {
+                int words = 3;
+                int[] inputs = new int[words * 64];
+                long[] slices = new long[count * words];
+                for (int j = 0; j < inputs.length; j++) {
+                    inputs[j] = random.nextInt(1 << count);
+                    for (int i = 0; i < count; i++) {
+                        if ((inputs[j] & (1 << i)) != 0) {
+                            slices[i * words + (j >>> 6)] |= 1L << j;
+                        }
+                    }
+                }
+                long[] out = new long[words];
+
+                GateBatch.evaluate(type, count, slices, words, out);
+
+                for (int j = 0; j < inputs.length; j++) {
+                    assertEquals(TruthTables.evaluate(type, inputs[j], count), ((out[j >>> 6] >>> j) & 1L) != 0,
+                            type + " " + count + " " + Integer.toBinaryString(inputs[j]));
+                }
+            }
+        }
+    }
+}
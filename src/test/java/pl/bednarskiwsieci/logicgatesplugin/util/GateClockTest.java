@@ -0,0 +1,44 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GateClockTest {
+
+    @Test
+    void skippingDropsEveryMissedToggle() {
+        GateClock clock = new GateClock();
+        clock.advance(100);
+
+        assertEquals(105, clock.nextDeadline(10, 5));
+        assertEquals(101, clock.nextDeadline(100, 1));
+    }
+
+    @Test
+    void catchingUpReplaysAtMostTheLimitAndSkipsTheRest() {
+        GateClock clock = new GateClock();
+        clock.setLatePolicy(GateClock.LatePolicy.CATCH_UP);
+        clock.setMaxCatchUp(3);
+        clock.advance(100);
+
+        // 18 toggles are due by tick 100; the last 3 (90, 95 and 100) are replayed, in phase
+        assertEquals(90, clock.nextDeadline(10, 5));
+        clock.advance(1);
+        assertEquals(95, clock.nextDeadline(90, 5));
+        clock.advance(1);
+        assertEquals(100, clock.nextDeadline(95, 5));
+        clock.advance(1);
+        assertEquals(105, clock.nextDeadline(100, 5));
+    }
+
+    @Test
+    void catchingUpWithinTheLimitReplaysEveryToggle() {
+        GateClock clock = new GateClock();
+        clock.setLatePolicy(GateClock.LatePolicy.CATCH_UP);
+        clock.setMaxCatchUp(8);
+        clock.advance(20);
+
+        assertEquals(15, clock.nextDeadline(10, 5));
+    }
+}
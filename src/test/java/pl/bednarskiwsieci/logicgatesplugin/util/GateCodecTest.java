@@ -0,0 +1,78 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GateCodecTest {
+
+    @Test
+    void inputCountsSurviveARoundTrip() throws IOException {
+        for (int count = 2; count <= GateData.MAX_INPUTS; count++) {
+            GateData data = GateData.create(BlockFace.EAST, GateType.AND);
+            data.setInputCount(count);
+            data.setState(true);
+
+            GateCodec.DecodedGate decoded = roundTrip(data);
+
+            assertEquals(count, decoded.data().getConfiguredInputCount());
+            assertEquals(count, decoded.data().getInputCount());
+            assertEquals(BlockFace.EAST, decoded.data().getFacing());
+            assertTrue(decoded.data().getState());
+        }
+    }
+
+    @Test
+    void recordsWithTheOldThreeInputBitReadAsThreeInputs() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(0);
+        VarInts.writeSignedVarInt(out, 64);
+        out.writeByte(GateType.OR.ordinal());
+        out.writeByte(1 << 3);
+
+        GateData data = GateCodec.readGate(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 0, 0)
+                .data();
+
+        assertTrue(data.isThreeInput());
+        assertEquals(3, data.getInputCount());
+    }
+
+    @Test
+    void inputCountDoesNotDisturbTheOtherFields() {
+        GateData data = GateData.create(BlockFace.WEST, GateType.XOR);
+        data.setInputCount(GateData.MAX_INPUTS);
+        data.setSuspended(true);
+        data.setLastUpdateTick((1L << 46) - 1);
+
+        assertEquals(GateData.MAX_INPUTS, data.getInputCount());
+        assertEquals(GateType.XOR, data.getType());
+        assertEquals(BlockFace.WEST, data.getFacing());
+        assertTrue(data.isSuspended());
+        assertEquals((1L << 46) - 1, data.getLastUpdateTick());
+        assertFalse(data.copy().isSuspended());
+        assertEquals(GateData.MAX_INPUTS, data.copy().getInputCount());
+
+        data.setInputCount(42);
+        assertEquals(GateData.MAX_INPUTS, data.getInputCount());
+        data.setInputCount(0);
+        assertEquals(2, data.getInputCount());
+    }
+
+    private static GateCodec.DecodedGate roundTrip(GateData data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        GateCodec.writeGate(new DataOutputStream(bytes), 3, 64, 5, data);
+        return GateCodec.readGate(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())), 0, 0);
+    }
+}
@@ -0,0 +1,108 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class GateIndexTest {
+
+    private final World overworld = world("world");
+    private final World nether = world("world_nether");
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(42);
+        GateIndex index = new GateIndex();
+        Map<Position, GateData> expected = new HashMap<>();
+        for (int op = 0; op < 100_000; op++) {
+            Position position = new Position(random.nextBoolean() ? overworld : nether,
+                    random.nextInt(96) - 48, random.nextInt(32) - 16, random.nextInt(96) - 48);
+            World world = position.world();
+            int x = position.x(), y = position.y(), z = position.z();
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    GateData data = GateData.create(BlockFace.EAST, GateType.XOR);
+                    assertSame(expected.put(position, data), index.put(world, x, y, z, data), "put " + position);
+                }
+                case 2 -> assertSame(expected.remove(position), index.remove(world, x, y, z), "remove " + position);
+                default -> assertSame(expected.get(position), index.get(world, x, y, z), "get " + position);
+            }
+            assertEquals(expected.size(), index.size(), "size after op " + op);
+        }
+
+        Map<Position, GateData> visited = new HashMap<>();
+        index.forEach((world, x, y, z, data) -> visited.put(new Position(world, x, y, z), data));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void areaQueriesMatchAFullScan() {
+        Random random = new Random(7);
+        GateIndex index = new GateIndex();
+        Map<Position, GateData> expected = new HashMap<>();
+        for (int i = 0; i < 5_000; i++) {
+            Position position = new Position(random.nextBoolean() ? overworld : nether,
+                    random.nextInt(200) - 100, random.nextInt(64), random.nextInt(200) - 100);
+            GateData data = GateData.create(BlockFace.SOUTH, GateType.NAND);
+            expected.put(position, data);
+            index.put(position.world(), position.x(), position.y(), position.z(), data);
+        }
+
+        for (int chunkX = -7; chunkX <= 6; chunkX++) {
+            int cx = chunkX;
+            Map<Position, GateData> inChunk = new HashMap<>();
+            index.forEachInChunk(overworld, cx, -2, (world, x, y, z, data) -> inChunk.put(new Position(world, x, y, z), data));
+            assertEquals(filter(expected, p -> p.world() == overworld && p.x() >> 4 == cx && p.z() >> 4 == -2), inChunk);
+        }
+
+        for (int query = 0; query < 200; query++) {
+            int minX = random.nextInt(220) - 110, minY = random.nextInt(70) - 3, minZ = random.nextInt(220) - 110;
+            int maxX = minX + random.nextInt(40), maxY = minY + random.nextInt(10), maxZ = minZ + random.nextInt(40);
+            Map<Position, GateData> inBox = new HashMap<>();
+            index.forEachInBox(nether, minX, minY, minZ, maxX, maxY, maxZ,
+                    (world, x, y, z, data) -> inBox.put(new Position(world, x, y, z), data));
+            assertEquals(filter(expected, p -> p.world() == nether
+                    && p.x() >= minX && p.x() <= maxX && p.y() >= minY && p.y() <= maxY
+                    && p.z() >= minZ && p.z() <= maxZ), inBox);
+        }
+    }
+
+    private static Map<Position, GateData> filter(Map<Position, GateData> gates, Predicate<Position> test) {
+        Map<Position, GateData> result = new HashMap<>();
+        gates.forEach((position, data) -> {
+            if (test.test(position)) {
+                result.put(position, data);
+            }
+        });
+        return result;
+    }
+
+    private static World world(String name) {
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes());
+        return (World) Proxy.newProxyInstance(GateIndexTest.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUID" -> uid;
+                    case "getName" -> name;
+                    case "isChunkLoaded" -> true;
+                    case "hashCode" -> uid.hashCode();
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> name;
+                    default -> null;
+                });
+    }
+
+    private record Position(World world, int x, int y, int z) {
+    }
+}
@@ -0,0 +1,224 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.World;
+import org.bukkit.entity.Entity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/// Region-threaded scheduler for tests, without a server.
+///
+/// Chunks are grouped into square regions of `1 << regionShift` chunks, each with a thread of its own,
+/// plus one global thread. Time only moves when the test calls [#tick()]: the global tasks due in the
+/// tick run first, then the due tasks of all regions run concurrently on their threads, the way a
+/// region-threaded server ticks its regions. Tasks handed to a region during its tick run in the same
+/// tick. Exceptions thrown by tasks are rethrown by [#tick()].
+public class LocalRegionTaskScheduler implements RegionTaskScheduler, AutoCloseable {
+
+    private static final int MAX_ROUNDS_PER_TICK = 64;
+
+    private final int regionShift;
+    private final Thread globalThread;
+    private final ExecutorService global;
+    private final ExecutorService async = Executors.newCachedThreadPool();
+    private final Map<RegionKey, Region> regions = new HashMap<>();
+    private final List<Scheduled> globalTasks = new ArrayList<>();
+    private long tick;
+
+    /// @param regionShift log2 of the region size in chunks; 0 gives every chunk its own thread
+    public LocalRegionTaskScheduler(int regionShift) {
+        this.regionShift = regionShift;
+        this.global = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, "global"));
+        this.globalThread = submit(global, Thread::currentThread);
+    }
+
+    /// Runs one server tick: due global tasks, then the due tasks of every region.
+    public void tick() {
+        long now;
+        List<Scheduled> dueGlobal = new ArrayList<>();
+        synchronized (this) {
+            now = ++tick;
+            takeDue(globalTasks, now, dueGlobal);
+        }
+        submit(global, () -> {
+            dueGlobal.forEach(Scheduled::run);
+            return null;
+        });
+
+        for (int round = 0; round < MAX_ROUNDS_PER_TICK; round++) {
+            List<Future<?>> running = new ArrayList<>();
+            synchronized (this) {
+                for (Region region : regions.values()) {
+                    List<Scheduled> due = new ArrayList<>();
+                    takeDue(region.tasks, now, due);
+                    if (!due.isEmpty()) {
+                        running.add(region.executor.submit(() -> due.forEach(Scheduled::run)));
+                    }
+                }
+            }
+            if (running.isEmpty()) {
+                return;
+            }
+            running.forEach(LocalRegionTaskScheduler::await);
+        }
+    }
+
+    /// @return the number of ticks run so far
+    public synchronized long getTick() {
+        return tick;
+    }
+
+    /// @return `true` if the calling thread is the global thread
+    public boolean isGlobalThread() {
+        return Thread.currentThread() == globalThread;
+    }
+
+    @Override
+    public synchronized TaskHandle runGlobalTimer(Runnable task, long delayTicks, long periodTicks) {
+        Scheduled scheduled = new Scheduled(task, tick + Math.max(1L, delayTicks), periodTicks);
+        globalTasks.add(scheduled);
+        return () -> scheduled.cancelled = true;
+    }
+
+    @Override
+    public synchronized TaskHandle runGlobalLater(Runnable task, long delayTicks) {
+        Scheduled scheduled = new Scheduled(task, tick + Math.max(1L, delayTicks), 0L);
+        globalTasks.add(scheduled);
+        return () -> scheduled.cancelled = true;
+    }
+
+    @Override
+    public void runGlobal(Runnable task) {
+        runGlobalLater(task, 1L);
+    }
+
+    @Override
+    public void runAsync(Runnable task) {
+        async.execute(task);
+    }
+
+    @Override
+    public void runInRegion(World world, int chunkX, int chunkZ, Runnable task) {
+        if (isOwnedByCurrentThread(world, chunkX, chunkZ)) {
+            task.run();
+            return;
+        }
+        synchronized (this) {
+            region(world, chunkX, chunkZ).tasks.add(new Scheduled(task, tick, 0L));
+        }
+    }
+
+    @Override
+    public synchronized void runInRegionLater(World world, int chunkX, int chunkZ, Runnable task, long delayTicks) {
+        region(world, chunkX, chunkZ).tasks.add(new Scheduled(task, tick + Math.max(1L, delayTicks), 0L));
+    }
+
+    @Override
+    public void runForEntity(Entity entity, Runnable task) {
+        throw new UnsupportedOperationException("No entities in tests");
+    }
+
+    @Override
+    public synchronized boolean isOwnedByCurrentThread(World world, int chunkX, int chunkZ) {
+        return region(world, chunkX, chunkZ).thread == Thread.currentThread();
+    }
+
+    @Override
+    public boolean isRegionThreaded() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        global.shutdownNow();
+        async.shutdownNow();
+        synchronized (this) {
+            regions.values().forEach(region -> region.executor.shutdownNow());
+        }
+    }
+
+    private Region region(World world, int chunkX, int chunkZ) {
+        return regions.computeIfAbsent(new RegionKey(world, chunkX >> regionShift, chunkZ >> regionShift),
+                key -> new Region("region " + key.x() + "," + key.z()));
+    }
+
+    // Moves the tasks due by the tick out of the list; repeating tasks stay and are due again one period later
+    private static void takeDue(List<Scheduled> tasks, long now, List<Scheduled> due) {
+        for (Iterator<Scheduled> iterator = tasks.iterator(); iterator.hasNext(); ) {
+            Scheduled scheduled = iterator.next();
+            if (scheduled.cancelled) {
+                iterator.remove();
+            } else if (scheduled.dueTick <= now) {
+                due.add(scheduled);
+                if (scheduled.periodTicks > 0) {
+                    scheduled.dueTick = now + scheduled.periodTicks;
+                } else {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static <T> T submit(ExecutorService executor, Callable<T> task) {
+        return await(executor.submit(task));
+    }
+
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Task failed", e.getCause());
+        } catch (InterruptedException | TimeoutException e) {
+            throw new IllegalStateException("Task did not finish", e);
+        }
+    }
+
+    private record RegionKey(World world, int x, int z) {
+    }
+
+    private static final class Region {
+        private final ExecutorService executor;
+        private final Thread thread;
+        private final List<Scheduled> tasks = new ArrayList<>();
+
+        private Region(String name) {
+            this.executor = Executors.newSingleThreadExecutor(runnable -> daemon(runnable, name));
+            this.thread = submit(executor, Thread::currentThread);
+        }
+    }
+
+    private static final class Scheduled {
+        private final Runnable task;
+        private final long periodTicks;
+        private long dueTick;
+        private volatile boolean cancelled;
+
+        private Scheduled(Runnable task, long dueTick, long periodTicks) {
+            this.task = task;
+            this.dueTick = dueTick;
+            this.periodTicks = periodTicks;
+        }
+
+        private void run() {
+            if (!cancelled) {
+                task.run();
+            }
+        }
+    }
+}
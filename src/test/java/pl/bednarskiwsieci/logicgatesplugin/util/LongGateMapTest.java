@@ -0,0 +1,61 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class LongGateMapTest {
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        Random random = new Random(42);
+        LongGateMap map = new LongGateMap();
+        Map<Long, GateData> expected = new HashMap<>();
+        // A small coordinate range, so puts replace and removes hit, across several resizes
+        for (int op = 0; op < 200_000; op++) {
+            long key = BlockKey.pack(random.nextInt(64) - 32, random.nextInt(384) - 64, random.nextInt(64) - 32);
+            switch (random.nextInt(4)) {
+                case 0, 1 -> {
+                    GateData data = GateData.create(BlockFace.NORTH, GateType.AND);
+                    assertSame(expected.put(key, data), map.put(key, data), "put " + key);
+                }
+                case 2 -> assertSame(expected.remove(key), map.remove(key), "remove " + key);
+                default -> assertSame(expected.get(key), map.get(key), "get " + key);
+            }
+            assertEquals(expected.size(), map.size(), "size after op " + op);
+        }
+
+        expected.forEach((key, data) -> assertSame(data, map.get(key), "get " + key));
+        Map<Long, GateData> visited = new HashMap<>();
+        map.forEach((key, data) -> assertSame(null, visited.put(key, data), "visited twice " + key));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    void removingEverythingEmptiesTheMap() {
+        Random random = new Random(7);
+        LongGateMap map = new LongGateMap();
+        long[] keys = new long[10_000];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = BlockKey.pack(random.nextInt(60_000_000) - 30_000_000, random.nextInt(4096) - 2048,
+                    random.nextInt(60_000_000) - 30_000_000);
+            map.put(keys[i], GateData.create(BlockFace.NORTH, GateType.OR));
+        }
+        for (long key : keys) {
+            map.remove(key);
+        }
+
+        assertEquals(0, map.size());
+        for (long key : keys) {
+            assertSame(null, map.get(key));
+        }
+    }
+}
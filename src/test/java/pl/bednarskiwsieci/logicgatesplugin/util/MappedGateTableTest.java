@@ -0,0 +1,100 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MappedGateTableTest {
+
+    @Test
+    void randomOperationsSurviveReopening() throws IOException {
+        Path file = Files.createTempFile("gates", ".gates");
+        try {
+            Random random = new Random(42);
+            Map<Long, Long> expected = new HashMap<>();
+            try (MappedGateTable table = MappedGateTable.open(file, null)) {
+                // A small coordinate range, so puts replace and removes hit, across several resizes
+                for (int op = 0; op < 50_000; op++) {
+                    int x = random.nextInt(64) - 32;
+                    int y = random.nextInt(64);
+                    int z = random.nextInt(64) - 32;
+                    long key = BlockKey.pack(x, y, z);
+                    if (random.nextInt(3) < 2) {
+                        table.put(x, y, z, timer(op + 1));
+                        expected.put(key, op + 1L);
+                    } else {
+                        table.remove(x, y, z);
+                        expected.remove(key);
+                    }
+                    assertEquals(expected.size(), table.size(), "size after op " + op);
+                }
+            }
+
+            assertEquals(expected, reopen(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    void slotsWrittenInAnyOrderAreMovedToTheirPlace() throws IOException {
+        Path file = Files.createTempFile("gates", ".gates");
+        try {
+            // A file with the gates in consecutive slots, as the table wrote them before slots were
+            // placed by position: magic and version, then 32-byte slots of position, flags, type, facing
+            // and interval. The last slot repeats the first position.
+            int gates = 600;
+            ByteBuffer buffer = ByteBuffer.allocate(16 + 1024 * 32);
+            buffer.putInt(0, 0x4C474D54).putInt(4, 1);
+            Map<Long, Long> expected = new HashMap<>();
+            for (int i = 0; i <= gates; i++) {
+                long key = BlockKey.pack(i % gates, 64, -(i % gates));
+                int offset = 16 + i * 32;
+                buffer.putLong(offset, key);
+                buffer.put(offset + 8, (byte) 1);
+                buffer.put(offset + 9, (byte) GateType.TIMER.ordinal());
+                buffer.putLong(offset + 16, i % gates + 1L);
+                expected.put(key, i % gates + 1L);
+            }
+            Files.write(file, buffer.array());
+
+            assertEquals(expected, reopen(file));
+            try (MappedGateTable table = MappedGateTable.open(file, null)) {
+                assertEquals(gates, table.size());
+                for (int i = 0; i < gates; i += 2) {
+                    table.remove(i, 64, -i);
+                    expected.remove(BlockKey.pack(i, 64, -i));
+                }
+            }
+            assertEquals(expected, reopen(file));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private static GateData timer(long interval) {
+        GateData data = GateData.create(BlockFace.NORTH, GateType.TIMER);
+        data.setInterval(interval);
+        return data;
+    }
+
+    /// @return the interval of every gate found when the table is opened, by position
+    private static Map<Long, Long> reopen(Path file) throws IOException {
+        Map<Long, Long> found = new HashMap<>();
+        try (MappedGateTable ignored = MappedGateTable.open(file,
+                (x, y, z, data) -> assertEquals(null, found.put(BlockKey.pack(x, y, z), data.getInterval())))) {
+            return found;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ParallelGateEvaluatorTest {
+
+    private static final GateType[] COMBINATIONAL = {
+            GateType.XOR, GateType.AND, GateType.OR, GateType.NOT,
+            GateType.NAND, GateType.NOR, GateType.XNOR, GateType.IMPLICATION
+    };
+
+    private final ParallelGateEvaluator evaluator = new ParallelGateEvaluator();
+
+    @AfterEach
+    void tearDown() {
+        evaluator.shutdown();
+    }
+
+    @Test
+    void parallelResultsAreIdenticalToSerial() {
+        Random random = new Random(42);
+        GateBatch parallel = new GateBatch();
+        GateBatch serial = new GateBatch();
+        evaluator.setThreshold(1);
+        // Reusing the evaluator and batches across waves of different sizes, including fewer words than threads
+        for (int round = 0; round < 200; round++) {
+            if (round % 50 == 0) {
+                evaluator.setThreads(2 + round / 50);
+            }
+            int size = round % 10 == 0 ? 1 + random.nextInt(100) : 1 + random.nextInt(20_000);
+            for (int i = 0; i < size; i++) {
+                GateData data = GateData.create(BlockFace.NORTH, COMBINATIONAL[random.nextInt(COMBINATIONAL.length)]);
+                data.setThreeInput(random.nextBoolean());
+                int inputs = random.nextInt(8);
+                boolean forced = random.nextBoolean();
+                parallel.add(null, data, inputs, forced);
+                serial.add(null, data, inputs, forced);
+            }
+
+            evaluator.evaluate(parallel);
+            serial.evaluate();
+
+            assertEquals(serial.size(), parallel.size());
+            for (int i = 0; i < size; i++) {
+                assertEquals(serial.output(i), parallel.output(i), "round " + round + " gate " + i);
+            }
+            parallel.clear();
+            serial.clear();
+        }
+    }
+
+    @Test
+    void resultsMatchTheBaseline() {
+        Random random = new Random(7);
+        GateBatch batch = new GateBatch();
+        GateData[] gates = new GateData[5_000];
+        for (int i = 0; i < gates.length; i++) {
+            gates[i] = GateData.create(BlockFace.NORTH, COMBINATIONAL[random.nextInt(COMBINATIONAL.length)]);
+            gates[i].setThreeInput(random.nextBoolean());
+            batch.add(null, gates[i], random.nextInt(8), false);
+        }
+        evaluator.setThreads(4);
+        evaluator.setThreshold(1_000);
+
+        evaluator.evaluate(batch);
+
+        for (int i = 0; i < gates.length; i++) {
+            assertEquals(BaselineGates.calculateOutput(gates[i].getType(), batch.inputs(i), gates[i].isThreeInput()),
+                    batch.output(i), "gate " + i);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionGateEngineTest {
+
+    private final Map<Long, Material> types = new ConcurrentHashMap<>();
+    // Whether each block read by the engine was read on the thread owning its chunk
+    private final Map<Long, Boolean> typeReads = new ConcurrentHashMap<>();
+    private final List<Event> updates = new CopyOnWriteArrayList<>();
+    private final List<Event> fired = new CopyOnWriteArrayList<>();
+    private final World world = world();
+
+    private LocalRegionTaskScheduler scheduler;
+    private GateIndex gateIndex;
+    private RegionGateEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = new LocalRegionTaskScheduler(0);
+        gateIndex = new GateIndex();
+        gateIndex.setConcurrent(true);
+        GateClock clock = new GateClock();
+        scheduler.runGlobalTimer(() -> clock.advance(1), 1, 1);
+        engine = new RegionGateEngine(gateIndex, clock, scheduler, this::update, this::fire);
+        gateIndex.setTimerArming(engine::arm);
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.close();
+    }
+
+    @Test
+    void updatesRunOnTheThreadOwningTheirChunk() {
+        addGate(0, 64, 0, Material.GLASS);
+        addGate(5 * 16, 64, 5 * 16, Material.GLASS);
+
+        engine.schedule(world, 0, 64, 0, 0);
+        engine.schedule(world, 5 * 16, 64, 5 * 16, 0);
+        ticks(3);
+
+        assertEquals(2, updates.size());
+        assertTrue(updates.stream().allMatch(Event::owned));
+        assertNotEquals(updates.get(0).thread(), updates.get(1).thread());
+        assertEquals(2, engine.getShardCount());
+    }
+
+    @Test
+    void glassIsCheckedOnTheThreadOwningTheChunk() {
+        addGate(0, 64, 0, Material.GLASS);
+        addGate(1, 64, 0, Material.AIR);
+
+        engine.schedule(world, 0, 64, 0, 0);
+        engine.schedule(world, 1, 64, 0, 0);
+        ticks(3);
+
+        assertEquals(2, typeReads.size());
+        assertTrue(typeReads.values().stream().allMatch(owned -> owned));
+        assertEquals(1, updates.size());
+        assertEquals(BlockKey.pack(0, 64, 0), updates.get(0).key());
+    }
+
+    @Test
+    void requestsForBlocksThatAreNotGatesAreIgnored() {
+        engine.schedule(world, 0, 64, 0, 0);
+        ticks(3);
+
+        assertTrue(updates.isEmpty());
+        assertEquals(0, engine.getShardCount());
+    }
+
+    @Test
+    void timersFireOnTheirChunkThreadAndRearm() {
+        GateData timer = GateData.create(BlockFace.NORTH, GateType.TIMER);
+        timer.setIntervalTicks(3);
+        types.put(BlockKey.pack(0, 64, 0), Material.GLASS);
+        gateIndex.put(world, 0, 64, 0, timer);
+
+        ticks(10);
+
+        assertEquals(List.of(4L, 7L, 10L), fired.stream().map(Event::tick).toList());
+        assertTrue(fired.stream().allMatch(Event::owned));
+    }
+
+    @Test
+    void duplicateRequestsFromSeveralThreadsMergeIntoOneUpdate() throws InterruptedException {
+        addGate(0, 64, 0, Material.GLASS);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 100; i++) {
+                    engine.schedule(world, 0, 64, 0, 0);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        ticks(3);
+
+        assertEquals(1, updates.size());
+        assertEquals(399, engine.sum(GateUpdateScheduler::getCoalescedCount));
+        assertEquals(0, engine.sum(GateUpdateScheduler::getQueueDepth));
+    }
+
+    @Test
+    void clearStopsTheShards() {
+        addGate(0, 64, 0, Material.GLASS);
+        engine.schedule(world, 0, 64, 0, 5);
+        ticks(1);
+
+        engine.clear();
+        ticks(10);
+
+        assertTrue(updates.isEmpty());
+        assertEquals(0, engine.getShardCount());
+    }
+
+    private void update(List<Block> blocks) {
+        for (Block block : blocks) {
+            updates.add(new Event(BlockKey.pack(block.getX(), block.getY(), block.getZ()), 0L, Thread.currentThread(),
+                    scheduler.isOwnedByCurrentThread(world, block.getX() >> 4, block.getZ() >> 4)));
+        }
+    }
+
+    private void fire(TimerWheel timers, World world, int x, int y, int z, GateData data, long deadline) {
+        fired.add(new Event(BlockKey.pack(x, y, z), deadline, Thread.currentThread(),
+                scheduler.isOwnedByCurrentThread(world, x >> 4, z >> 4)));
+        timers.schedule(world, x, y, z, data, data.getIntervalTicks());
+    }
+
+    private void addGate(int x, int y, int z, Material type) {
+        types.put(BlockKey.pack(x, y, z), type);
+        gateIndex.put(world, x, y, z, GateData.create(BlockFace.NORTH, GateType.AND));
+    }
+
+    private void ticks(int count) {
+        for (int i = 0; i < count; i++) {
+            scheduler.tick();
+        }
+    }
+
+    private World world() {
+        return (World) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getBlockAt" -> block((int) args[0], (int) args[1], (int) args[2]);
+                    case "isChunkLoaded" -> true;
+                    case "getName" -> "world";
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    private Block block(int x, int y, int z) {
+        long key = BlockKey.pack(x, y, z);
+        return (Block) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Block.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getType" -> {
+                        typeReads.put(key, scheduler.isOwnedByCurrentThread(world, x >> 4, z >> 4));
+                        yield types.getOrDefault(key, Material.AIR);
+                    }
+                    case "getWorld" -> world;
+                    case "getX" -> x;
+                    case "getY" -> y;
+                    case "getZ" -> z;
+                    case "hashCode" -> Long.hashCode(key);
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+
+    private record Event(long key, long tick, Thread thread, boolean owned) {
+    }
+}
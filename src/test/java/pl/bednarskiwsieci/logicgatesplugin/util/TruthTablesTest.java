@@ -0,0 +1,104 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TruthTablesTest {
+
+    private static final GateType[] COMBINATIONAL = {
+            GateType.XOR, GateType.AND, GateType.OR, GateType.NOT,
+            GateType.NAND, GateType.NOR, GateType.XNOR, GateType.IMPLICATION
+    };
+
+    @Test
+    void onlyStatelessTypesHaveTables() {
+        for (GateType type : COMBINATIONAL) {
+            assertTrue(TruthTables.isCombinational(type), type.name());
+        }
+        assertFalse(TruthTables.isCombinational(GateType.RS_LATCH));
+        assertFalse(TruthTables.isCombinational(GateType.TIMER));
+    }
+
+    @Test
+    void calculateOutputMatchesTheBaseline() {
+        for (GateType type : COMBINATIONAL) {
+            for (boolean threeInput : new boolean[]{false, true}) {
+                GateData data = GateData.create(BlockFace.NORTH, type);
+                data.setThreeInput(threeInput);
+                for (int inputs = 0; inputs < 8; inputs++) {
+                    boolean expected = BaselineGates.calculateOutput(type, inputs, threeInput);
+                    String gate = type + (threeInput ? " with three inputs " : " ") + Integer.toBinaryString(inputs);
+                    assertEquals(expected, GateUtils.calculateOutput(type,
+                            (inputs & 1) != 0, (inputs & 2) != 0, (inputs & 4) != 0, data), gate);
+                    assertEquals(expected, GateUtils.calculateOutput(type, inputs, data), gate);
+                    assertEquals(expected, TruthTables.evaluate(type, inputs, data.getInputCount()), gate);
+                }
+            }
+        }
+    }
+
+    @Test
+    void wideTablesGeneralizeTheThreeInputRules() {
+        for (GateType type : COMBINATIONAL) {
+            for (int count = 1; count <= TruthTables.MAX_INPUTS; count++) {
+                for (int inputs = 0; inputs < 1 << count; inputs++) {
+                    assertEquals(reference(type, inputs, count), TruthTables.evaluate(type, inputs, count),
+                            type + " " + count + " " + Integer.toBinaryString(inputs));
+                }
+            }
+        }
+    }
+
+    @Test
+    void bitsAboveTheInputCountAreIgnored() {
+        for (GateType type : COMBINATIONAL) {
+            for (int inputs = 0; inputs < 8; inputs++) {
+                assertEquals(TruthTables.evaluate(type, inputs, 2), TruthTables.evaluate(type, inputs | 0xF0, 2),
+                        type + " " + inputs);
+            }
+        }
+    }
+
+    @Test
+    void tableWordHoldsOneOutputPerInputMask() {
+        for (GateType type : COMBINATIONAL) {
+            long table = TruthTables.table(type, 3);
+            for (int inputs = 0; inputs < 8; inputs++) {
+                assertEquals(TruthTables.evaluate(type, inputs, 3), ((table >>> inputs) & 1L) != 0, type + " " + inputs);
+            }
+        }
+    }
+
+    private static boolean reference(GateType type, int inputs, int count) {
+        boolean all = true, any = false, odd = false, premises = true;
+        boolean first = (inputs & 1) != 0, equal = true;
+        for (int i = 0; i < count; i++) {
+            boolean input = (inputs & (1 << i)) != 0;
+            all &= input;
+            any |= input;
+            odd ^= input;
+            equal &= input == first;
+            if (i < count - 1) {
+                premises &= input;
+            }
+        }
+        boolean last = (inputs & (1 << (count - 1))) != 0;
+        return switch (type) {
+            case AND -> all;
+            case OR -> any;
+            case NAND -> !all;
+            case NOR -> !any;
+            case XOR -> odd;
+            case XNOR -> equal;
+            case IMPLICATION -> !premises || last;
+            case NOT -> !first;
+            default -> throw new IllegalArgumentException(type.name());
+        };
+    }
+}
@@ -0,0 +1,119 @@
+package pl.bednarskiwsieci.logicgatesplugin.util;
+
+import org.bukkit.World;
+import org.bukkit.block.BlockFace;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateData;
+import pl.bednarskiwsieci.logicgatesplugin.model.GateType;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Proxy;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/// Checks that gate lookups, output calculation, batch evaluation and timer re-arming do not allocate once
+/// warmed up. `updateGate`, topology resolution and dependent scheduling need a running server (the plugin
+/// cannot be constructed outside one), so they are not covered here.
+class UpdatePathAllocationTest {
+
+    private static final GateType[] COMBINATIONAL = {
+            GateType.XOR, GateType.AND, GateType.OR, GateType.NOT,
+            GateType.NAND, GateType.NOR, GateType.XNOR, GateType.IMPLICATION
+    };
+    private static final int GATES = 256;
+    private static final int WARM_UP_ROUNDS = 20_000;
+    private static final int MEASURED_ROUNDS = 2_000;
+
+    private final World world = world();
+    private final GateIndex gateIndex = new GateIndex();
+    private final GateBatch batch = new GateBatch();
+    private final GateData[] gates = new GateData[GATES];
+    private TimerWheel timers;
+    private TimerWheel.TimerVisitor rearm;
+    private long tick;
+    private int fired;
+
+    private com.sun.management.ThreadMXBean threads;
+
+    @BeforeEach
+    void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean,
+                "per-thread allocation counters are not available");
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported(), "per-thread allocation counters are not available");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < GATES; i++) {
+            gates[i] = GateData.create(BlockFace.NORTH, COMBINATIONAL[i % COMBINATIONAL.length]);
+            gates[i].setThreeInput(i % 3 == 0);
+            gateIndex.put(world, i, 64, -i, gates[i]);
+        }
+        timers = new TimerWheel(gateIndex);
+        rearm = (w, x, y, z, data, deadline) -> {
+            fired++;
+            timers.schedule(w, x, y, z, data, data.getIntervalTicks());
+        };
+        for (int i = 0; i < 32; i++) {
+            GateData timer = GateData.create(BlockFace.NORTH, GateType.TIMER);
+            timer.setIntervalTicks(1 + i % 5);
+            gateIndex.put(world, i, 70, i, timer);
+            timers.arm(world, i, 70, i, timer);
+        }
+    }
+
+    @Test
+    void lookupsEvaluationAndTimersDoNotAllocate() {
+        for (int i = 0; i < WARM_UP_ROUNDS; i++) {
+            round();
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        int checksum = 0;
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            checksum += round();
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(fired > 0 && checksum != 0);
+        assertEquals(0L, allocated, "bytes allocated over " + MEASURED_ROUNDS + " update rounds");
+    }
+
+    // One tick of updates: look every gate up, evaluate it alone and in a batch, and advance the timers
+    private int round() {
+        int outputs = 0;
+        for (int i = 0; i < GATES; i++) {
+            GateData data = gateIndex.get(world, i, 64, -i);
+            int inputs = (i + (int) tick) & 7;
+            if (GateUtils.calculateOutput(data.getType(), inputs, data)) {
+                outputs++;
+            }
+            batch.add(null, data, inputs, false);
+        }
+        batch.evaluate();
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.output(i)) {
+                outputs++;
+            }
+        }
+        batch.clear();
+        timers.advanceTo(++tick, rearm);
+        return outputs;
+    }
+
+    private static World world() {
+        UUID uid = UUID.randomUUID();
+        return (World) Proxy.newProxyInstance(UpdatePathAllocationTest.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUID" -> uid;
+                    case "isChunkLoaded" -> true;
+                    case "hashCode" -> uid.hashCode();
+                    case "equals" -> proxy == args[0];
+                    default -> null;
+                });
+    }
+}